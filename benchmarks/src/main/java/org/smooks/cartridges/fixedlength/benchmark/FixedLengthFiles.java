@@ -0,0 +1,134 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Generated Fixed Length benchmark files.
+ * <p/>
+ * Files are generated once into <code>${java.io.tmpdir}/smooks-fixed-length-benchmarks</code> and reused by later
+ * runs.  Every 100th record is one character short, so strict and non strict parsing take different paths.
+ */
+final class FixedLengthFiles {
+
+    /**
+     * The record layout of the generated files.
+     */
+    static final String FIELDS = "firstname[10],lastname[10],gender[1],age[3],country[3]";
+
+    /**
+     * The record layout of the generated files, with string functions on the text fields.
+     */
+    static final String FIELDS_WITH_FUNCTIONS = "firstname[10]?trim,lastname[10]?trim.upper_case,gender[1],age[3],country[3]?lower_case";
+
+    private static final String[] LASTNAMES = {"Zeijen", "Fries", "Doe", "Muller", "Janssen", "Smith", "Rossi", "Dubois"};
+    private static final String[] COUNTRIES = {"NLD", "BEL", "DEU", "USA", "ITA", "FRA"};
+
+    private FixedLengthFiles() {
+    }
+
+    /**
+     * Get the generated file of the supplied size.
+     *
+     * @param size The file size, e.g. "1MB", "64MB" or "2GB".
+     * @return The file.
+     */
+    static synchronized File get(String size) {
+        long length = parseSize(size);
+        File directory = new File(System.getProperty("java.io.tmpdir"), "smooks-fixed-length-benchmarks");
+        File file = new File(directory, "records-" + size.toUpperCase(Locale.ROOT) + ".txt");
+
+        if (!file.isFile() || file.length() < length) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalStateException("Failed to create directory '" + directory + "'.");
+            }
+            generate(file, length);
+        }
+
+        return file;
+    }
+
+    private static void generate(File file, long length) {
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8), 1 << 16)) {
+            long written = 0;
+            for (long i = 0; written < length; i++) {
+                // Unique first names, so MAP bindings keyed on the first name keep every record...
+                String record = String.format("%-10s%-10s%s%03d%s", Long.toString(i, 36), LASTNAMES[(int) (i % LASTNAMES.length)],
+                        (i % 2 == 0 ? "M" : "F"), i % 100, COUNTRIES[(int) (i % COUNTRIES.length)]);
+                if (i % 100 == 99) {
+                    record = record.substring(0, record.length() - 1);
+                }
+                writer.write(record);
+                writer.write('\n');
+                written += record.length() + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to generate benchmark file '" + file + "'.", e);
+        }
+        if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+            throw new IllegalStateException("Failed to rename '" + tmpFile + "' to '" + file + "'.");
+        }
+    }
+
+    private static long parseSize(String size) {
+        String normalized = size.trim().toUpperCase(Locale.ROOT);
+        if (normalized.endsWith("GB")) {
+            return Long.parseLong(normalized.substring(0, normalized.length() - 2)) << 30;
+        } else if (normalized.endsWith("MB")) {
+            return Long.parseLong(normalized.substring(0, normalized.length() - 2)) << 20;
+        } else if (normalized.endsWith("KB")) {
+            return Long.parseLong(normalized.substring(0, normalized.length() - 2)) << 10;
+        }
+        return Long.parseLong(normalized);
+    }
+}
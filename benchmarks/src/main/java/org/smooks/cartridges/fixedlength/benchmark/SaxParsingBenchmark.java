@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.smooks.FilterSettings;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.cartridges.fixedlength.FixedLengthReaderConfigurator;
+import org.w3c.dom.Element;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Raw SAX parsing throughput.
+ * <p/>
+ * Parses a generated file into record and field events (or record events only, with the fields as attributes), with a
+ * single visitor counting the records.  One operation
+ * is one file, so the throughput in bytes per second is the score times the file size.  Default serialization is
+ * turned off, there is no result to serialize to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SaxParsingBenchmark {
+
+    @Param({"1MB", "64MB"})
+    private String fileSize;
+
+    @Param({"true", "false"})
+    private boolean strict;
+
+    @Param({"false", "true"})
+    private boolean indent;
+
+    @Param({"false", "true"})
+    private boolean lineNumber;
+
+    @Param({"false", "true"})
+    private boolean functions;
+
+    @Param({"false", "true"})
+    private boolean fieldsAsAttributes;
+
+    private File file;
+    private Smooks smooks;
+    private final AtomicLong records = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        file = FixedLengthFiles.get(fileSize);
+
+        smooks = new Smooks();
+        smooks.setFilterSettings(FilterSettings.newSaxNgSettings().setDefaultSerializationOn(false));
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(functions ? FixedLengthFiles.FIELDS_WITH_FUNCTIONS : FixedLengthFiles.FIELDS)
+                .setStrict(strict)
+                .setIndent(indent)
+                .setLineNumber(lineNumber)
+                .setFieldsAsAttributes(fieldsAsAttributes));
+        smooks.addVisitor((AfterVisitor) (Element element, ExecutionContext executionContext) -> records.incrementAndGet(), "record");
+    }
+
+    @TearDown
+    public void tearDown() {
+        smooks.close();
+    }
+
+    @Benchmark
+    public long parse() throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            smooks.filterSource(new StreamSource(reader));
+        }
+        return records.get();
+    }
+}
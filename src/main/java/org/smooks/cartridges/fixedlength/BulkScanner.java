@@ -0,0 +1,139 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Bulk scanning of the reader buffers for line terminators and padding runs.
+ * <p/>
+ * Byte buffers are scanned eight bytes at a time (SWAR, SIMD within a register): the bytes are loaded into a
+ * <code>long</code> through {@link ByteBuffer#getLong(int)} and the lanes matching a byte are found with a few arithmetic
+ * operations, without a branch per byte.  Character arrays are scanned one character at a time, a loop the JIT compiles
+ * well without help.
+ */
+final class BulkScanner {
+
+    private static final long BYTE_LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long BYTE_LANES = 0x0101010101010101L;
+
+    private BulkScanner() {
+    }
+
+    /**
+     * Find the first line terminator (<code>'\n'</code> or <code>'\r'</code>) in the range [from, to).
+     *
+     * @return The index of the terminator, or <code>-1</code> if the range doesn't contain a terminator.
+     */
+    static int indexOfLineTerminator(char[] chars, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = chars[i];
+            if (c == '\n' || c == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first character other than the padding character in the range [from, to).
+     *
+     * @return The index of the character, or <code>to</code> if the range only contains padding.
+     */
+    static int skipPadding(char[] chars, int from, int to, char padding) {
+        int i = from;
+        while (i < to && chars[i] == padding) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Find the end of the range [from, to) without its trailing padding.
+     *
+     * @return The index after the last character other than the padding character, or <code>from</code> if the
+     * range only contains padding.
+     */
+    static int skipTrailingPadding(char[] chars, int from, int to, char padding) {
+        int i = to;
+        while (i > from && chars[i - 1] == padding) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Find the first line terminator byte in the range [from, to) of the buffer, eight bytes at a time.
+     *
+     * @return The index of the terminator, or <code>-1</code> if the range doesn't contain a terminator.
+     */
+    static int indexOfLineTerminator(ByteBuffer buffer, int from, int to, byte lf, byte cr) {
+        long lfLanes = (lf & 0xFFL) * BYTE_LANES;
+        long crLanes = (cr & 0xFFL) * BYTE_LANES;
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = buffer.getLong(i);
+            long found = zeroBytes(word ^ lfLanes) | zeroBytes(word ^ crLanes);
+            if (found != 0) {
+                return i + (bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) / Byte.SIZE;
+            }
+        }
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == lf || b == cr) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The high bit of every zero lane of eight byte lanes.  Exact, there are no false positives (borrows) in the lanes
+     * following a zero lane.
+     */
+    private static long zeroBytes(long word) {
+        return ~(((word & BYTE_LOW_BITS) + BYTE_LOW_BITS) | word | BYTE_LOW_BITS);
+    }
+}
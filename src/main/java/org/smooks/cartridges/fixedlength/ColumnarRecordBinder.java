@@ -0,0 +1,195 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binds Fixed Length records straight from the {@link RecordReader} buffer into the columns of a
+ * {@link FixedLengthColumns} result, without generating SAX events and without creating an object per record.
+ * <p/>
+ * A binder collects the records of a single parse, it's not thread safe.
+ */
+class ColumnarRecordBinder {
+
+    private final Field[] fields;
+    private final FixedLengthColumn[] columns;
+    private final FixedLengthColumns result = new FixedLengthColumns();
+    private char[] functionChars;
+    private int rowCount;
+
+    ColumnarRecordBinder(Field[] fields) {
+        this.fields = fields;
+        this.columns = new FixedLengthColumn[fields.length];
+
+        int totalFieldLength = 0;
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            totalFieldLength += field.getLength();
+            if (!field.ignore()) {
+                columns[i] = createColumn(field);
+                result.addColumn(columns[i]);
+            }
+        }
+        functionChars = new char[totalFieldLength];
+    }
+
+    private static FixedLengthColumn createColumn(Field field) {
+        FieldType fieldType = field.getFieldType();
+        if (fieldType == null) {
+            return new FixedLengthColumn.StringColumn(field.getName());
+        }
+
+        Class<?> valueType = fieldType.getValueType();
+        if (valueType == Integer.class) {
+            return new FixedLengthColumn.IntColumn(field.getName());
+        } else if (valueType == Long.class) {
+            return new FixedLengthColumn.LongColumn(field.getName());
+        } else if (valueType == BigDecimal.class) {
+            return new FixedLengthColumn.DecimalColumn(field.getName(), fieldType.getScale());
+        } else {
+            return new FixedLengthColumn.DateColumn(field.getName(), valueType == LocalDateTime.class);
+        }
+    }
+
+    /**
+     * Append the current record of the record reader as a row.
+     * <p/>
+     * Fields that are truncated (the record is shorter than the field layout) are null.
+     *
+     * @param recordReader The record reader, positioned on the record.
+     */
+    void bind(RecordReader recordReader) {
+        int recordLength = recordReader.getRecordLength();
+        int fieldOffset = 0;
+
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            int fieldLength = field.getLength();
+            FixedLengthColumn column = columns[i];
+
+            if (column != null) {
+                if (fieldOffset + fieldLength <= recordLength) {
+                    recordReader.decode(fieldOffset, fieldLength);
+                    bindValue(field, column, recordReader.getBuffer(), recordReader.getRecordOffset() + fieldOffset, fieldLength);
+                } else {
+                    column.appendNull();
+                }
+            }
+
+            fieldOffset += fieldLength;
+        }
+        rowCount++;
+    }
+
+    private void bindValue(Field field, FixedLengthColumn column, char[] chars, int offset, int length) {
+        FieldType fieldType = field.getFieldType();
+        if (fieldType == null) {
+            FieldFunction fieldFunction = field.getFieldFunction();
+            FixedLengthColumn.StringColumn stringColumn = (FixedLengthColumn.StringColumn) column;
+            if (fieldFunction == null) {
+                stringColumn.append(chars, offset, length);
+            } else {
+                // Apply the function straight from the record buffer into the function buffer...
+                int valueLength = fieldFunction.apply(chars, offset, length, functionChars);
+                if (valueLength == -1) {
+                    String value = fieldFunction.apply(chars, offset, length);
+
+                    if (value.length() > functionChars.length) {
+                        functionChars = new char[value.length()];
+                    }
+                    value.getChars(0, value.length(), functionChars, 0);
+                    valueLength = value.length();
+                }
+                stringColumn.append(functionChars, 0, valueLength);
+            }
+            return;
+        }
+
+        Object value = fieldType.decode(chars, offset, length);
+        if (value == null) {
+            column.appendNull();
+        } else if (column instanceof FixedLengthColumn.IntColumn) {
+            ((FixedLengthColumn.IntColumn) column).append((Integer) value);
+        } else if (column instanceof FixedLengthColumn.DecimalColumn) {
+            ((FixedLengthColumn.DecimalColumn) column).append(unscaled((BigDecimal) value, fieldType, chars, offset, length));
+        } else if (column instanceof FixedLengthColumn.DateColumn) {
+            if (value instanceof LocalDateTime) {
+                ((FixedLengthColumn.DateColumn) column).append(((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC));
+            } else {
+                ((FixedLengthColumn.DateColumn) column).append(((LocalDate) value).toEpochDay());
+            }
+        } else {
+            ((FixedLengthColumn.LongColumn) column).append((Long) value);
+        }
+    }
+
+    private static long unscaled(BigDecimal value, FieldType fieldType, char[] chars, int offset, int length) {
+        try {
+            return value.setScale(fieldType.getScale(), RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new SmooksException("Fixed Length '" + fieldType + "' field value '" + new String(chars, offset, length) + "' doesn't fit a column of scale " + fieldType.getScale() + ".", e);
+        }
+    }
+
+    /**
+     * The bound columns.  Trims the column storage, so no records can be bound after getting the result.
+     *
+     * @return The columns.
+     */
+    FixedLengthColumns getResult() {
+        for (FixedLengthColumn column : columns) {
+            if (column != null) {
+                column.trimToSize();
+            }
+        }
+        result.setRowCount(rowCount);
+        return result;
+    }
+}
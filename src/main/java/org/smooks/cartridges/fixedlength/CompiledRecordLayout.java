@@ -0,0 +1,241 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Record layout precomputed for emission.
+ * <p/>
+ * Resolves what the generic parse loop looks up per field of every record once per layout: the ignored fields are
+ * dropped and each emitted field gets a descriptor holding its name, its precomputed offset and the way its value is
+ * produced (verbatim, through its {@link FieldFunction} or decoded by its {@link FieldType}).  A record that holds
+ * all the emitted fields, the common case, is emitted without a truncation check per field.
+ * <p/>
+ * No code is generated per layout: the descriptors of all the layouts are emitted through the same call site, which
+ * sees all three kinds of descriptors.  The gain is in the lookups and checks that are saved, not in specialized code.
+ */
+final class CompiledRecordLayout {
+
+    private static final AttributesImpl EMPTY_ATTRIBS = new AttributesImpl();
+    private static final char[] INDENT = new char[]{'\n', '\t', '\t'};
+
+    private final FieldEmitter[] emitters;
+    private final int requiredLength;
+    private final boolean indent;
+    private final AttributesImpl truncatedAttributes;
+
+    private CompiledRecordLayout(FieldEmitter[] emitters, boolean indent, AttributesImpl truncatedAttributes) {
+        this.emitters = emitters;
+        this.requiredLength = (emitters.length > 0 ? emitters[emitters.length - 1].end : 0);
+        this.indent = indent;
+        this.truncatedAttributes = truncatedAttributes;
+    }
+
+    /**
+     * Compile the layout.
+     *
+     * @param fields              The fields of the layout.
+     * @param indent              Indent the field elements.
+     * @param truncatedAttributes The attributes of a truncated field element.
+     * @return The compiled layout.
+     */
+    static CompiledRecordLayout compile(Field[] fields, boolean indent, AttributesImpl truncatedAttributes) {
+        List<FieldEmitter> emitters = new ArrayList<>(fields.length);
+        int offset = 0;
+        for (Field field : fields) {
+            if (!field.ignore()) {
+                if (field.getFieldType() != null) {
+                    emitters.add(new TypedFieldEmitter(field, offset));
+                } else if (field.getFieldFunction() != null) {
+                    emitters.add(new FunctionFieldEmitter(field, offset));
+                } else {
+                    emitters.add(new TextFieldEmitter(field, offset));
+                }
+            }
+            offset += field.getLength();
+        }
+
+        return new CompiledRecordLayout(emitters.toArray(new FieldEmitter[0]), indent, truncatedAttributes);
+    }
+
+    /**
+     * Emit the field elements of the current record of the reader.
+     *
+     * @param contentHandler The content handler.
+     * @param recordReader   The record reader.
+     * @param functionChars  The buffer the functions and types write the field values to.
+     * @param metrics        The parse metrics, or <code>null</code>.
+     * @return The buffer the field values were written to, <code>functionChars</code> unless it had to grow.
+     * @throws SAXException Error emitting the field elements.
+     */
+    char[] emitFields(ContentHandler contentHandler, RecordReader recordReader, char[] functionChars, ParseMetrics metrics) throws SAXException {
+        char[] recordChars = recordReader.getBuffer();
+        int recordOffset = recordReader.getRecordOffset();
+        int recordLength = recordReader.getRecordLength();
+
+        if (recordLength >= requiredLength) {
+            for (FieldEmitter emitter : emitters) {
+                if (indent) {
+                    contentHandler.characters(INDENT, 0, INDENT.length);
+                }
+                contentHandler.startElement(XMLConstants.NULL_NS_URI, emitter.name, "", EMPTY_ATTRIBS);
+                recordReader.decode(emitter.offset, emitter.length);
+                functionChars = emitter.emit(contentHandler, recordChars, recordOffset + emitter.offset, functionChars, metrics);
+                contentHandler.endElement(XMLConstants.NULL_NS_URI, emitter.name, "");
+            }
+            return functionChars;
+        }
+
+        for (FieldEmitter emitter : emitters) {
+            if (indent) {
+                contentHandler.characters(INDENT, 0, INDENT.length);
+            }
+            if (emitter.end > recordLength) {
+                contentHandler.startElement(XMLConstants.NULL_NS_URI, emitter.name, "", truncatedAttributes);
+            } else {
+                contentHandler.startElement(XMLConstants.NULL_NS_URI, emitter.name, "", EMPTY_ATTRIBS);
+                recordReader.decode(emitter.offset, emitter.length);
+                functionChars = emitter.emit(contentHandler, recordChars, recordOffset + emitter.offset, functionChars, metrics);
+            }
+            contentHandler.endElement(XMLConstants.NULL_NS_URI, emitter.name, "");
+        }
+        return functionChars;
+    }
+
+    /**
+     * The precomputed descriptor of an emitted field, which emits the value of the field.
+     */
+    private abstract static class FieldEmitter {
+
+        final String name;
+        final int offset;
+        final int length;
+        final int end;
+
+        private FieldEmitter(Field field, int offset) {
+            this.name = field.getName();
+            this.offset = offset;
+            this.length = field.getLength();
+            this.end = offset + length;
+        }
+
+        abstract char[] emit(ContentHandler contentHandler, char[] chars, int offset, char[] functionChars, ParseMetrics metrics) throws SAXException;
+    }
+
+    private static final class TextFieldEmitter extends FieldEmitter {
+
+        private TextFieldEmitter(Field field, int offset) {
+            super(field, offset);
+        }
+
+        @Override
+        char[] emit(ContentHandler contentHandler, char[] chars, int offset, char[] functionChars, ParseMetrics metrics) throws SAXException {
+            contentHandler.characters(chars, offset, length);
+            return functionChars;
+        }
+    }
+
+    private static final class FunctionFieldEmitter extends FieldEmitter {
+
+        private final FieldFunction fieldFunction;
+
+        private FunctionFieldEmitter(Field field, int offset) {
+            super(field, offset);
+            this.fieldFunction = field.getFieldFunction();
+        }
+
+        @Override
+        char[] emit(ContentHandler contentHandler, char[] chars, int offset, char[] functionChars, ParseMetrics metrics) throws SAXException {
+            long functionStart = (metrics != null ? System.nanoTime() : 0);
+            int valueLength = fieldFunction.apply(chars, offset, length, functionChars);
+            if (valueLength == -1) {
+                String value = fieldFunction.apply(chars, offset, length);
+
+                functionChars = value.toCharArray();
+                valueLength = value.length();
+            }
+            if (metrics != null) {
+                metrics.functionNanos += System.nanoTime() - functionStart;
+            }
+            contentHandler.characters(functionChars, 0, valueLength);
+            return functionChars;
+        }
+    }
+
+    private static final class TypedFieldEmitter extends FieldEmitter {
+
+        private final FieldType fieldType;
+
+        private TypedFieldEmitter(Field field, int offset) {
+            super(field, offset);
+            this.fieldType = field.getFieldType();
+        }
+
+        @Override
+        char[] emit(ContentHandler contentHandler, char[] chars, int offset, char[] functionChars, ParseMetrics metrics) throws SAXException {
+            long functionStart = (metrics != null ? System.nanoTime() : 0);
+            // Emit the canonical text of the decoded value (no padding, implied decimals applied etc...)
+            Object value = fieldType.decode(chars, offset, length);
+            if (value != null) {
+                String text = fieldType.toText(value);
+
+                if (text.length() > functionChars.length) {
+                    functionChars = new char[text.length()];
+                }
+                text.getChars(0, text.length(), functionChars, 0);
+                if (metrics != null) {
+                    metrics.functionNanos += System.nanoTime() - functionStart;
+                }
+                contentHandler.characters(functionChars, 0, text.length());
+            }
+            return functionChars;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative Fixed Length metrics.
+ * <p/>
+ * Sums the metrics of all executions.  Can be registered as an MXBean, e.g.
+ * <pre>
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName("org.smooks:type=FixedLengthMetrics"));
+ * </pre>
+ * or polled by a metrics library gauge.  Configure it by class name (<code>metricsListener="org.smooks.cartridges.fixedlength.CumulativeFixedLengthMetrics"</code>),
+ * after which the instance can be looked up from the {@link org.smooks.api.Registry} under that name, or register
+ * an instance in the registry and configure its registry key.
+ */
+public class CumulativeFixedLengthMetrics implements FixedLengthMetricsListener, FixedLengthMetricsMXBean {
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder failedExecutions = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder skippedRecords = new LongAdder();
+    private final LongAdder truncatedRecords = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder elapsedNanos = new LongAdder();
+    private final LongAdder functionNanos = new LongAdder();
+    private final LongAdder contentHandlerNanos = new LongAdder();
+    private final LongAdder bindingNanos = new LongAdder();
+
+    @Override
+    public void onParsed(FixedLengthMetrics metrics) {
+        executions.increment();
+        if (metrics.isFailed()) {
+            failedExecutions.increment();
+        }
+        records.add(metrics.getRecords());
+        skippedRecords.add(metrics.getSkippedRecords());
+        truncatedRecords.add(metrics.getTruncatedRecords());
+        characters.add(metrics.getCharacters());
+        elapsedNanos.add(metrics.getElapsedNanos());
+        functionNanos.add(metrics.getFunctionNanos());
+        contentHandlerNanos.add(metrics.getContentHandlerNanos());
+        bindingNanos.add(metrics.getBindingNanos());
+    }
+
+    @Override
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    @Override
+    public long getFailedExecutions() {
+        return failedExecutions.sum();
+    }
+
+    @Override
+    public long getRecords() {
+        return records.sum();
+    }
+
+    @Override
+    public long getSkippedRecords() {
+        return skippedRecords.sum();
+    }
+
+    @Override
+    public long getTruncatedRecords() {
+        return truncatedRecords.sum();
+    }
+
+    @Override
+    public long getCharacters() {
+        return characters.sum();
+    }
+
+    @Override
+    public long getElapsedNanos() {
+        return elapsedNanos.sum();
+    }
+
+    @Override
+    public long getFunctionNanos() {
+        return functionNanos.sum();
+    }
+
+    @Override
+    public long getContentHandlerNanos() {
+        return contentHandlerNanos.sum();
+    }
+
+    @Override
+    public long getBindingNanos() {
+        return bindingNanos.sum();
+    }
+
+    @Override
+    public void reset() {
+        executions.reset();
+        failedExecutions.reset();
+        records.reset();
+        skippedRecords.reset();
+        truncatedRecords.reset();
+        characters.reset();
+        elapsedNanos.reset();
+        functionNanos.reset();
+        contentHandlerNanos.reset();
+        bindingNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[executions=%s,failedExecutions=%s,records=%s,skippedRecords=%s,truncatedRecords=%s,characters=%s]",
+                getClass().getSimpleName(), getExecutions(), getFailedExecutions(), getRecords(), getSkippedRecords(), getTruncatedRecords(), getCharacters());
+    }
+}
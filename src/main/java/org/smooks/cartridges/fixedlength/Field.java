@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+/**
+ * Fixed Length field definition.
+ */
+class Field {
+
+    private final String name;
+
+    private final int length;
+
+    private final boolean ignore;
+
+    private final FieldFunction fieldFunction;
+
+    private final FieldType fieldType;
+
+    Field(String name, int length, FieldFunction fieldFunction, FieldType fieldType) {
+        this(name, length, fieldFunction, fieldType, FixedLengthReader.IGNORE_FIELD.equals(name));
+    }
+
+    private Field(String name, int length, FieldFunction fieldFunction, FieldType fieldType, boolean ignore) {
+        this.name = name;
+        this.length = length;
+        this.fieldFunction = fieldFunction;
+        this.fieldType = fieldType;
+        this.ignore = ignore;
+    }
+
+    /**
+     * A copy of this field that is skipped like an "$ignore$" field, but keeps its name.
+     */
+    Field asIgnored() {
+        return (ignore ? this : new Field(name, length, fieldFunction, fieldType, true));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean ignore() {
+        return ignore;
+    }
+
+    /**
+     * The field function, or <code>null</code> if the field doesn't define a function.
+     */
+    public FieldFunction getFieldFunction() {
+        return fieldFunction;
+    }
+
+    /**
+     * The field type, or <code>null</code> if the field is a plain text field.
+     */
+    public FieldType getFieldType() {
+        return fieldType;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[name=%s,length=%s,fieldFunction=%s,fieldType=%s]", getClass().getSimpleName(), name, length, fieldFunction, fieldType);
+    }
+}
@@ -0,0 +1,333 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.cartridges.flatfile.function.StringFunctionExecutor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Compiled field function.
+ * <p/>
+ * Function definitions made up of only <code>trim</code>, <code>left_trim</code>, <code>right_trim</code>,
+ * <code>upper_case</code> and <code>lower_case</code> are compiled to operations which run directly on the
+ * record's character buffer, without creating intermediate {@link String Strings}.  Other function definitions
+ * (e.g. <code>capitalize</code>) are delegated to the flatfile {@link StringFunctionExecutor}.
+ * <p/>
+ * Optionally, {@link String} function results (as bound onto beans, or produced by functions which can't be
+ * compiled) can be kept in a bounded LRU cache, keyed by the raw field characters.  This pays off for low
+ * cardinality fields (status codes, currency codes etc...), where the function is then executed once per distinct
+ * value and the bound records share the same value instances.
+ * <p/>
+ * Thread safe.
+ */
+final class FieldFunction {
+
+    private static final String FUNCTION_SEPARATOR = ".";
+    private static final int TRIM = 0;
+    private static final int LEFT_TRIM = 1;
+    private static final int RIGHT_TRIM = 2;
+    private static final int NO_CASE = 0;
+    private static final int UPPER_CASE = 1;
+    private static final int LOWER_CASE = 2;
+
+    private final String functionDefinition;
+    private final StringFunctionExecutor stringFunctionExecutor;
+    private final int[] trims;
+    private final int[] caseConversions;
+    private final int caseConversion;
+    private final boolean inPlaceCaseConversion;
+    private final ResultCache resultCache;
+
+    private FieldFunction(String functionDefinition, int[] trims, int[] caseConversions, int cacheSize) {
+        this.functionDefinition = functionDefinition;
+        this.stringFunctionExecutor = StringFunctionExecutor.getInstance(functionDefinition);
+        this.trims = trims;
+        this.caseConversions = caseConversions;
+        // For ASCII characters, the last case conversion wins...
+        this.caseConversion = (caseConversions != null && caseConversions.length > 0 ? caseConversions[caseConversions.length - 1] : NO_CASE);
+        // ASCII case conversion only matches String.toUpperCase()/toLowerCase() for locales without special casing rules...
+        String language = Locale.getDefault().getLanguage();
+        this.inPlaceCaseConversion = !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+        this.resultCache = (cacheSize > 0 ? new ResultCache(cacheSize) : null);
+    }
+
+    /**
+     * Compile the supplied function definition.
+     *
+     * @param functionDefinition The function definition, e.g. "trim.upper_case".
+     * @param cacheSize          The maximum number of cached function results.  Zero disables the cache.
+     * @return The compiled function.
+     * @throws org.smooks.cartridges.flatfile.function.UnknownStringFunctionException The definition contains an unknown function.
+     */
+    static FieldFunction compile(String functionDefinition, int cacheSize) {
+        String definition = (functionDefinition.startsWith(FUNCTION_SEPARATOR) ? functionDefinition.substring(1) : functionDefinition);
+        String[] functions = definition.split("\\.");
+        int[] trims = new int[functions.length];
+        int trimCount = 0;
+        int[] caseConversions = new int[functions.length];
+        int caseConversionCount = 0;
+
+        for (String function : functions) {
+            switch (function) {
+                case "trim":
+                    trims[trimCount++] = TRIM;
+                    break;
+                case "left_trim":
+                    trims[trimCount++] = LEFT_TRIM;
+                    break;
+                case "right_trim":
+                    trims[trimCount++] = RIGHT_TRIM;
+                    break;
+                // Case conversion doesn't change whitespace, so it can be applied after all the trims...
+                case "upper_case":
+                    caseConversions[caseConversionCount++] = UPPER_CASE;
+                    break;
+                case "lower_case":
+                    caseConversions[caseConversionCount++] = LOWER_CASE;
+                    break;
+                default:
+                    return new FieldFunction(functionDefinition, null, null, cacheSize);
+            }
+        }
+
+        return new FieldFunction(functionDefinition, Arrays.copyOf(trims, trimCount), Arrays.copyOf(caseConversions, caseConversionCount), cacheSize);
+    }
+
+    /**
+     * Apply the function to the supplied characters, writing the result to the start of the target buffer.
+     *
+     * @param chars  The source characters.
+     * @param offset The offset of the field in the source characters.
+     * @param length The length of the field.
+     * @param target The target buffer.  Must not be the source buffer.
+     * @return The length of the result, or <code>-1</code> if the result doesn't fit in the target buffer.
+     */
+    int apply(char[] chars, int offset, int length, char[] target) {
+        if (trims == null) {
+            return copy(apply(chars, offset, length), target);
+        }
+
+        int start = trimStart(chars, offset, offset + length);
+        int end = trimEnd(chars, start, offset + length);
+        int resultLength = end - start;
+        if (resultLength > target.length) {
+            return -1;
+        }
+
+        if (caseConversion == NO_CASE) {
+            System.arraycopy(chars, start, target, 0, resultLength);
+            return resultLength;
+        }
+        if (!inPlaceCaseConversion) {
+            return copy(apply(chars, offset, length), target);
+        }
+
+        for (int i = 0; i < resultLength; i++) {
+            char c = chars[start + i];
+            if (c >= 0x80) {
+                // Non ASCII case conversion can change the length of the value...
+                return copy(apply(chars, offset, length), target);
+            }
+            if (caseConversion == UPPER_CASE) {
+                target[i] = (c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c);
+            } else {
+                target[i] = (c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            }
+        }
+
+        return resultLength;
+    }
+
+    /**
+     * Apply the function to the supplied characters.
+     *
+     * @param chars  The source characters.
+     * @param offset The offset of the field in the source characters.
+     * @param length The length of the field.
+     * @return The function result.
+     */
+    String apply(char[] chars, int offset, int length) {
+        if (resultCache != null) {
+            return resultCache.get(chars, offset, length);
+        }
+        return execute(chars, offset, length);
+    }
+
+    private String execute(char[] chars, int offset, int length) {
+        if (trims == null) {
+            return stringFunctionExecutor.execute(new String(chars, offset, length));
+        }
+
+        int start = trimStart(chars, offset, offset + length);
+        String value = new String(chars, start, trimEnd(chars, start, offset + length) - start);
+        for (int caseConversion : caseConversions) {
+            value = (caseConversion == UPPER_CASE ? value.toUpperCase() : value.toLowerCase());
+        }
+        return value;
+    }
+
+    private int trimStart(char[] chars, int start, int end) {
+        for (int trim : trims) {
+            if (trim != RIGHT_TRIM) {
+                // Skip the space padding in bulk, then any other trimmed characters...
+                start = BulkScanner.skipPadding(chars, start, end, ' ');
+                while (start < end && isTrimmed(chars[start], trim)) {
+                    start++;
+                }
+            }
+        }
+        return start;
+    }
+
+    private int trimEnd(char[] chars, int start, int end) {
+        for (int trim : trims) {
+            if (trim == TRIM) {
+                end = BulkScanner.skipTrailingPadding(chars, start, end, ' ');
+                while (end > start && isTrimmed(chars[end - 1], trim)) {
+                    end--;
+                }
+            } else if (trim == RIGHT_TRIM) {
+                // Like the flatfile right_trim function, the first character is never trimmed...
+                if (end > start) {
+                    end = BulkScanner.skipTrailingPadding(chars, start + 1, end, ' ');
+                }
+                while (end - 1 > start && isTrimmed(chars[end - 1], trim)) {
+                    end--;
+                }
+            }
+        }
+        return end;
+    }
+
+    private static boolean isTrimmed(char c, int trim) {
+        // Same as String.trim() and the flatfile left_trim/right_trim functions respectively...
+        return (trim == TRIM ? c <= ' ' : Character.isWhitespace(c));
+    }
+
+    private static int copy(String value, char[] target) {
+        if (value.length() > target.length) {
+            return -1;
+        }
+        value.getChars(0, value.length(), target, 0);
+        return value.length();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[functionDefinition=%s,compiled=%s,cached=%s]", getClass().getSimpleName(), functionDefinition, trims != null, resultCache != null);
+    }
+
+    /**
+     * Bounded LRU cache of function results, looked up by character range.
+     */
+    private final class ResultCache {
+
+        // Access ordered, so the first entry is the least recently used...
+        private final LinkedHashMap<CacheKey, String> results = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxSize;
+
+        private ResultCache(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private synchronized String get(char[] chars, int offset, int length) {
+            String result = results.get(new CacheKey(chars, offset, length));
+            if (result == null) {
+                result = execute(chars, offset, length);
+                results.put(new CacheKey(Arrays.copyOfRange(chars, offset, offset + length), 0, length), result);
+                if (results.size() > maxSize) {
+                    Iterator<CacheKey> eldest = results.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class CacheKey {
+
+        private final char[] chars;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        private CacheKey(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+
+            int hash = 0;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + chars[i];
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            if (other.length != length || other.hash != hash) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chars[offset + i] != other.chars[other.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
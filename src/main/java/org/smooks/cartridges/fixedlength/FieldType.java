@@ -0,0 +1,644 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.CharBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Fixed Length field type.
+ * <p/>
+ * Typed fields are declared by appending the type to the field length, e.g. "qty[6]:int", "amount[12]:decimal(2)" or
+ * "date[8]:date(yyyyMMdd)".  Their values are decoded straight from the record's character buffer, without
+ * intermediate {@link String Strings}:
+ * <ul>
+ *     <li><b>int</b> and <b>long</b>: {@link Integer} and {@link Long} values.</li>
+ *     <li><b>decimal</b> or <b>decimal(scale)</b>: {@link BigDecimal} values.  Digits without a decimal point are
+ *     interpreted with the (implied) scale, e.g. "0012345" is 123.45 for "decimal(2)".</li>
+ *     <li><b>date(pattern)</b>: {@link LocalDate} values, or {@link LocalDateTime} values if the pattern contains
+ *     time fields.  See {@link DateTimeFormatter} for the pattern syntax.</li>
+ * </ul>
+ * Numeric values may be padded with whitespace, may have a leading '+' or '-' sign and may end in a signed
+ * overpunch (zoned decimal) digit, where '{' and 'A' to 'I' are the positive digits 0 to 9 and '}' and 'J' to 'R'
+ * the negative digits 0 to 9.  Blank fields decode to <code>null</code>.
+ * <p/>
+ * Values are encoded (see {@link #encode(Object, char[], int, int)}) in the canonical fixed length form: numbers right
+ * aligned and zero padded, with a leading '-' sign when negative and the decimals implied by the scale, dates left
+ * aligned and space padded.
+ */
+abstract class FieldType {
+
+    /**
+     * Parse the supplied type definition.
+     *
+     * @param typeDefinition The type definition, e.g. "int" or "decimal(2)".
+     * @return The field type.
+     * @throws SmooksConfigException Unknown or invalid type definition.
+     */
+    static FieldType parse(String typeDefinition) {
+        String name = typeDefinition.trim();
+        String argument = null;
+        int argumentStart = name.indexOf('(');
+        if (argumentStart != -1) {
+            if (!name.endsWith(")")) {
+                throw new SmooksConfigException("Invalid Fixed Length field type '" + typeDefinition + "'.  Missing ')'.");
+            }
+            argument = name.substring(argumentStart + 1, name.length() - 1).trim();
+            name = name.substring(0, argumentStart).trim();
+        }
+
+        switch (name) {
+            case "int":
+                assertNoArgument(typeDefinition, argument);
+                return new IntType();
+            case "long":
+                assertNoArgument(typeDefinition, argument);
+                return new LongType();
+            case "decimal":
+                try {
+                    return new DecimalType(argument != null ? Integer.parseInt(argument) : 0);
+                } catch (NumberFormatException e) {
+                    throw new SmooksConfigException("Invalid Fixed Length field type '" + typeDefinition + "'.  The scale must be an integer.", e);
+                }
+            case "date":
+                if (argument == null || argument.isEmpty()) {
+                    throw new SmooksConfigException("Invalid Fixed Length field type '" + typeDefinition + "'.  A date pattern must be specified, e.g. 'date(yyyyMMdd)'.");
+                }
+                try {
+                    return new DateType(argument);
+                } catch (IllegalArgumentException e) {
+                    throw new SmooksConfigException("Invalid Fixed Length field type '" + typeDefinition + "'.  " + e.getMessage(), e);
+                }
+            default:
+                throw new SmooksConfigException("Unknown Fixed Length field type '" + typeDefinition + "'.  Valid types: [int, long, decimal, date].");
+        }
+    }
+
+    private static void assertNoArgument(String typeDefinition, String argument) {
+        if (argument != null) {
+            throw new SmooksConfigException("Invalid Fixed Length field type '" + typeDefinition + "'.  The type doesn't take an argument.");
+        }
+    }
+
+    /**
+     * The type of the decoded values.
+     */
+    abstract Class<?> getValueType();
+
+    /**
+     * The scale of the decoded decimal values.  Zero for the other types.
+     */
+    int getScale() {
+        return 0;
+    }
+
+    /**
+     * Decode the field value from the supplied characters.
+     *
+     * @param chars  The record characters.
+     * @param offset The offset of the field.
+     * @param length The length of the field.
+     * @return The decoded value, or <code>null</code> if the field is blank.
+     * @throws SmooksException Invalid field value.
+     */
+    abstract Object decode(char[] chars, int offset, int length);
+
+    /**
+     * The canonical text of a decoded value, as emitted in field events.
+     */
+    String toText(Object value) {
+        return value.toString();
+    }
+
+    /**
+     * Encode the value into the supplied characters, the inverse of {@link #decode(char[], int, int)}.
+     *
+     * @param value  The value, or <code>null</code> for a blank field.  Numbers of another type than
+     *               {@link #getValueType()} are converted when that's lossless.  Text is decoded first.
+     * @param chars  The record characters.
+     * @param offset The offset of the field.
+     * @param length The length of the field.
+     * @throws SmooksException The value can't be converted or doesn't fit the field.
+     */
+    void encode(Object value, char[] chars, int offset, int length) {
+        if (value instanceof CharSequence) {
+            String text = value.toString();
+            value = decode(text.toCharArray(), 0, text.length());
+        }
+        if (value == null) {
+            Arrays.fill(chars, offset, offset + length, ' ');
+        } else {
+            encodeValue(value, chars, offset, length);
+        }
+    }
+
+    abstract void encodeValue(Object value, char[] chars, int offset, int length);
+
+    SmooksException doesNotFit(Object value, int length) {
+        return new SmooksException("Fixed Length '" + this + "' field value '" + value + "' doesn't fit in " + length + " characters.");
+    }
+
+    SmooksException notEncodable(Object value, Throwable cause) {
+        return new SmooksException("Fixed Length '" + this + "' field value '" + value + "' of type '" + value.getClass().getName() + "' can't be encoded.", cause);
+    }
+
+    private static class IntType extends FieldType {
+
+        @Override
+        Class<?> getValueType() {
+            return Integer.class;
+        }
+
+        @Override
+        Object decode(char[] chars, int offset, int length) {
+            Object value = decodeNumber(chars, offset, length, 0, false, this);
+            if (value != null) {
+                long longValue = (Long) value;
+                if (longValue < Integer.MIN_VALUE || longValue > Integer.MAX_VALUE) {
+                    throw invalidValue(chars, offset, length, this);
+                }
+                return (int) longValue;
+            }
+            return null;
+        }
+
+        @Override
+        void encodeValue(Object value, char[] chars, int offset, int length) {
+            encodeNumber(toLong(value, this), value, chars, offset, length, this);
+        }
+
+        @Override
+        public String toString() {
+            return "int";
+        }
+    }
+
+    private static class LongType extends FieldType {
+
+        @Override
+        Class<?> getValueType() {
+            return Long.class;
+        }
+
+        @Override
+        Object decode(char[] chars, int offset, int length) {
+            return decodeNumber(chars, offset, length, 0, false, this);
+        }
+
+        @Override
+        void encodeValue(Object value, char[] chars, int offset, int length) {
+            encodeNumber(toLong(value, this), value, chars, offset, length, this);
+        }
+
+        @Override
+        public String toString() {
+            return "long";
+        }
+    }
+
+    private static class DecimalType extends FieldType {
+
+        private final int scale;
+
+        private DecimalType(int scale) {
+            this.scale = scale;
+        }
+
+        @Override
+        Class<?> getValueType() {
+            return BigDecimal.class;
+        }
+
+        @Override
+        int getScale() {
+            return scale;
+        }
+
+        @Override
+        Object decode(char[] chars, int offset, int length) {
+            return decodeNumber(chars, offset, length, scale, true, this);
+        }
+
+        @Override
+        String toText(Object value) {
+            return ((BigDecimal) value).toPlainString();
+        }
+
+        @Override
+        void encodeValue(Object value, char[] chars, int offset, int length) {
+            BigInteger unscaled;
+            try {
+                unscaled = toBigDecimal(value, this).setScale(scale, RoundingMode.UNNECESSARY).unscaledValue();
+            } catch (ArithmeticException e) {
+                throw notEncodable(value, e);
+            }
+            if (unscaled.bitLength() < Long.SIZE) {
+                encodeNumber(unscaled.longValue(), value, chars, offset, length, this);
+            } else {
+                String digits = unscaled.abs().toString();
+                int sign = (unscaled.signum() < 0 ? 1 : 0);
+                if (digits.length() + sign > length) {
+                    throw doesNotFit(value, length);
+                }
+                Arrays.fill(chars, offset, offset + length - digits.length(), '0');
+                digits.getChars(0, digits.length(), chars, offset + length - digits.length());
+                if (sign == 1) {
+                    chars[offset] = '-';
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "decimal(" + scale + ")";
+        }
+    }
+
+    private static class DateType extends FieldType {
+
+        private final String pattern;
+        private final DateTimeFormatter formatter;
+        private final boolean dateTime;
+        // Positions of the numeric fields of simple patterns (e.g. yyyyMMdd, yyyy-MM-dd HH:mm:ss), -1 if absent...
+        private final int[] positions = {-1, -1, -1, -1, -1, -1};
+        // Positions of the literals (e.g. the '-' of yyyy-MM-dd) of simple patterns...
+        private final int[] literals;
+        private final boolean simplePattern;
+
+        private static final int YEAR = 0;
+        private static final int MONTH = 1;
+        private static final int DAY = 2;
+        private static final int HOUR = 3;
+        private static final int MINUTE = 4;
+        private static final int SECOND = 5;
+
+        private DateType(String pattern) {
+            this.pattern = pattern;
+            this.formatter = DateTimeFormatter.ofPattern(pattern);
+            this.simplePattern = compileSimplePattern(pattern);
+            this.literals = IntStream.range(0, pattern.length()).filter(i -> !Character.isLetter(pattern.charAt(i))).toArray();
+            this.dateTime = (simplePattern ? positions[HOUR] != -1 : pattern.indexOf('H') != -1 || pattern.indexOf('h') != -1 || pattern.indexOf('m') != -1);
+        }
+
+        private boolean compileSimplePattern(String pattern) {
+            int i = 0;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i);
+                int run = 1;
+                while (i + run < pattern.length() && pattern.charAt(i + run) == c) {
+                    run++;
+                }
+                int field;
+                if (c == 'y' && run == 4) {
+                    field = YEAR;
+                } else if (c == 'M' && run == 2) {
+                    field = MONTH;
+                } else if (c == 'd' && run == 2) {
+                    field = DAY;
+                } else if (c == 'H' && run == 2) {
+                    field = HOUR;
+                } else if (c == 'm' && run == 2) {
+                    field = MINUTE;
+                } else if (c == 's' && run == 2) {
+                    field = SECOND;
+                } else if (!Character.isLetter(c) && c != '\'') {
+                    i += run;
+                    continue;
+                } else {
+                    return false;
+                }
+                if (positions[field] != -1) {
+                    return false;
+                }
+                positions[field] = i;
+                i += run;
+            }
+            // Dates need a year, month and day.  Times need at least the hours and minutes...
+            return positions[YEAR] != -1 && positions[MONTH] != -1 && positions[DAY] != -1
+                    && (positions[HOUR] == -1 || positions[MINUTE] != -1) && (positions[MINUTE] == -1 || positions[HOUR] != -1)
+                    && (positions[SECOND] == -1 || positions[MINUTE] != -1);
+        }
+
+        @Override
+        Class<?> getValueType() {
+            return (dateTime ? LocalDateTime.class : LocalDate.class);
+        }
+
+        @Override
+        Object decode(char[] chars, int offset, int length) {
+            int start = offset;
+            int end = offset + length;
+            while (start < end && chars[start] <= ' ') {
+                start++;
+            }
+            while (end > start && chars[end - 1] <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                return null;
+            }
+
+            try {
+                if (simplePattern && end - start == pattern.length() && literalsMatch(chars, start)) {
+                    int year = digits(chars, start + positions[YEAR], 4);
+                    int month = digits(chars, start + positions[MONTH], 2);
+                    int day = digits(chars, start + positions[DAY], 2);
+                    if (year >= 0 && month >= 0 && day >= 0) {
+                        if (!dateTime) {
+                            return LocalDate.of(year, month, day);
+                        }
+                        int hour = digits(chars, start + positions[HOUR], 2);
+                        int minute = digits(chars, start + positions[MINUTE], 2);
+                        int second = (positions[SECOND] != -1 ? digits(chars, start + positions[SECOND], 2) : 0);
+                        if (hour >= 0 && minute >= 0 && second >= 0) {
+                            return LocalDateTime.of(year, month, day, hour, minute, second);
+                        }
+                    }
+                }
+
+                // Not a simple pattern, or the literals don't line up.  Parse the characters in place...
+                TemporalAccessor temporal = formatter.parse(CharBuffer.wrap(chars, start, end - start));
+                if (dateTime) {
+                    return LocalDateTime.from(temporal);
+                }
+                return LocalDate.from(temporal);
+            } catch (DateTimeException e) {
+                throw new SmooksException("Invalid Fixed Length '" + this + "' field value '" + new String(chars, offset, length) + "'.", e);
+            }
+        }
+
+        private boolean literalsMatch(char[] chars, int start) {
+            for (int literal : literals) {
+                if (chars[start + literal] != pattern.charAt(literal)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void encodeValue(Object value, char[] chars, int offset, int length) {
+            int end = offset + length;
+            if (simplePattern && length >= pattern.length() && (value instanceof LocalDateTime || (value instanceof LocalDate && !dateTime))) {
+                // Write the digits straight into the pattern's literals...
+                LocalDate date = (value instanceof LocalDate ? (LocalDate) value : ((LocalDateTime) value).toLocalDate());
+                if (date.getYear() >= 0 && date.getYear() <= 9999) {
+                    pattern.getChars(0, pattern.length(), chars, offset);
+                    putDigits(date.getYear(), chars, offset + positions[YEAR], 4);
+                    putDigits(date.getMonthValue(), chars, offset + positions[MONTH], 2);
+                    putDigits(date.getDayOfMonth(), chars, offset + positions[DAY], 2);
+                    if (dateTime) {
+                        LocalDateTime dateTimeValue = (LocalDateTime) value;
+                        putDigits(dateTimeValue.getHour(), chars, offset + positions[HOUR], 2);
+                        putDigits(dateTimeValue.getMinute(), chars, offset + positions[MINUTE], 2);
+                        if (positions[SECOND] != -1) {
+                            putDigits(dateTimeValue.getSecond(), chars, offset + positions[SECOND], 2);
+                        }
+                    }
+                    Arrays.fill(chars, offset + pattern.length(), end, ' ');
+                    return;
+                }
+            }
+            if (!(value instanceof TemporalAccessor)) {
+                throw notEncodable(value, null);
+            }
+
+            String text;
+            try {
+                text = formatter.format((TemporalAccessor) value);
+            } catch (DateTimeException e) {
+                throw notEncodable(value, e);
+            }
+            if (text.length() > length) {
+                throw doesNotFit(value, length);
+            }
+            text.getChars(0, text.length(), chars, offset);
+            Arrays.fill(chars, offset + text.length(), end, ' ');
+        }
+
+        private static void putDigits(int value, char[] chars, int offset, int count) {
+            for (int i = offset + count - 1; i >= offset; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+        private static int digits(char[] chars, int offset, int count) {
+            int value = 0;
+            for (int i = offset; i < offset + count; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "date(" + pattern + ")";
+        }
+    }
+
+    /**
+     * Decode a (possibly signed, overpunched, padded or decimal) number.
+     *
+     * @return A {@link Long} (integer types) or {@link BigDecimal} (decimal type), or <code>null</code> if the field is blank.
+     */
+    private static Object decodeNumber(char[] chars, int offset, int length, int impliedScale, boolean decimal, FieldType fieldType) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        boolean negative = false;
+        if (chars[start] == '-' || chars[start] == '+') {
+            negative = (chars[start] == '-');
+            start++;
+        }
+
+        long unscaled = 0;
+        BigInteger bigUnscaled = null;
+        int digitCount = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c == '.' && decimal && scale == -1) {
+                scale = 0;
+                continue;
+            } else if (i == end - 1 && overpunchDigit(c) != -1) {
+                digit = overpunchDigit(c);
+                negative = negative || isNegativeOverpunch(c);
+            } else {
+                throw invalidValue(chars, offset, length, fieldType);
+            }
+
+            if (!decimal) {
+                try {
+                    unscaled = Math.addExact(Math.multiplyExact(unscaled, 10), digit);
+                } catch (ArithmeticException e) {
+                    throw invalidValue(chars, offset, length, fieldType);
+                }
+            } else if (bigUnscaled == null && digitCount < 18) {
+                unscaled = unscaled * 10 + digit;
+            } else {
+                if (bigUnscaled == null) {
+                    bigUnscaled = BigInteger.valueOf(unscaled);
+                }
+                bigUnscaled = bigUnscaled.multiply(BigInteger.TEN).add(BigInteger.valueOf(digit));
+            }
+            digitCount++;
+            if (scale != -1) {
+                scale++;
+            }
+        }
+        if (digitCount == 0) {
+            throw invalidValue(chars, offset, length, fieldType);
+        }
+
+        if (!decimal) {
+            return (negative ? -unscaled : unscaled);
+        }
+        if (scale == -1) {
+            scale = impliedScale;
+        }
+        if (bigUnscaled != null) {
+            return new BigDecimal(negative ? bigUnscaled.negate() : bigUnscaled, scale);
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    /**
+     * Encode a number right aligned and zero padded, with a leading '-' sign when negative.
+     */
+    private static void encodeNumber(long number, Object value, char[] chars, int offset, int length, FieldType fieldType) {
+        boolean negative = number < 0;
+        // Work with the negated (non positive) number, so Long.MIN_VALUE doesn't overflow...
+        long remaining = (negative ? number : -number);
+        int start = offset + (negative ? 1 : 0);
+        int i = offset + length;
+        do {
+            if (i == start) {
+                throw fieldType.doesNotFit(value, length);
+            }
+            chars[--i] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        while (i > start) {
+            chars[--i] = '0';
+        }
+        if (negative) {
+            chars[offset] = '-';
+        }
+    }
+
+    private static long toLong(Object value, FieldType fieldType) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return toBigDecimal(value, fieldType).longValueExact();
+        } catch (ArithmeticException e) {
+            throw fieldType.notEncodable(value, e);
+        }
+    }
+
+    private static BigDecimal toBigDecimal(Object value, FieldType fieldType) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            try {
+                return new BigDecimal(value.toString());
+            } catch (NumberFormatException e) {
+                throw fieldType.notEncodable(value, e);
+            }
+        }
+        throw fieldType.notEncodable(value, null);
+    }
+
+    private static int overpunchDigit(char c) {
+        if (c == '{' || c == '}') {
+            return 0;
+        } else if (c >= 'A' && c <= 'I') {
+            return c - 'A' + 1;
+        } else if (c >= 'J' && c <= 'R') {
+            return c - 'J' + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isNegativeOverpunch(char c) {
+        return c == '}' || (c >= 'J' && c <= 'R');
+    }
+
+    private static SmooksException invalidValue(char[] chars, int offset, int length, FieldType fieldType) {
+        return new SmooksException("Invalid Fixed Length '" + fieldType + "' field value '" + new String(chars, offset, length) + "'.");
+    }
+}
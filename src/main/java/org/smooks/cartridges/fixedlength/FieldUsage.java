@@ -0,0 +1,154 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.delivery.ContentDeliveryConfig;
+import org.smooks.api.delivery.ContentHandlerBinding;
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.engine.delivery.ContentHandlerBindingIndex;
+import org.smooks.engine.delivery.sax.ng.SaxNgContentDeliveryConfig;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Fixed Length fields consumed by the visitors of a {@link ContentDeliveryConfig}.
+ * <p/>
+ * A field is consumed when a visitor (e.g. a bean binding) targets the field element, or the field attribute when the
+ * fields are emitted as attributes.  All fields are consumed when the default serialization is on, when a non system
+ * visitor targets all elements ("*"), or when the content isn't filtered with SAX NG.  Unconsumed fields are pruned to
+ * ignored fields, so they're never decoded or emitted.
+ */
+final class FieldUsage {
+
+    private static final String ALL_ELEMENTS = "*";
+    private static final char ATTRIBUTE_PREFIX = '@';
+
+    private final ContentDeliveryConfig contentDeliveryConfig;
+    // The consumed field names, or null when all the fields are consumed...
+    private final Set<String> consumedFields;
+    // Keyed by the (identity of the) layout fields...
+    private final Map<Field[], Field[]> prunedFields = new ConcurrentHashMap<>();
+
+    private FieldUsage(ContentDeliveryConfig contentDeliveryConfig, Set<String> consumedFields) {
+        this.contentDeliveryConfig = contentDeliveryConfig;
+        this.consumedFields = consumedFields;
+    }
+
+    /**
+     * Collect the fields consumed by the visitors of the content delivery config.
+     *
+     * @param contentDeliveryConfig The content delivery config.
+     * @return The field usage.
+     */
+    static FieldUsage of(ContentDeliveryConfig contentDeliveryConfig) {
+        if (contentDeliveryConfig.isDefaultSerializationOn() || !(contentDeliveryConfig instanceof SaxNgContentDeliveryConfig)) {
+            return new FieldUsage(contentDeliveryConfig, null);
+        }
+
+        SaxNgContentDeliveryConfig saxNgContentDeliveryConfig = (SaxNgContentDeliveryConfig) contentDeliveryConfig;
+        Set<String> consumedFields = new HashSet<>();
+        for (ContentHandlerBindingIndex<?> visitorIndex : Arrays.asList(saxNgContentDeliveryConfig.getBeforeVisitorIndex(), saxNgContentDeliveryConfig.getChildVisitorIndex(), saxNgContentDeliveryConfig.getAfterVisitorIndex())) {
+            for (Map.Entry<String, ? extends List<? extends ContentHandlerBinding<?>>> visitorBindings : visitorIndex.entrySet()) {
+                for (ContentHandlerBinding<?> visitorBinding : visitorBindings.getValue()) {
+                    ResourceConfig resourceConfig = visitorBinding.getResourceConfig();
+                    if (resourceConfig.isSystem()) {
+                        continue;
+                    }
+                    if (visitorBindings.getKey().equals(ALL_ELEMENTS)) {
+                        return new FieldUsage(contentDeliveryConfig, null);
+                    }
+
+                    consumedFields.add(visitorBindings.getKey());
+
+                    // Attribute selectors (e.g. "record/@firstname") are indexed under the element...
+                    String selector = resourceConfig.getSelectorPath().getSelector();
+                    int attributeStart = selector.lastIndexOf(ATTRIBUTE_PREFIX);
+                    if (attributeStart != -1 && selector.indexOf('/', attributeStart) == -1) {
+                        consumedFields.add(selector.substring(attributeStart + 1));
+                    }
+                }
+            }
+        }
+
+        return new FieldUsage(contentDeliveryConfig, consumedFields);
+    }
+
+    ContentDeliveryConfig getContentDeliveryConfig() {
+        return contentDeliveryConfig;
+    }
+
+    /**
+     * Is the field consumed.
+     *
+     * @param fieldName The field name.
+     * @return True if a visitor consumes the field, otherwise false.
+     */
+    boolean isConsumed(String fieldName) {
+        return consumedFields == null || consumedFields.contains(fieldName);
+    }
+
+    /**
+     * Prune the unconsumed fields of a record layout.  The pruned fields are cached per layout.
+     *
+     * @param fields The fields of the record layout.
+     * @return The fields, with the unconsumed fields ignored.
+     */
+    Field[] prune(Field[] fields) {
+        if (consumedFields == null) {
+            return fields;
+        }
+
+        return prunedFields.computeIfAbsent(fields, layoutFields -> {
+            Field[] pruned = new Field[layoutFields.length];
+            for (int i = 0; i < layoutFields.length; i++) {
+                pruned[i] = (isConsumed(layoutFields[i].getName()) ? layoutFields[i] : layoutFields[i].asIgnored());
+            }
+            return pruned;
+        });
+    }
+}
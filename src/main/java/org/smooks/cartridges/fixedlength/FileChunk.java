@@ -0,0 +1,246 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksConfigException;
+import org.smooks.assertion.AssertArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Record aligned chunk of a Fixed Length file.
+ * <p/>
+ * A file is split into chunks of roughly the same size.  Every chunk starts at the beginning of a line and ends
+ * after a line terminator (or at the end of the file), so the chunks can be parsed independently of each other and
+ * the results merged in chunk order.  The chunk boundaries are found by scanning forward from the split point to the
+ * next line terminator, so the lines don't need to have a constant width.
+ * <p/>
+ * Splitting requires an encoding in which a line terminator byte can't be part of another character i.e. a single
+ * byte encoding or UTF-8.
+ */
+final class FileChunk {
+
+    private static final int SCAN_WINDOW_SIZE = 8192;
+
+    private final long position;
+    private final long length;
+
+    private FileChunk(long position, long length) {
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * Split a file into record aligned chunks, starting at the current position of the channel.
+     *
+     * @param channel   The file channel. The position of the channel is not changed.
+     * @param encoding  The encoding of the file.
+     * @param chunkSize The approximate size of a chunk in bytes.
+     * @return The chunks, in file order.
+     * @throws IOException Error reading the file.
+     */
+    static List<FileChunk> split(FileChannel channel, Charset encoding, long chunkSize) throws IOException {
+        AssertArgument.isNotNull(channel, "channel");
+        AssertArgument.isNotNull(encoding, "encoding");
+        assertSplittableEncoding(encoding);
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("'chunkSize' must be greater than zero.");
+        }
+
+        byte lf = "\n".getBytes(encoding)[0];
+        byte cr = "\r".getBytes(encoding)[0];
+        long start = channel.position();
+        long end = channel.size();
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW_SIZE);
+        List<FileChunk> chunks = new ArrayList<>();
+
+        while (start < end) {
+            long boundary = nextLineStart(channel, start + chunkSize, end, lf, cr, window);
+            chunks.add(new FileChunk(start, boundary - start));
+            start = boundary;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Assert that a file with the supplied encoding can be split into chunks.
+     *
+     * @param encoding The encoding.
+     * @throws SmooksConfigException The encoding is not a single byte encoding or UTF-8.
+     */
+    static void assertSplittableEncoding(Charset encoding) throws SmooksConfigException {
+        if (!isSplittableEncoding(encoding)) {
+            throw new SmooksConfigException("Encoding '" + encoding.name() + "' is not supported for parallel Fixed Length parsing. A single byte encoding or UTF-8 is required.");
+        }
+    }
+
+    /**
+     * Whether a file with the supplied encoding can be split into chunks i.e. whether a line terminator byte can't be
+     * part of another character.
+     *
+     * @param encoding The encoding.
+     * @return True for single byte encodings and UTF-8.
+     */
+    static boolean isSplittableEncoding(Charset encoding) {
+        boolean splittable;
+        try {
+            splittable = encoding.equals(StandardCharsets.UTF_8) || encoding.newEncoder().maxBytesPerChar() == 1.0f;
+        } catch (UnsupportedOperationException e) {
+            splittable = false;
+        }
+
+        return splittable && "\n".getBytes(encoding).length == 1 && "\r".getBytes(encoding).length == 1;
+    }
+
+    /**
+     * The file position of the first byte of the chunk.
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * The length of the chunk in bytes.
+     */
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Open an {@link InputStream} on the chunk.
+     * <p/>
+     * The stream uses positional reads, so streams on different chunks of the same channel can be read
+     * concurrently.  Closing the stream doesn't close the channel.
+     *
+     * @param channel The file channel the chunk was split from.
+     * @return The chunk stream.
+     */
+    InputStream openStream(FileChannel channel) {
+        return new ChunkInputStream(channel, position, position + length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[position=%s,length=%s]", getClass().getSimpleName(), position, length);
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long end, byte lf, byte cr, ByteBuffer window) throws IOException {
+        long position = from;
+        boolean afterCR = false;
+
+        while (position < end) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = window.get(i);
+                if (afterCR) {
+                    return (b == lf ? position + i + 1 : position + i);
+                }
+                if (b == lf) {
+                    return position + i + 1;
+                }
+                afterCR = (b == cr);
+            }
+            position += read;
+        }
+
+        return end;
+    }
+
+    private static class ChunkInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private ChunkInputStream(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(end - position, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -57,6 +57,8 @@ public class FixedLengthBinding {
     private Class<?> beanClass;
     private FixedLengthBindingType bindingType;
     private String keyField;
+    private boolean longKeys;
+    private int initialCapacity;
 
     public FixedLengthBinding(String beanId, Class<?> beanClass, FixedLengthBindingType bindingType) {
         AssertArgument.isNotNullAndNotEmpty(beanId, "beanId");
@@ -66,6 +68,16 @@ public class FixedLengthBinding {
         this.bindingType = bindingType;
     }
 
+    /**
+     * Create a {@link FixedLengthBindingType#COLUMNAR} binding.
+     *
+     * @param beanId The ID under which the {@link FixedLengthColumns} are bound.
+     * @return The binding.
+     */
+    public static FixedLengthBinding columnar(String beanId) {
+        return new FixedLengthBinding(beanId, FixedLengthColumns.class, FixedLengthBindingType.COLUMNAR);
+    }
+
     public String getBeanId() {
         return beanId;
     }
@@ -86,4 +98,37 @@ public class FixedLengthBinding {
         this.keyField = keyField;
         return this;
     }
+
+    public boolean isLongKeys() {
+        return longKeys;
+    }
+
+    /**
+     * Bind the records of a MAP binding into a {@link FixedLengthLongKeyMap}, with primitive long keys.
+     *
+     * @param longKeys True if the key field values are long values (e.g. numeric account IDs).
+     * @return This binding configuration.
+     */
+    public FixedLengthBinding setLongKeys(boolean longKeys) {
+        this.longKeys = longKeys;
+        return this;
+    }
+
+    public int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    /**
+     * Pre-size the map of a MAP binding.
+     *
+     * @param initialCapacity The expected number of records.  Zero for the default capacity.
+     * @return This binding configuration.
+     */
+    public FixedLengthBinding setInitialCapacity(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("'initialCapacity' must not be negative.");
+        }
+        this.initialCapacity = initialCapacity;
+        return this;
+    }
 }
@@ -0,0 +1,96 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The maps of {@link FixedLengthBindingType#MAP MAP} bindings, shared by the {@link FixedLengthReader} and the
+ * {@link org.smooks.cartridges.fixedlength.prog.FixedLengthMapBinder}.
+ */
+public final class FixedLengthBindingMaps {
+
+    private FixedLengthBindingMaps() {
+    }
+
+    /**
+     * Create the map of a MAP binding.
+     *
+     * @param longKeys        True for a {@link FixedLengthLongKeyMap}, false for a {@link LinkedHashMap}.
+     * @param initialCapacity The expected number of records, or 0 for the default capacity.
+     * @return The map, holding the expected number of records without resizing.
+     */
+    public static Map<?, Object> newMap(boolean longKeys, int initialCapacity) {
+        if (longKeys) {
+            return new FixedLengthLongKeyMap<>(initialCapacity);
+        }
+        return new LinkedHashMap<>(initialCapacity > 0 ? (int) Math.min(initialCapacity / 0.75 + 1, Integer.MAX_VALUE) : 16);
+    }
+
+    /**
+     * Put a record into a map created by {@link #newMap(boolean, int)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static void put(Map<?, Object> map, Object key, Object record) {
+        if (map instanceof FixedLengthLongKeyMap) {
+            ((FixedLengthLongKeyMap<Object>) map).put(FixedLengthLongKeyMap.toKey(key), record);
+        } else {
+            ((Map<Object, Object>) map).put(key, record);
+        }
+    }
+
+    /**
+     * Put all the records of one map into another, both created by {@link #newMap(boolean, int)}.  Long key maps are
+     * merged without boxing the keys.
+     */
+    @SuppressWarnings("unchecked")
+    public static void putAll(Map<?, Object> map, Map<?, ?> records) {
+        if (map instanceof FixedLengthLongKeyMap && records instanceof FixedLengthLongKeyMap) {
+            FixedLengthLongKeyMap<Object> longKeyMap = (FixedLengthLongKeyMap<Object>) map;
+            ((FixedLengthLongKeyMap<?>) records).forEachEntry(longKeyMap::put);
+        } else {
+            records.forEach((key, record) -> put(map, key, record));
+        }
+    }
+}
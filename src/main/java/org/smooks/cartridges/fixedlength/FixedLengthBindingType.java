@@ -68,5 +68,13 @@ public enum FixedLengthBindingType {
      * Map entry keys coming from the 'keyField' name on the
      * {@link CSVBinding} instance.
      */
-    MAP
+    MAP,
+    /**
+     * Bind the records into a {@link FixedLengthColumns} instance.
+     * <p/>
+     * Creates a {@link FixedLengthColumns} under the binding 'beanId' name, holding
+     * the field values column by column in primitive arrays.  The binding class
+     * must be {@link FixedLengthColumns}.
+     */
+    COLUMNAR
 }
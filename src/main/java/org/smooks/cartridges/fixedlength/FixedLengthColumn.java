@@ -0,0 +1,423 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A column of a {@link FixedLengthColumns} result, holding the values of one Fixed Length field for all records.
+ * <p/>
+ * The values are stored in primitive arrays, one element per row, so a column can be scanned without touching
+ * per-record objects.  The typed columns are:
+ * <ul>
+ *     <li>{@link IntColumn}: "int" fields.</li>
+ *     <li>{@link LongColumn}: "long" fields.</li>
+ *     <li>{@link DecimalColumn}: "decimal" fields, as unscaled longs of the field scale.</li>
+ *     <li>{@link DateColumn}: "date" fields, as epoch days (dates) or UTC epoch seconds (date times).</li>
+ *     <li>{@link StringColumn}: untyped fields, dictionary encoded.</li>
+ * </ul>
+ * Blank typed fields and truncated fields are null.  The primitive value of a null row is zero.
+ */
+public abstract class FixedLengthColumn {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String name;
+    private final BitSet nulls = new BitSet();
+    int size;
+
+    FixedLengthColumn(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The field name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Is the value of a row null.
+     *
+     * @param row The row index.
+     * @return True if the value is null, otherwise false.
+     */
+    public boolean isNull(int row) {
+        checkRow(row);
+        return nulls.get(row);
+    }
+
+    /**
+     * The (boxed) value of a row.
+     *
+     * @param row The row index.
+     * @return The value, or <code>null</code>.
+     */
+    public abstract Object getValue(int row);
+
+    /**
+     * Append a null value.
+     */
+    void appendNull() {
+        nulls.set(size);
+        appendZero();
+    }
+
+    abstract void appendZero();
+
+    /**
+     * Trim the value arrays to the number of rows.
+     */
+    abstract void trimToSize();
+
+    void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range [0, " + size + ").");
+        }
+    }
+
+    static int grow(int capacity) {
+        return (capacity == 0 ? INITIAL_CAPACITY : Math.max(capacity + (capacity >> 1), capacity + 1));
+    }
+
+    /**
+     * An "int" field column.
+     */
+    public static final class IntColumn extends FixedLengthColumn {
+
+        private int[] values = new int[0];
+
+        IntColumn(String name) {
+            super(name);
+        }
+
+        public int getInt(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        /**
+         * The values of all rows.  The array is the column's own storage and must not be modified.
+         */
+        public int[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return (isNull(row) ? null : values[row]);
+        }
+
+        void append(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        void appendZero() {
+            append(0);
+        }
+
+        @Override
+        void trimToSize() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * A "long" field column.
+     */
+    public static class LongColumn extends FixedLengthColumn {
+
+        private long[] values = new long[0];
+
+        LongColumn(String name) {
+            super(name);
+        }
+
+        public long getLong(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        /**
+         * The values of all rows.  The array is the column's own storage and must not be modified.
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return (isNull(row) ? null : values[row]);
+        }
+
+        void append(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        void appendZero() {
+            append(0);
+        }
+
+        @Override
+        void trimToSize() {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * A "decimal" field column.  The values are stored unscaled, e.g. 123.45 is stored as 12345 in a column of scale 2.
+     */
+    public static final class DecimalColumn extends LongColumn {
+
+        private final int scale;
+
+        DecimalColumn(String name, int scale) {
+            super(name);
+            this.scale = scale;
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+        public BigDecimal getDecimal(int row) {
+            return (isNull(row) ? null : BigDecimal.valueOf(getLong(row), scale));
+        }
+
+        public double getDouble(int row) {
+            return getLong(row) / Math.pow(10, scale);
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return getDecimal(row);
+        }
+    }
+
+    /**
+     * A "date" field column.  Dates are stored as epoch days, date times as UTC epoch seconds.
+     */
+    public static final class DateColumn extends LongColumn {
+
+        private final boolean dateTime;
+
+        DateColumn(String name, boolean dateTime) {
+            super(name);
+            this.dateTime = dateTime;
+        }
+
+        /**
+         * Does the column hold date times (epoch seconds) rather than dates (epoch days).
+         */
+        public boolean isDateTime() {
+            return dateTime;
+        }
+
+        public LocalDate getDate(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            return (dateTime ? getDateTime(row).toLocalDate() : LocalDate.ofEpochDay(getLong(row)));
+        }
+
+        public LocalDateTime getDateTime(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            return (dateTime ? LocalDateTime.ofEpochSecond(getLong(row), 0, ZoneOffset.UTC) : LocalDate.ofEpochDay(getLong(row)).atStartOfDay());
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return (dateTime ? getDateTime(row) : getDate(row));
+        }
+    }
+
+    /**
+     * An untyped field column.  Every distinct value is stored once in the dictionary, the rows hold the dictionary
+     * codes of their values (-1 for null rows).
+     */
+    public static final class StringColumn extends FixedLengthColumn {
+
+        private int[] codes = new int[0];
+        private String[] dictionary = new String[16];
+        private int dictionarySize;
+        // Open addressing table of dictionary codes + 1 (0 is an empty slot)...
+        private int[] table = new int[32];
+
+        StringColumn(String name) {
+            super(name);
+        }
+
+        public int getCode(int row) {
+            checkRow(row);
+            return codes[row];
+        }
+
+        public String getString(int row) {
+            int code = getCode(row);
+            return (code == -1 ? null : dictionary[code]);
+        }
+
+        /**
+         * The dictionary codes of all rows.  The array is the column's own storage and must not be modified.
+         */
+        public int[] getCodes() {
+            return codes;
+        }
+
+        /**
+         * The distinct values, indexed by dictionary code.
+         */
+        public String[] getDictionary() {
+            return Arrays.copyOf(dictionary, dictionarySize);
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return getString(row);
+        }
+
+        void append(char[] chars, int offset, int length) {
+            appendCode(lookup(chars, offset, length));
+        }
+
+        @Override
+        void appendNull() {
+            super.appendNull();
+            codes[size - 1] = -1;
+        }
+
+        @Override
+        void appendZero() {
+            appendCode(0);
+        }
+
+        private void appendCode(int code) {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length));
+            }
+            codes[size++] = code;
+        }
+
+        private int lookup(char[] chars, int offset, int length) {
+            int hash = 0;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + chars[i];
+            }
+
+            int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            while (table[slot] != 0) {
+                String value = dictionary[table[slot] - 1];
+                if (value.length() == length && value.hashCode() == hash && equals(value, chars, offset, length)) {
+                    return table[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            // A new value.  Its String hash code is the hash computed above...
+            if (dictionarySize == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, dictionary.length * 2);
+            }
+            int code = dictionarySize++;
+            dictionary[code] = new String(chars, offset, length);
+            table[slot] = code + 1;
+            if (dictionarySize * 2 > table.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int code = 0; code < dictionarySize; code++) {
+                int slot = mix(dictionary[code].hashCode()) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = code + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean equals(String value, char[] chars, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        void trimToSize() {
+            codes = Arrays.copyOf(codes, size);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar Fixed Length binding result, bound by the {@link FixedLengthBindingType#COLUMNAR} binding type.
+ * <p/>
+ * Holds the values of every (non ignored) field of the default record layout in a {@link FixedLengthColumn} of
+ * primitive values, in record order, instead of an object per record.
+ */
+public final class FixedLengthColumns {
+
+    private final Map<String, FixedLengthColumn> columns = new LinkedHashMap<>();
+    private int rowCount;
+
+    FixedLengthColumns() {
+    }
+
+    void addColumn(FixedLengthColumn column) {
+        columns.put(column.getName(), column);
+    }
+
+    void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * The number of rows (bound records).
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * The names of the columns, in field order.
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    /**
+     * The columns, in field order.
+     */
+    public List<FixedLengthColumn> getColumns() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.values()));
+    }
+
+    /**
+     * The column of a field.
+     *
+     * @param name The field name.
+     * @return The column.
+     * @throws IllegalArgumentException Unknown column.
+     */
+    public FixedLengthColumn getColumn(String name) {
+        FixedLengthColumn column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown Fixed Length column '" + name + "'.  Valid columns: " + columns.keySet() + ".");
+        }
+        return column;
+    }
+
+    /**
+     * The column of a field, as the expected column type.
+     *
+     * @param name       The field name.
+     * @param columnType The expected column type, e.g. {@link FixedLengthColumn.IntColumn}.
+     * @return The column.
+     * @throws IllegalArgumentException Unknown column, or the column isn't of the expected type.
+     */
+    public <T extends FixedLengthColumn> T getColumn(String name, Class<T> columnType) {
+        FixedLengthColumn column = getColumn(name);
+        if (!columnType.isInstance(column)) {
+            throw new IllegalArgumentException("Fixed Length column '" + name + "' is a " + column.getClass().getSimpleName() + ", not a " + columnType.getSimpleName() + ".");
+        }
+        return columnType.cast(column);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[rowCount=%s,columns=%s]", getClass().getSimpleName(), rowCount, columns.keySet());
+    }
+}
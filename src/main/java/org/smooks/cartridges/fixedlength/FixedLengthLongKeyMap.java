@@ -0,0 +1,416 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Compact {@link Map} with primitive <code>long</code> keys, as bound by a {@link FixedLengthBindingType#MAP} binding
+ * with long keys (e.g. numeric account IDs).
+ * <p/>
+ * The keys and values are held in insertion ordered arrays, indexed by an open addressing hash table of
+ * <code>int</code> positions, so an entry costs a <code>long</code>, a reference and (at most) two <code>int</code>s
+ * instead of a boxed key and a linked entry object.  Iteration is in insertion order, like a
+ * {@link java.util.LinkedHashMap}.  Use the primitive {@link #get(long)}, {@link #put(long, Object)} and
+ * {@link #forEachEntry(EntryConsumer)} methods to avoid boxing the keys.  Null keys are not supported.  Not thread safe.
+ *
+ * @param <V> The value type.
+ */
+public class FixedLengthLongKeyMap<V> extends AbstractMap<Long, V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    /**
+     * The maximum number of entries.  The hash table (twice the capacity, rounded up to a power of two) must fit in an
+     * <code>int</code> indexed array.
+     */
+    public static final int MAX_CAPACITY = 1 << 29;
+    private static final Object REMOVED = new Object();
+
+    private long[] keys;
+    private Object[] values;
+    // Number of used positions in the keys and values arrays, including removed entries...
+    private int count;
+    private int size;
+    // Open addressing table of positions + 1 (0 is an empty slot)...
+    private int[] table;
+    private int modCount;
+
+    public FixedLengthLongKeyMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The expected number of entries.  The map holds that many entries without resizing.
+     * @throws IllegalArgumentException The expected size is negative or greater than {@link #MAX_CAPACITY}.
+     */
+    public FixedLengthLongKeyMap(int expectedSize) {
+        if (expectedSize < 0 || expectedSize > MAX_CAPACITY) {
+            throw new IllegalArgumentException("'expectedSize' must be between 0 and " + MAX_CAPACITY + ".");
+        }
+        int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        table = new int[tableSize(capacity)];
+    }
+
+    /**
+     * Convert a bound key value to a <code>long</code> key.
+     *
+     * @param key The key value, an integral {@link Number} or numeric text.
+     * @return The long key.
+     * @throws IllegalArgumentException The key value isn't a long value.
+     */
+    public static long toKey(Object key) {
+        try {
+            if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+                return ((Number) key).longValue();
+            } else if (key instanceof BigInteger) {
+                return ((BigInteger) key).longValueExact();
+            } else if (key instanceof BigDecimal) {
+                return ((BigDecimal) key).longValueExact();
+            } else if (key instanceof CharSequence) {
+                return Long.parseLong(key.toString().trim());
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("Map key '" + key + "' is not a long value.", e);
+        }
+        throw new IllegalArgumentException("Map key '" + key + "' is not a long value.");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && containsKey((long) (Long) key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = slotOf(key);
+        return (slot >= 0 ? (V) values[table[slot] - 1] : null);
+    }
+
+    @Override
+    public V get(Object key) {
+        return (key instanceof Long ? get((long) (Long) key) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            int position = table[slot] - 1;
+            V previous = (V) values[position];
+            values[position] = value;
+            return previous;
+        }
+
+        if (count == keys.length) {
+            // Compact when at least half of the positions are removed entries, otherwise grow...
+            if (size <= count / 2) {
+                resize(keys.length);
+            } else if (keys.length < MAX_CAPACITY) {
+                resize(Math.min(keys.length + (keys.length >> 1), MAX_CAPACITY));
+            } else {
+                throw new IllegalStateException("FixedLengthLongKeyMap can't hold more than " + MAX_CAPACITY + " entries.");
+            }
+            slot = slotOf(key);
+        }
+        keys[count] = key;
+        values[count] = value;
+        table[~slot] = ++count;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        return put((long) Objects.requireNonNull(key, "key"), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return null;
+        }
+
+        int position = table[slot] - 1;
+        V previous = (V) values[position];
+        values[position] = REMOVED;
+        size--;
+        modCount++;
+        deleteSlot(slot);
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        return (key instanceof Long ? remove((long) (Long) key) : null);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, count, null);
+        Arrays.fill(table, 0);
+        count = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Entry consumer with a primitive key.
+     */
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    /**
+     * Pass every entry to the consumer, in insertion order, without boxing the keys.
+     *
+     * @param consumer The entry consumer.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(EntryConsumer<? super V> consumer) {
+        for (int position = 0; position < count; position++) {
+            if (values[position] != REMOVED) {
+                consumer.accept(keys[position], (V) values[position]);
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Long, V>> entrySet() {
+        return new AbstractSet<Map.Entry<Long, V>>() {
+            @Override
+            public Iterator<Map.Entry<Long, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                FixedLengthLongKeyMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * The table slot of the key, or the complement of the empty slot where the key belongs.
+     */
+    private int slotOf(long key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            if (keys[table[slot] - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Empty a slot, shifting back the entries of its probe sequence (linear probing has no tombstones).
+     */
+    private void deleteSlot(int slot) {
+        int mask = table.length - 1;
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (table[next] != 0) {
+            int home = hash(keys[table[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] newKeys = new long[capacity];
+        Object[] newValues = new Object[capacity];
+        int newCount = 0;
+        for (int position = 0; position < count; position++) {
+            if (values[position] != REMOVED) {
+                newKeys[newCount] = keys[position];
+                newValues[newCount] = values[position];
+                newCount++;
+            }
+        }
+
+        keys = newKeys;
+        values = newValues;
+        count = newCount;
+        table = new int[tableSize(capacity)];
+        for (int position = 0; position < count; position++) {
+            table[~slotOf(keys[position])] = position + 1;
+        }
+    }
+
+    private static int tableSize(int capacity) {
+        // At most half full...
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<Long, V>> {
+
+        private int next = advance(0);
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        private int advance(int position) {
+            while (position < count && values[position] == REMOVED) {
+                position++;
+            }
+            return position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public Map.Entry<Long, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= count) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = advance(next + 1);
+            return new Entry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Removing marks the position, so the following positions don't move...
+            FixedLengthLongKeyMap.this.remove(keys[last]);
+            expectedModCount = modCount;
+            last = -1;
+        }
+    }
+
+    private class Entry implements Map.Entry<Long, V> {
+
+        private final int position;
+
+        private Entry(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public Long getKey() {
+            return keys[position];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return (V) values[position];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            V previous = (V) values[position];
+            values[position] = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+            return getKey().equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(keys[position]) ^ Objects.hashCode(values[position]);
+        }
+
+        @Override
+        public String toString() {
+            return keys[position] + "=" + values[position];
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of a single Fixed Length execution.
+ *
+ * @see FixedLengthMetricsListener
+ */
+public final class FixedLengthMetrics {
+
+    private final long records;
+    private final long skippedRecords;
+    private final long truncatedRecords;
+    private final long characters;
+    private final long elapsedNanos;
+    private final long functionNanos;
+    private final long contentHandlerNanos;
+    private final long bindingNanos;
+    private final boolean failed;
+
+    FixedLengthMetrics(long records, long skippedRecords, long truncatedRecords, long characters, long elapsedNanos,
+                       long functionNanos, long contentHandlerNanos, long bindingNanos, boolean failed) {
+        this.records = records;
+        this.skippedRecords = skippedRecords;
+        this.truncatedRecords = truncatedRecords;
+        this.characters = characters;
+        this.elapsedNanos = elapsedNanos;
+        this.functionNanos = functionNanos;
+        this.contentHandlerNanos = contentHandlerNanos;
+        this.bindingNanos = bindingNanos;
+        this.failed = failed;
+    }
+
+    /**
+     * The number of records emitted (or bound), including truncated records.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * The number of records skipped in strict mode because they don't contain enough characters for all
+     * the fields.  Lines skipped by <code>skipLines</code> are not counted.
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    /**
+     * The number of records emitted in non strict mode, even though they don't contain enough characters for
+     * all the fields.
+     */
+    public long getTruncatedRecords() {
+        return truncatedRecords;
+    }
+
+    /**
+     * The number of record characters read, excluding line terminators.  Equal to the number of bytes read for
+     * single byte encodings.
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    /**
+     * The wall clock duration of the execution.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The time spent in string functions and typed field decoding while generating field events.
+     */
+    public long getFunctionNanos() {
+        return functionNanos;
+    }
+
+    /**
+     * The time spent in the downstream {@link org.xml.sax.ContentHandler}, i.e. in Smooks and its visitors.
+     */
+    public long getContentHandlerNanos() {
+        return contentHandlerNanos;
+    }
+
+    /**
+     * The time spent binding records when binding directly.
+     */
+    public long getBindingNanos() {
+        return bindingNanos;
+    }
+
+    /**
+     * Whether the execution ended with an exception.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public double getRecordsPerSecond() {
+        return perSecond(records);
+    }
+
+    public double getCharactersPerSecond() {
+        return perSecond(characters);
+    }
+
+    private double perSecond(long count) {
+        return (elapsedNanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[records=%s,skippedRecords=%s,truncatedRecords=%s,characters=%s,elapsedNanos=%s,functionNanos=%s,contentHandlerNanos=%s,bindingNanos=%s,failed=%s]",
+                getClass().getSimpleName(), records, skippedRecords, truncatedRecords, characters, elapsedNanos, functionNanos, contentHandlerNanos, bindingNanos, failed);
+    }
+}
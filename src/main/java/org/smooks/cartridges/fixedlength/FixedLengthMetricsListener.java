@@ -0,0 +1,65 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+/**
+ * Fixed Length parse metrics listener.
+ * <p/>
+ * Notified by the {@link FixedLengthReader} at the end of every execution (successful or not) with the
+ * {@link FixedLengthMetrics} of that execution.  Configured through the <code>metricsListener</code> reader
+ * property, which is either the registry key of a listener instance or the name of a listener class.  Listener
+ * classes are instantiated once per {@link org.smooks.Smooks} instance, so they can accumulate metrics over
+ * executions.  See {@link CumulativeFixedLengthMetrics}.
+ * <p/>
+ * Implementations must be thread safe, executions can run concurrently.  When no listener is configured, no
+ * metrics are collected.
+ */
+public interface FixedLengthMetricsListener {
+
+    /**
+     * A Fixed Length execution has ended.
+     *
+     * @param metrics The metrics of the execution.
+     */
+    void onParsed(FixedLengthMetrics metrics);
+}
@@ -48,17 +48,19 @@ import org.smooks.api.ExecutionContext;
 import org.smooks.api.Registry;
 import org.smooks.api.SmooksConfigException;
 import org.smooks.api.SmooksException;
+import org.smooks.api.TypedKey;
 import org.smooks.api.bean.context.BeanContext;
+import org.smooks.api.bean.repository.BeanId;
+import org.smooks.api.delivery.ContentDeliveryConfig;
 import org.smooks.api.delivery.ContentHandlerBinding;
 import org.smooks.api.delivery.VisitorAppender;
 import org.smooks.api.delivery.ordering.Consumer;
 import org.smooks.api.resource.reader.SmooksXMLReader;
 import org.smooks.api.resource.visitor.Visitor;
 import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
-import org.smooks.cartridges.flatfile.function.StringFunctionExecutor;
 import org.smooks.cartridges.javabean.Bean;
+import org.smooks.cartridges.javabean.factory.Factory;
 import org.smooks.engine.delivery.DefaultContentHandlerBinding;
-import org.smooks.engine.expression.MVELExpressionEvaluator;
 import org.w3c.dom.Element;
 import org.xml.sax.*;
 import org.xml.sax.helpers.AttributesImpl;
@@ -68,13 +70,20 @@ import jakarta.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.xml.XMLConstants;
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 
 /**
@@ -123,24 +132,117 @@ import java.util.*;
  * The field definition is a comma separated list of fieldnames. After each fieldname the length is set between brackets. So a field
  * definition could look like this: firstname[10],lastname[10],gender[1]
  *
+ * <h3>Fields as attributes</h3>
+ * When fieldsAsAttributes is set to true, every record is emitted as a single element carrying the field values as
+ * attributes (e.g. <code>&lt;record firstname="Tom" lastname="Fennelly"/&gt;</code>), instead of an element per field.
+ * That's two events per record, whatever the number of fields, so visitors consume the whole record at once.  Visitors
+ * and bindings select the fields with attribute selectors, e.g. <code>record/@firstname</code>.  The simple java binding
+ * does so automatically.  Truncated and empty typed fields are left out.
+ *
+ * <h3>Record types</h3>
+ * Files mixing records of different layouts (e.g. header, detail and trailer records) can be parsed in a single pass by
+ * defining record types, selected per record by a discriminator.  The record types are a semicolon separated list of
+ * "discriminator:recordElementName:fields" definitions, e.g.
+ * <pre>
+ * &lt;fl:reader fields="type[1],account[10],amount[12]:decimal(2)" discriminatorLength="1"
+ *            recordTypes="H:header:type[1],date[8]:date(yyyyMMdd); T:trailer:type[1],count[6]:int" /&gt;</pre>
+ * The discriminator is the value of discriminatorLength characters at discriminatorOffset (default 0).  Without a
+ * discriminatorLength, the discriminator is a prefix of the record and the longest matching discriminator wins.  Records of
+ * a record type are emitted under their own record element name.  Records without a matching discriminator have the default
+ * layout defined by fields.  The simple java binding only binds records of the default layout.  When binding directly,
+ * events are still generated for records of the other record types, so they can be targeted by visitors.
+ *
  * <h3>Strict parsing</h3>
  * You can choose if the data is read strictly or not. When strict is to true then the line which doesn't contain enough characters is skipped
  * else the fields that don't have enough characters are empty and those records and fields have the 'truncated' attribute set to true.
  * By default strict is set to false.
  *
+ * <h3>Record framing</h3>
+ * By default every line is a record (framing LINE).  Streams without record terminators can be parsed by setting framing to
+ * FIXED, in which case every record is a block of the total field length, or to LENGTH_PREFIXED, in which case every record
+ * is prefixed by a 4 byte record descriptor word (RDW) holding the big endian record length (RDW included) in its first two
+ * bytes, as in IBM variable blocked files.  Both are read with bulk reads, without scanning for terminators.  LENGTH_PREFIXED
+ * framing requires a byte stream source and decodes the records with the configured encoding.  With FIXED framing and a
+ * single byte encoding, skipLines and firstRecord seek over the leading records.  Memory mapped and parallel parsing require
+ * LINE framing.
+ *
+ * <h3>Memory mapped parsing</h3>
+ * Files with a single byte encoding (e.g. ISO-8859-1 or an EBCDIC code page) can be parsed at the byte level by setting
+ * memoryMapped to true.  A {@link java.io.FileInputStream} source is then memory mapped, the records are sliced by byte
+ * offset and only the bytes of the emitted fields are decoded, using the configured encoding.  Other sources are read
+ * through the character stream as usual.
+ *
+ * <h3>Parallel parsing</h3>
+ * Large files can be parsed on several threads by setting parallelism to a value greater than 1.  A
+ * {@link java.io.FileInputStream} source is then split into record aligned {@link FileChunk chunks}, which are read,
+ * decoded and split into lines on a {@link java.util.concurrent.ForkJoinPool} of that size.  The records are still
+ * emitted in file order, so line numbers and skipLines behave exactly as in sequential parsing.  Requires a single byte
+ * encoding or UTF-8.
+ *
+ * <h3>Record ranges</h3>
+ * A range of records can be parsed by setting firstRecord and/or lastRecord (record numbers are line numbers, starting at 1).
+ * When recordIndex is set to the path of an index file, a {@link java.io.FileInputStream} source is positioned on the first
+ * record using a sparse {@link FixedLengthRecordIndex} (an entry every recordIndexInterval records), which is built and
+ * persisted on first use and reused while the file doesn't change.  Whether the file changed is checked from its size and
+ * its first and last bytes only, so set recordIndexVerify when records can be rewritten in place (the index is then checked
+ * against a scan of the file).  Line numbers remain absolute, so a crashed job can
+ * resume from the record after the last committed record by setting firstRecord.
+ * <p/>
+ * The lines before the first record and the skipLines lines of a byte stream source are skipped by scanning the raw bytes
+ * for line terminators, without decoding them, when the encoding is a single byte encoding or UTF-8.
+ *
  * <h3>Ignoring Fields</h3>
  * To ignore a field in a fixed length record set, just insert the string "<b>$ignore$[10]</b>" for that field in the fields attribute. You still
  * need to set the field length between the brackets
+ * <p/>
+ * When skipUnusedFields is set to true, the fields that aren't consumed by any visitor or binding are ignored
+ * automatically, so they're never decoded nor emitted.  A field is consumed when a visitor targets the field element
+ * (e.g. <code>record/amount</code> or <code>amount</code>), or the field attribute when fieldsAsAttributes is set.  All
+ * fields are consumed when the default serialization is on, or when a visitor targets all elements ("*").  Visitors
+ * targeting the record element don't consume its fields, so visitors reading the fields of the record element (e.g.
+ * templates) need skipUnusedFields to be off.
  *
  * <h3>String manipulation functions</h3>
  * String manipulation functions can be defined per field. These functions are executed before that the data is converted into SAX events.
  * The functions are defined after the field length definition and are optionally separated with a question mark.  So a field
  * definition with string functions could look like this: firstname[10]?trim,lastname[10]?right_trim,gender[1]?upper_case
  * Take a look in the Smooks manual for a list of all available functions.
+ * <p/>
+ * Functions made up of only trim, left_trim, right_trim, upper_case and lower_case are applied directly on the record
+ * buffer, without intermediate Strings.  For low cardinality fields (status codes, currency codes etc...), the function
+ * results can also be cached by setting functionCacheSize to the maximum number of cached results per field.
+ *
+ * <h3>Typed fields</h3>
+ * Numeric and date fields can be typed by appending the type after a colon, e.g. qty[6]:int,amount[12]:decimal(2),date[8]:date(yyyyMMdd).
+ * Supported types are int, long, decimal (with an optional implied scale) and date (with a {@link java.time.format.DateTimeFormatter}
+ * pattern).  Typed values are decoded straight from the record buffer.  Numeric values may be padded with whitespace and may end in a
+ * signed overpunch (zoned decimal) digit.  Direct bindings and the {@link FixedLengthRecordParser} bind the decoded values, field events
+ * carry their canonical text.
+ *
+ * <h3>Metrics</h3>
+ * Parse metrics (record, skipped record, truncated record and character counts, elapsed time and the time spent in
+ * functions, in the downstream content handler and in direct binding) are reported to a {@link FixedLengthMetricsListener}
+ * after every execution when metricsListener is set to the registry key of a listener or to a listener class name.
+ * Use {@link CumulativeFixedLengthMetrics} to sum them over executions.  Without a listener, no metrics are collected.
  *
  * <h3>Simple Java Bindings</h3>
  * A simple java binding can be configured on the reader configuration.  This allows quick binding configuration where the
  * fixed length records map cleanly to the target bean.  For more complex bindings, use the Java Binging Framework.
+ * <p/>
+ * A map binding reads the key straight from the key field of the bound record.  With longKeys set to true on the map
+ * binding, the records are bound into a compact {@link FixedLengthLongKeyMap} with primitive long keys (e.g. numeric
+ * account IDs) instead of a {@link LinkedHashMap}.  The initialCapacity of the map binding pre-sizes the map.
+ *
+ * <h3>Direct Bindings</h3>
+ * When directBinding is set to true, the simple java binding binds each record straight from the reader's buffer
+ * onto the binding class, using cached setter handles per class, instead of going through the SAX event stream and
+ * the Java Binding visitors.  No record and field events are generated in this mode (only the root element and the
+ * records of other record types), so other visitors can't target the records.  Use it for pure list, map and single binding jobs.
+ * <p/>
+ * The COLUMNAR binding type (<code>&lt;fl:columnarBinding beanId="" /&gt;</code>) binds the records of the default layout
+ * into a {@link FixedLengthColumns} bean, holding every field in a column of primitive values (int, long, unscaled decimal
+ * and epoch date values, dictionary encoded strings) instead of an object per record, so large extracts fit in memory and
+ * can be scanned column by column.  Columnar binding always binds straight from the reader's buffer, as in directBinding.
  *
  * <h3>Example Usage</h3>
  * So the following configuration could be used to parse a fixed length stream into
@@ -176,12 +278,11 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
     private static final Logger LOGGER = LoggerFactory.getLogger(FixedLengthReader.class);
 
     private static final AttributesImpl EMPTY_ATTRIBS = new AttributesImpl();
-    private static final String IGNORE_FIELD = "$ignore$";
-    private static final char FUNCTION_SEPARATOR = '?';
+    static final String IGNORE_FIELD = "$ignore$";
 
-    private static char[] INDENT_LF = new char[]{'\n'};
-    private static char[] INDENT_1 = new char[]{'\t'};
-    private static char[] INDENT_2 = new char[]{'\t', '\t'};
+    private static final char[] INDENT_LF = new char[]{'\n'};
+    private static final char[] INDENT_1 = new char[]{'\n', '\t'};
+    private static final char[] INDENT_2 = new char[]{'\n', '\t', '\t'};
 
     private ContentHandler contentHandler;
     private ExecutionContext execContext;
@@ -189,6 +290,7 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
     @Inject
     @Named("fields")
     private String[] flFields;
+    private RecordLayout recordLayout;
     private Field[] fields;
     private int totalFieldLenght;
 
@@ -219,6 +321,67 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
     @Inject
     private Boolean indent = false;
 
+    @Inject
+    private Boolean fieldsAsAttributes = false;
+
+    @Inject
+    private Boolean skipUnusedFields = false;
+    private volatile FieldUsage fieldUsage;
+
+    @Inject
+    private FixedLengthRecordFraming framing = FixedLengthRecordFraming.LINE;
+
+    @Inject
+    private Boolean memoryMapped = false;
+
+    @Inject
+    private Integer parallelism = 1;
+
+    @Inject
+    private Boolean pipelined = false;
+
+    @Inject
+    private Integer pipelineDepth = 4;
+
+    @Inject
+    private Boolean directBinding = false;
+
+    @Inject
+    private Integer functionCacheSize = 0;
+
+    @Inject
+    private Boolean compiledLayout = false;
+    private final Map<Field[], CompiledRecordLayout> compiledLayouts = new ConcurrentHashMap<>();
+
+    @Inject
+    private Optional<String> recordIndex;
+
+    @Inject
+    private Integer recordIndexInterval = 1000;
+
+    @Inject
+    private Boolean recordIndexVerify = false;
+
+    @Inject
+    private Long firstRecord = 1L;
+
+    @Inject
+    private Long lastRecord = Long.MAX_VALUE;
+
+    @Inject
+    private Optional<String> recordTypes;
+    private RecordTypeSelector recordTypeSelector;
+
+    @Inject
+    private Integer discriminatorOffset = 0;
+
+    @Inject
+    private Integer discriminatorLength = 0;
+
+    @Inject
+    private Optional<String> metricsListener;
+    private FixedLengthMetricsListener metricsListenerInstance;
+
     @Inject
     private Optional<String> bindBeanId;
 
@@ -231,18 +394,35 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
     @Inject
     private Optional<String> bindMapKeyField;
 
+    @Inject
+    private Boolean bindMapLongKeys = false;
+
+    @Inject
+    private Integer bindMapInitialCapacity = 0;
+
     @Inject
     private Registry registry;
 
     private static final String RECORD_BEAN = "flRecordBean";
 
+    /**
+     * The number of lines before the source, when the source is a chunk of a larger file (see
+     * {@link ParallelFileFilter}).  Line numbers, skipLines and the record range are relative to the whole file.
+     */
+    static final TypedKey<Long> LINE_OFFSET = TypedKey.of();
+
     public boolean initialized = false;
 
+    private RecordBinder recordBinder;
+    private final AttributesImpl recordAttributes = new AttributesImpl();
+    private final AttributesImpl truncatedAttributes = new AttributesImpl();
+    private Function<Object, Object> mapKeyExtractor;
+
     @Override
     public List<ContentHandlerBinding<Visitor>> addVisitors() {
         List<ContentHandlerBinding<Visitor>> visitorBindings = new ArrayList<>();
         initialize();
-        if (bindBeanId.isPresent() && bindBeanClass.isPresent()) {
+        if (bindBeanId.isPresent() && bindBeanClass.isPresent() && !directBinding && !isColumnarBinding()) {
             Bean bean;
 
             if (bindingType.get().equals(FixedLengthBindingType.LIST)) {
@@ -254,16 +434,12 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
 
                 visitorBindings.addAll(listBean.addVisitors());
             } else if (bindingType.get().equals(FixedLengthBindingType.MAP)) {
-                if (!bindMapKeyField.isPresent()) {
-                    throw new SmooksConfigException("FixedLength 'MAP' Binding must specify a 'keyField' property on the binding configuration.");
-                }
-
-                assertValidFieldName(bindMapKeyField.get());
+                assertValidMapKeyField();
 
-                Bean mapBean = new Bean(LinkedHashMap.class, bindBeanId.get(), "#document", registry);
+                Bean mapBean = newMapBean();
                 Bean recordBean = new Bean(bindBeanClass.get(), RECORD_BEAN, recordElementName, registry);
 
-                MapBindingWiringVisitor wiringVisitor = new MapBindingWiringVisitor(bindMapKeyField.get(), bindBeanId.get());
+                MapBindingWiringVisitor wiringVisitor = new MapBindingWiringVisitor(RecordBinder.createKeyExtractor(bindBeanClass.get(), bindMapKeyField.get()), bindBeanId.get());
 
                 addFieldBindings(recordBean);
 
@@ -281,12 +457,19 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
         return visitorBindings;
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Bean newMapBean() {
+        Factory<Map> factory = executionContext -> FixedLengthBindingMaps.newMap(bindMapLongKeys, bindMapInitialCapacity);
+        return new Bean(Map.class, bindBeanId.get(), "#document", factory, registry);
+    }
+
+
     private void addFieldBindings(Bean bean) {
         for (Field field1 : fields) {
             String field = field1.getName();
 
             if (!field.equals(IGNORE_FIELD)) {
-                bean.bindTo(field, recordElementName + "/" + field);
+                bean.bindTo(field, recordElementName + (fieldsAsAttributes ? "/@" : "/") + field);
             }
         }
     }
@@ -301,6 +484,50 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
     @PostConstruct
     public void initialize() {
         buildFields();
+        truncatedAttributes.clear();
+        truncatedAttributes.addAttribute(XMLConstants.NULL_NS_URI, truncatedAttributeName, truncatedAttributeName, "xs:boolean", Boolean.TRUE.toString());
+        if (framing != FixedLengthRecordFraming.LINE && (memoryMapped || parallelism > 1)) {
+            throw new SmooksConfigException("Fixed Length memory mapped and parallel parsing require '" + FixedLengthRecordFraming.LINE + "' framing.");
+        }
+        if (memoryMapped) {
+            MappedRecordReader.assertSingleByteEncoding(encoding);
+        }
+        if (parallelism > 1) {
+            FileChunk.assertSplittableEncoding(encoding);
+        }
+        if (pipelined) {
+            if (framing == FixedLengthRecordFraming.LENGTH_PREFIXED || memoryMapped || parallelism > 1) {
+                throw new SmooksConfigException("Fixed Length pipelined parsing requires '" + FixedLengthRecordFraming.LINE + "' or '" + FixedLengthRecordFraming.FIXED + "' framing and can't be combined with memory mapped or parallel parsing.");
+            }
+            if (pipelineDepth < 1) {
+                throw new SmooksConfigException("Fixed Length 'pipelineDepth' must be greater than zero.");
+            }
+        }
+        if (firstRecord < 1 || lastRecord < firstRecord) {
+            throw new SmooksConfigException("Invalid Fixed Length record range [" + firstRecord + ", " + lastRecord + "].  Records are numbered from 1.");
+        }
+        if (recordIndex.isPresent()) {
+            FileChunk.assertSplittableEncoding(encoding);
+            if (recordIndexInterval < 1) {
+                throw new SmooksConfigException("Fixed Length 'recordIndexInterval' must be greater than zero.");
+            }
+        }
+        if (metricsListener.isPresent()) {
+            metricsListenerInstance = resolveMetricsListener(metricsListener.get());
+        }
+        if (bindMapInitialCapacity < 0) {
+            throw new SmooksConfigException("Fixed Length 'bindMapInitialCapacity' must not be negative.");
+        }
+        if (isColumnarBinding() && !bindBeanClass.get().isAssignableFrom(FixedLengthColumns.class)) {
+            throw new SmooksConfigException("Fixed Length '" + FixedLengthBindingType.COLUMNAR + "' binding class must be '" + FixedLengthColumns.class.getName() + "'.");
+        }
+        if (directBinding && bindBeanId.isPresent() && bindBeanClass.isPresent() && !isColumnarBinding()) {
+            recordBinder = new RecordBinder(bindBeanClass.get(), fields, registry);
+            if (bindingType.get().equals(FixedLengthBindingType.MAP)) {
+                assertValidMapKeyField();
+                mapKeyExtractor = recordBinder.createKeyExtractor(bindMapKeyField.get());
+            }
+        }
     }
 
 
@@ -315,100 +542,216 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
             throw new IllegalStateException("'execContext' not set.  Cannot parse Fixed Length stream.");
         }
 
+        // Metrics are only collected when someone listens...
+        ParseMetrics metrics = null;
+        if (metricsListenerInstance != null) {
+            metrics = new ParseMetrics();
+            contentHandler = metrics.timed(contentHandler);
+        }
+
+        RecordReader flLineReader = null;
+        boolean failed = true;
         try {
-            Reader flStreamReader;
-            BufferedReader flLineReader;
-            String flRecord;
-            int lineNumber = 0;
-
-            // Get a reader for the Fixed Length source...
-            flStreamReader = flInputSource.getCharacterStream();
-            if (flStreamReader == null) {
-                flStreamReader = new InputStreamReader(flInputSource.getByteStream(), encoding);
-            }
+            char[] functionChars = new char[totalFieldLenght];
+
+            // Ignore the fields no visitor consumes...
+            FieldUsage usage = (skipUnusedFields ? getFieldUsage() : null);
+            Field[] defaultFields = (usage != null ? usage.prune(fields) : fields);
 
-            // Create the Fixed Length line reader...
-            flLineReader = new BufferedReader(flStreamReader);
+            // Skip the leading lines and create the Fixed Length line reader...
+            long lineOffset = execContext.getOrDefault(LINE_OFFSET, 0L);
+            long lineNumber = lineOffset + skipLeadingLines(flInputSource, lineOffset);
+            flLineReader = createRecordReader(flInputSource);
 
             // Start the document and add the root element...
             contentHandler.startDocument();
             contentHandler.startElement(XMLConstants.NULL_NS_URI, rootElementName, "", EMPTY_ATTRIBS);
 
+            // Create the binding target when binding directly...
+            BeanContext beanContext = null;
+            BeanId beanId = null;
+            Object boundRecords = null;
+            if (recordBinder != null) {
+                beanContext = execContext.getBeanContext();
+                beanId = beanContext.getBeanId(bindBeanId.get());
+                if (bindingType.get().equals(FixedLengthBindingType.LIST)) {
+                    boundRecords = new ArrayList<>();
+                    beanContext.addBean(beanId, boundRecords);
+                } else if (bindingType.get().equals(FixedLengthBindingType.MAP)) {
+                    boundRecords = FixedLengthBindingMaps.newMap(bindMapLongKeys, bindMapInitialCapacity);
+                    beanContext.addBean(beanId, boundRecords);
+                }
+            } else if (isColumnarBinding()) {
+                // The columns are bound when they're complete...
+                beanContext = execContext.getBeanContext();
+                beanId = beanContext.getBeanId(bindBeanId.get());
+                boundRecords = new ColumnarRecordBinder(fields);
+            }
+
             // Output each of the Fixed Length line entries...
-            while ((flRecord = flLineReader.readLine()) != null) {
+            while (flLineReader.nextRecord()) {
                 lineNumber++; // First line is line "1"
+                if (lineNumber > lastRecord) {
+                    break;
+                }
+                if (metrics != null) {
+                    metrics.characters += flLineReader.getRecordLength();
+                }
 
-                if (lineNumber <= this.skipLines) {
+                if (lineNumber <= this.skipLines || lineNumber < firstRecord) {
                     continue;
                 }
-                boolean invalidLength = flRecord.length() < totalFieldLenght;
+
+                // The record is a slice of the line reader's buffer. It's only valid until the next line is read.
+                // The characters of a field are only available after the field range is decoded...
+                char[] recordChars = flLineReader.getBuffer();
+                int recordOffset = flLineReader.getRecordOffset();
+                int recordLength = flLineReader.getRecordLength();
+
+                // Select the layout of the record by its discriminator.  Records without a matching discriminator
+                // have the default layout...
+                RecordLayout layout = recordLayout;
+                Field[] recordFields = defaultFields;
+                int recordFieldLength = totalFieldLenght;
+                String recordName = recordElementName;
+                boolean defaultLayout = true;
+                if (recordTypeSelector != null) {
+                    RecordTypeSelector.RecordType recordType = recordTypeSelector.select(flLineReader);
+                    if (recordType != null) {
+                        layout = recordType.getRecordLayout();
+                        recordFields = layout.getFields();
+                        if (usage != null) {
+                            recordFields = usage.prune(recordFields);
+                        }
+                        recordFieldLength = recordType.getRecordLayout().getTotalFieldLength();
+                        recordName = recordType.getRecordElementName();
+                        defaultLayout = false;
+                    }
+                }
+
+                boolean invalidLength = recordLength < recordFieldLength;
                 if (invalidLength && strict) {
-                    if (LOGGER.isWarnEnabled()) {
+                    if (metrics != null) {
+                        metrics.skippedRecords++;
+                    }
+                    if (LOGGER.isDebugEnabled()) {
                         LOGGER.debug("[WARNING-FIXEDLENGTH] Fixed Length line #" + lineNumber + " is invalid.  The line doesn't contain enough characters to fill all the fields. This line is skipped.");
                     }
                     continue;
                 }
+                if (metrics != null) {
+                    metrics.records++;
+                    if (invalidLength) {
+                        metrics.truncatedRecords++;
+                    }
+                }
 
-                char[] recordChars = flRecord.toCharArray();
+                // Bind the record straight from the buffer, without generating events for it...
+                if ((boundRecords != null || recordBinder != null) && defaultLayout) {
+                    if (metrics != null) {
+                        long bindingStart = System.nanoTime();
+                        bindRecord(flLineReader, beanContext, beanId, boundRecords);
+                        metrics.bindingNanos += System.nanoTime() - bindingStart;
+                    } else {
+                        bindRecord(flLineReader, beanContext, beanId, boundRecords);
+                    }
+                    continue;
+                }
 
                 if (indent) {
-                    contentHandler.characters(INDENT_LF, 0, 1);
-                    contentHandler.characters(INDENT_1, 0, 1);
+                    contentHandler.characters(INDENT_1, 0, INDENT_1.length);
                 }
 
+                // The record attributes are reused, they're only valid during the startElement call...
                 AttributesImpl attrs = EMPTY_ATTRIBS;
                 // Add a lineNumber ID
-                if (this.lineNumber || invalidLength) {
-                    attrs = new AttributesImpl();
+                if (this.lineNumber || invalidLength || fieldsAsAttributes) {
+                    attrs = recordAttributes;
+                    attrs.clear();
                     if (this.lineNumber) {
-                        attrs.addAttribute(XMLConstants.NULL_NS_URI, lineNumberAttributeName, lineNumberAttributeName, "xs:int", Integer.toString(lineNumber));
+                        attrs.addAttribute(XMLConstants.NULL_NS_URI, lineNumberAttributeName, lineNumberAttributeName, "xs:int", Long.toString(lineNumber));
                     }
                     if (invalidLength) {
                         attrs.addAttribute(XMLConstants.NULL_NS_URI, truncatedAttributeName, truncatedAttributeName, "xs:boolean", Boolean.TRUE.toString());
                     }
                 }
 
-                contentHandler.startElement(XMLConstants.NULL_NS_URI, recordElementName, "", attrs);
+                // Emit the whole record as a single element, with the fields as attributes...
+                if (fieldsAsAttributes) {
+                    addFieldAttributes(attrs, recordFields, flLineReader, metrics);
+                    contentHandler.startElement(XMLConstants.NULL_NS_URI, recordName, "", attrs);
+                    contentHandler.endElement(XMLConstants.NULL_NS_URI, recordName, "");
+                    continue;
+                }
+
+                contentHandler.startElement(XMLConstants.NULL_NS_URI, recordName, "", attrs);
+
+                if (compiledLayout) {
+                    functionChars = getCompiledLayout(layout, recordFields).emitFields(contentHandler, flLineReader, functionChars, metrics);
+                    if (indent) {
+                        contentHandler.characters(INDENT_1, 0, INDENT_1.length);
+                    }
+                    contentHandler.endElement(null, recordName, "");
+                    continue;
+                }
 
                 // Loops through fields
                 int fieldLengthTotal = 0;
-                for (int i = 0; i < flFields.length; i++) {
+                for (int i = 0; i < recordFields.length; i++) {
                     // Field name local to the loop
-                    String fieldName = fields[i].getName();
+                    String fieldName = recordFields[i].getName();
                     // Field length local to the loop
-                    int fieldLength = fields[i].getLength();
+                    int fieldLength = recordFields[i].getLength();
 
-                    StringFunctionExecutor stringFunctionExecutor = fields[i].getStringFunctionExecutor();
+                    FieldFunction fieldFunction = recordFields[i].getFieldFunction();
+                    FieldType fieldType = recordFields[i].getFieldType();
 
-                    if (!fields[i].ignore()) {
+                    if (!recordFields[i].ignore()) {
                         if (indent) {
-                            contentHandler.characters(INDENT_LF, 0, 1);
-                            contentHandler.characters(INDENT_2, 0, 2);
+                            contentHandler.characters(INDENT_2, 0, INDENT_2.length);
                         }
 
                         // Check that there are enough characters in the string
-                        boolean truncated = fieldLengthTotal + fieldLength > flRecord.length();
-
-                        AttributesImpl recordAttrs = EMPTY_ATTRIBS;
+                        boolean truncated = fieldLengthTotal + fieldLength > recordLength;
 
                         //If truncated then set the truncated attribute
-                        if (truncated) {
-                            recordAttrs = new AttributesImpl();
-                            recordAttrs.addAttribute(XMLConstants.NULL_NS_URI, truncatedAttributeName, truncatedAttributeName, "xs:boolean", Boolean.TRUE.toString());
-                        }
-
-                        contentHandler.startElement(XMLConstants.NULL_NS_URI, fieldName, "", recordAttrs);
+                        contentHandler.startElement(XMLConstants.NULL_NS_URI, fieldName, "", truncated ? truncatedAttributes : EMPTY_ATTRIBS);
 
                         // If not truncated then set the element data
                         if (!truncated) {
-                            if (stringFunctionExecutor == null) {
-                                contentHandler.characters(recordChars, fieldLengthTotal, fieldLength);
+                            flLineReader.decode(fieldLengthTotal, fieldLength);
+                            long functionStart = (metrics != null && (fieldType != null || fieldFunction != null) ? System.nanoTime() : 0);
+                            if (fieldType != null) {
+                                // Emit the canonical text of the decoded value (no padding, implied decimals applied etc...)
+                                Object value = fieldType.decode(recordChars, recordOffset + fieldLengthTotal, fieldLength);
+                                if (value != null) {
+                                    String text = fieldType.toText(value);
+
+                                    if (text.length() > functionChars.length) {
+                                        functionChars = new char[text.length()];
+                                    }
+                                    text.getChars(0, text.length(), functionChars, 0);
+                                    if (metrics != null) {
+                                        metrics.functionNanos += System.nanoTime() - functionStart;
+                                    }
+                                    contentHandler.characters(functionChars, 0, text.length());
+                                }
+                            } else if (fieldFunction == null) {
+                                contentHandler.characters(recordChars, recordOffset + fieldLengthTotal, fieldLength);
                             } else {
-                                String value = flRecord.substring(fieldLengthTotal, fieldLengthTotal + fieldLength);
-
-                                value = stringFunctionExecutor.execute(value);
-
-                                contentHandler.characters(value.toCharArray(), 0, value.length());
+                                // Apply the function straight from the record buffer into the function buffer...
+                                int valueLength = fieldFunction.apply(recordChars, recordOffset + fieldLengthTotal, fieldLength, functionChars);
+                                if (valueLength == -1) {
+                                    String value = fieldFunction.apply(recordChars, recordOffset + fieldLengthTotal, fieldLength);
+
+                                    functionChars = new char[value.length()];
+                                    value.getChars(0, value.length(), functionChars, 0);
+                                    valueLength = value.length();
+                                }
+                                if (metrics != null) {
+                                    metrics.functionNanos += System.nanoTime() - functionStart;
+                                }
+                                contentHandler.characters(functionChars, 0, valueLength);
                             }
                         }
 
@@ -419,13 +762,16 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
                 }
 
                 if (indent) {
-                    contentHandler.characters(INDENT_LF, 0, 1);
-                    contentHandler.characters(INDENT_1, 0, 1);
+                    contentHandler.characters(INDENT_1, 0, INDENT_1.length);
                 }
 
-                contentHandler.endElement(null, recordElementName, "");
+                contentHandler.endElement(null, recordName, "");
+
 
+            }
 
+            if (boundRecords instanceof ColumnarRecordBinder) {
+                beanContext.addBean(beanId, ((ColumnarRecordBinder) boundRecords).getResult());
             }
 
             if (indent) {
@@ -435,71 +781,316 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
             // Close out the "fixedlength-set" root element and end the document..
             contentHandler.endElement(XMLConstants.NULL_NS_URI, rootElementName, "");
             contentHandler.endDocument();
+            failed = false;
         } finally {
+            if (flLineReader != null) {
+                flLineReader.close();
+            }
+            if (metrics != null) {
+                notifyMetricsListener(metrics.toMetrics(failed));
+            }
             // These properties need to be reset for every execution (e.g. when reader is pooled).
             contentHandler = null;
             execContext = null;
         }
     }
 
-    public void setContentHandler(ContentHandler contentHandler) {
-        this.contentHandler = contentHandler;
+    /**
+     * Add the values of the (non truncated) fields of the current record as attributes.
+     */
+    private void addFieldAttributes(AttributesImpl attrs, Field[] recordFields, RecordReader flLineReader, ParseMetrics metrics) {
+        int recordLength = flLineReader.getRecordLength();
+        int fieldOffset = 0;
+
+        for (Field field : recordFields) {
+            int fieldLength = field.getLength();
+            if (!field.ignore() && fieldOffset + fieldLength <= recordLength) {
+                flLineReader.decode(fieldOffset, fieldLength);
+
+                long functionStart = (metrics != null ? System.nanoTime() : 0);
+                char[] recordChars = flLineReader.getBuffer();
+                int valueOffset = flLineReader.getRecordOffset() + fieldOffset;
+                String value;
+                if (field.getFieldType() != null) {
+                    Object typedValue = field.getFieldType().decode(recordChars, valueOffset, fieldLength);
+                    value = (typedValue != null ? field.getFieldType().toText(typedValue) : null);
+                } else if (field.getFieldFunction() != null) {
+                    value = field.getFieldFunction().apply(recordChars, valueOffset, fieldLength);
+                } else {
+                    value = new String(recordChars, valueOffset, fieldLength);
+                }
+                if (metrics != null) {
+                    metrics.functionNanos += System.nanoTime() - functionStart;
+                }
+
+                if (value != null) {
+                    attrs.addAttribute(XMLConstants.NULL_NS_URI, field.getName(), field.getName(), "CDATA", value);
+                }
+            }
+            fieldOffset += fieldLength;
+        }
     }
 
-    public ContentHandler getContentHandler() {
-        return contentHandler;
+    /**
+     * The usage of the fields by the visitors of the current content delivery config.  Resolved again when the reader
+     * is used with another content delivery config (e.g. another profile).
+     */
+    private FieldUsage getFieldUsage() {
+        ContentDeliveryConfig contentDeliveryConfig = execContext.getContentDeliveryRuntime().getContentDeliveryConfig();
+        FieldUsage usage = fieldUsage;
+        if (usage == null || usage.getContentDeliveryConfig() != contentDeliveryConfig) {
+            usage = FieldUsage.of(contentDeliveryConfig);
+            fieldUsage = usage;
+        }
+        return usage;
+    }
+
+    private boolean isColumnarBinding() {
+        return bindBeanId.isPresent() && bindBeanClass.isPresent() && bindingType.isPresent() && bindingType.get().equals(FixedLengthBindingType.COLUMNAR);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void bindRecord(RecordReader flLineReader, BeanContext beanContext, BeanId beanId, Object boundRecords) {
+        if (boundRecords instanceof ColumnarRecordBinder) {
+            ((ColumnarRecordBinder) boundRecords).bind(flLineReader);
+            return;
+        }
+
+        Object record = recordBinder.bind(flLineReader);
+
+        if (boundRecords instanceof List) {
+            ((List<Object>) boundRecords).add(record);
+        } else if (boundRecords instanceof Map) {
+            FixedLengthBindingMaps.put((Map<?, Object>) boundRecords, mapKeyExtractor.apply(record), record);
+        } else {
+            beanContext.addBean(beanId, record);
+        }
+    }
+
+    private void notifyMetricsListener(FixedLengthMetrics metrics) {
+        try {
+            metricsListenerInstance.onParsed(metrics);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Fixed Length metrics listener '" + metricsListener.get() + "' failed.", e);
+        }
+    }
+
+    /**
+     * Resolves the metrics listener from the registry, or instantiates and registers it when the registry doesn't
+     * contain it yet, so all readers of this Smooks instance share the same listener instance.
+     */
+    private FixedLengthMetricsListener resolveMetricsListener(String listener) {
+        synchronized (registry) {
+            Object instance = registry.lookup(listener);
+            if (instance == null) {
+                Class<?> listenerClass;
+                try {
+                    listenerClass = registry.getClassLoader().loadClass(listener);
+                } catch (ClassNotFoundException e) {
+                    throw new SmooksConfigException("Fixed Length metrics listener '" + listener + "' is neither a registered object nor a class name.", e);
+                }
+                try {
+                    instance = listenerClass.getDeclaredConstructor().newInstance();
+                } catch (InvocationTargetException e) {
+                    throw new SmooksConfigException("Failed to create Fixed Length metrics listener '" + listener + "'.", e.getCause());
+                } catch (ReflectiveOperationException e) {
+                    throw new SmooksConfigException("Failed to create Fixed Length metrics listener '" + listener + "'.  The class must have a public no-args constructor.", e);
+                }
+                registry.registerObject(listener, instance);
+            }
+            if (!(instance instanceof FixedLengthMetricsListener)) {
+                throw new SmooksConfigException("Fixed Length metrics listener '" + listener + "' must implement " + FixedLengthMetricsListener.class.getName() + ".");
+            }
+
+            return (FixedLengthMetricsListener) instance;
+        }
     }
 
-    private void assertValidFieldName(String fieldName) {
-        for (Field field : fields) {
-            if (field.getName().equals(fieldName)) {
-                return;
+    /**
+     * Skip the lines before the first record (skipLines and the lines before firstRecord) at the byte level.  A file
+     * source is positioned on the first record through the record index (if configured) and/or a raw byte scan.  Other
+     * byte streams are scanned through a pushback stream, which replaces the streams of the input source.
+     * <p/>
+     * Only applies when the character stream of the source (if any) decodes the byte stream with a single byte encoding
+     * or UTF-8.  Otherwise the lines are skipped by the parse loop.
+     *
+     * @param lineOffset The number of lines before the source, see {@link #LINE_OFFSET}.
+     * @return The number of skipped lines.
+     */
+    private long skipLeadingLines(InputSource flInputSource, long lineOffset) throws IOException {
+        long leadingLines = Math.max(Math.max(skipLines, firstRecord - 1) - lineOffset, 0);
+        InputStream flByteStream = flInputSource.getByteStream();
+        Reader flStreamReader = flInputSource.getCharacterStream();
+        if (leadingLines == 0 || flByteStream == null || framing == FixedLengthRecordFraming.LENGTH_PREFIXED) {
+            return 0;
+        }
+
+        boolean fileStream = flByteStream instanceof FileInputStream;
+        Charset streamEncoding = encoding;
+        if (flStreamReader != null && !(fileStream && (memoryMapped || parallelism > 1))) {
+            if (!(flStreamReader instanceof InputStreamReader)) {
+                return 0;
+            }
+            try {
+                streamEncoding = Charset.forName(((InputStreamReader) flStreamReader).getEncoding());
+            } catch (IllegalArgumentException e) {
+                return 0;
             }
         }
+        if (!FileChunk.isSplittableEncoding(streamEncoding)) {
+            return 0;
+        }
 
-        String fieldNames = "";
-        for (Field field : fields) {
-            if (!field.ignore()) {
-                if (fieldNames.length() > 0) {
-                    fieldNames += ", ";
+        if (framing == FixedLengthRecordFraming.FIXED) {
+            // Records have a fixed width in a single byte encoding, so the leading records can be seeked over...
+            if (streamEncoding.equals(StandardCharsets.UTF_8)) {
+                return 0;
+            }
+            long leadingBytes = leadingLines * totalFieldLenght;
+            if (fileStream) {
+                FileChannel flChannel = ((FileInputStream) flByteStream).getChannel();
+                flChannel.position(Math.min(flChannel.position() + leadingBytes, flChannel.size()));
+            } else {
+                while (leadingBytes > 0) {
+                    long skipped = flByteStream.skip(leadingBytes);
+                    if (skipped <= 0) {
+                        if (flByteStream.read() == -1) {
+                            break;
+                        }
+                        skipped = 1;
+                    }
+                    leadingBytes -= skipped;
                 }
-                fieldNames += field.getName();
             }
+
+            return leadingLines;
+        }
+
+        byte lf = "\n".getBytes(streamEncoding)[0];
+        byte cr = "\r".getBytes(streamEncoding)[0];
+
+        if (fileStream) {
+            FileChannel flChannel = ((FileInputStream) flByteStream).getChannel();
+            long position = flChannel.position();
+            long skippedLines = 0;
+            if (firstRecord > 1 && lineOffset == 0 && recordIndex.isPresent()) {
+                FixedLengthRecordIndex index = FixedLengthRecordIndex.loadOrBuild(flChannel, Paths.get(recordIndex.get()), streamEncoding, recordIndexInterval, recordIndexVerify);
+
+                position = index.findOffset(flChannel, firstRecord);
+                skippedLines = Math.min(firstRecord - 1, index.getRecordCount());
+            }
+            flChannel.position(LineSkipper.skip(flChannel, position, flChannel.size(), leadingLines - skippedLines, lf, cr));
+
+            return leadingLines;
         }
 
-        throw new SmooksConfigException("Invalid field name '" + fieldName + "'.  Valid names: [" + fieldNames + "].");
+        // The character stream hasn't read from the byte stream yet, so it can be replaced...
+        PushbackInputStream pushbackStream = new PushbackInputStream(flByteStream, LineSkipper.SCAN_WINDOW_SIZE);
+        flInputSource.setByteStream(pushbackStream);
+        if (flStreamReader != null) {
+            flInputSource.setCharacterStream(new InputStreamReader(pushbackStream, streamEncoding));
+        }
+
+        return LineSkipper.skip(pushbackStream, leadingLines, lf, cr);
     }
 
-    private void buildFields() {
-        // Parse input fields to extract names and lengths
-        Field[] fields = new Field[this.flFields.length];
-        int totalFieldLenght = 0;
-        for (int i = 0; i < this.flFields.length; i++) {
-            // Extract informations about the field
-            String fieldInfos = this.flFields[i].trim();
-            // Extract name of the field (before bracket)
-            String fieldName = fieldInfos.substring(0, fieldInfos.lastIndexOf('['));
-            // Extract length of the field (between brackets)
-            int fieldLength = Integer.parseInt(fieldInfos.substring(fieldInfos.lastIndexOf('[') + 1, fieldInfos.lastIndexOf(']')));
-
-            String functionDefinition = fieldInfos.substring(fieldInfos.lastIndexOf(']') + 1);
-
-            if (functionDefinition.length() != 0 && functionDefinition.charAt(0) == FUNCTION_SEPARATOR) {
-                functionDefinition = functionDefinition.substring(1);
+    private RecordReader createRecordReader(InputSource flInputSource) throws IOException {
+        if (framing == FixedLengthRecordFraming.LENGTH_PREFIXED) {
+            InputStream flByteStream = flInputSource.getByteStream();
+            if (flByteStream == null) {
+                throw new SmooksException("Fixed Length '" + framing + "' framing requires a byte stream source.");
             }
+            return new LengthPrefixedRecordReader(flByteStream, encoding);
+        }
+        if (memoryMapped || parallelism > 1) {
+            InputStream flByteStream = flInputSource.getByteStream();
+            if (flByteStream instanceof FileInputStream) {
+                FileChannel flChannel = ((FileInputStream) flByteStream).getChannel();
+                if (parallelism > 1) {
+                    return new ParallelRecordReader(flChannel, encoding, parallelism);
+                }
+                return new MappedRecordReader(flChannel, encoding);
+            }
+            LOGGER.debug("Fixed Length source is not a file stream.  Falling back to the character stream for memory mapped or parallel reader.");
+        }
+        if (pipelined) {
+            return createPipelinedRecordReader(flInputSource);
+        }
+
+        // Get a reader for the Fixed Length source...
+        Reader flStreamReader = flInputSource.getCharacterStream();
+        if (flStreamReader == null) {
+            flStreamReader = new InputStreamReader(flInputSource.getByteStream(), encoding);
+        }
+
+        if (framing == FixedLengthRecordFraming.FIXED) {
+            return new FixedRecordReader(flStreamReader, totalFieldLenght);
+        }
+
+        return new LineRecordReader(flStreamReader);
+    }
 
-            StringFunctionExecutor stringFunctionExecutor = null;
-            if (functionDefinition.length() != 0) {
-                stringFunctionExecutor = StringFunctionExecutor.getInstance(functionDefinition);
+    /**
+     * Create a pipelined record reader.  When the character stream of the source merely decodes its byte stream, the
+     * byte stream is read instead, so the decoding moves to the framing thread of the pipeline.
+     */
+    private RecordReader createPipelinedRecordReader(InputSource flInputSource) {
+        InputStream flByteStream = flInputSource.getByteStream();
+        Reader flStreamReader = flInputSource.getCharacterStream();
+        if (flStreamReader == null) {
+            return new PipelinedRecordReader(flByteStream, null, encoding, framing, totalFieldLenght, pipelineDepth);
+        }
+        if (flByteStream != null && flStreamReader instanceof InputStreamReader) {
+            try {
+                Charset streamEncoding = Charset.forName(((InputStreamReader) flStreamReader).getEncoding());
+                return new PipelinedRecordReader(flByteStream, null, streamEncoding, framing, totalFieldLenght, pipelineDepth);
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("Unknown Fixed Length character stream encoding.  The character stream is read by the pipeline.", e);
             }
+        }
+        return new PipelinedRecordReader(null, flStreamReader, encoding, framing, totalFieldLenght, pipelineDepth);
+    }
+
+    public void setContentHandler(ContentHandler contentHandler) {
+        this.contentHandler = contentHandler;
+    }
 
-            fields[i] = new Field(fieldName, fieldLength, stringFunctionExecutor);
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
 
-            totalFieldLenght += fieldLength;
+    private void assertValidMapKeyField() {
+        if (!bindMapKeyField.isPresent()) {
+            throw new SmooksConfigException("FixedLength 'MAP' Binding must specify a 'keyField' property on the binding configuration.");
         }
 
-        this.fields = fields;
-        this.totalFieldLenght = totalFieldLenght;
+        recordLayout.assertValidFieldName(bindMapKeyField.get());
+    }
+
+    private void buildFields() {
+        // Readers of a known layout share it, unless they cache function results, see RecordLayoutCache...
+        this.recordLayout = RecordLayoutCache.getRecordLayout(flFields, functionCacheSize);
+        this.fields = recordLayout.getFields();
+        this.totalFieldLenght = recordLayout.getTotalFieldLength();
+        if (recordTypes.isPresent()) {
+            this.recordTypeSelector = RecordLayoutCache.getRecordTypeSelector(recordTypes.get(), discriminatorOffset, discriminatorLength, functionCacheSize);
+        }
+        compiledLayouts.clear();
+        if (compiledLayout) {
+            getCompiledLayout(recordLayout, fields);
+        }
+    }
+
+    /**
+     * Get the compiled layout of the record fields.  The compiled layouts of the complete layout fields are shared by
+     * the readers of the layout.  The pruned fields (see {@link FieldUsage#prune(Field[])}) are compiled once per
+     * reader.
+     */
+    private CompiledRecordLayout getCompiledLayout(RecordLayout layout, Field[] recordFields) {
+        if (recordFields == layout.getFields()) {
+            return layout.getCompiledLayout(indent, truncatedAttributeName);
+        }
+        return compiledLayouts.computeIfAbsent(recordFields, f -> CompiledRecordLayout.compile(f, indent, truncatedAttributes));
     }
 
     /****************************************************************************
@@ -551,53 +1142,15 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
             throws SAXNotRecognizedException, SAXNotSupportedException {
     }
 
-    private class Field {
-
-        private final String name;
-
-        private final int length;
-
-        private final boolean ignore;
-
-        private final StringFunctionExecutor stringFunctionExecutor;
-
-        public Field(String name, int length, StringFunctionExecutor stringFunctionExecutor) {
-            this.name = name;
-            this.length = length;
-            this.stringFunctionExecutor = stringFunctionExecutor;
-
-            ignore = IGNORE_FIELD.equals(name);
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public int getLength() {
-            return length;
-        }
-
-        public boolean ignore() {
-            return ignore;
-        }
-
-        public StringFunctionExecutor getStringFunctionExecutor() {
-            return stringFunctionExecutor;
-        }
-
-        @Override
-        public String toString() {
-            return String.format("%s[name=%s,length=%s,stringFunctionExecutor=%s]", this, name, length, stringFunctionExecutor);
-        }
-    }
-
     private static class MapBindingWiringVisitor implements AfterVisitor, Consumer {
 
-        private final MVELExpressionEvaluator keyExtractor = new MVELExpressionEvaluator();
+        private final Function<Object, Object> keyExtractor;
         private final String mapBindingKey;
+        private volatile BeanId mapBeanId;
+        private volatile BeanId recordBeanId;
 
-        private MapBindingWiringVisitor(String bindKeyField, String mapBindingKey) {
-            keyExtractor.setExpression(RECORD_BEAN + "." + bindKeyField);
+        private MapBindingWiringVisitor(Function<Object, Object> keyExtractor, String mapBindingKey) {
+            this.keyExtractor = keyExtractor;
             this.mapBindingKey = mapBindingKey;
         }
 
@@ -609,18 +1162,21 @@ public class FixedLengthReader implements SmooksXMLReader, VisitorAppender {
 
         private void wireObject(ExecutionContext executionContext) {
             BeanContext beanContext = executionContext.getBeanContext();
-            Map<String, Object> beanMap = beanContext.getBeanMap();
-            Object key = keyExtractor.getValue(beanMap);
+            // The bean IDs are registered once per Smooks instance...
+            if (mapBeanId == null) {
+                mapBeanId = beanContext.getBeanId(mapBindingKey);
+                recordBeanId = beanContext.getBeanId(RECORD_BEAN);
+            }
 
-            @SuppressWarnings("unchecked") //TODO: Optimize to use the BeanId object
-            Map<Object, Object> map = (Map<Object, Object>) beanContext.getBean(mapBindingKey);
-            Object record = beanContext.getBean(RECORD_BEAN);
+            @SuppressWarnings("unchecked")
+            Map<?, Object> map = (Map<?, Object>) beanContext.getBean(mapBeanId);
+            Object record = beanContext.getBean(recordBeanId);
 
-            map.put(key, record);
+            FixedLengthBindingMaps.put(map, keyExtractor.apply(record), record);
         }
 
         public boolean consumes(Object object) {
-            return keyExtractor.getExpression().contains(object.toString());
+            return RECORD_BEAN.equals(object.toString()) || mapBindingKey.equals(object.toString());
         }
     }
 }
@@ -71,7 +71,26 @@ public class FixedLengthReaderConfigurator implements ReaderConfigurator {
     private FixedLengthBinding binding;
     private String targetProfile;
     private boolean indent = false;
+    private boolean fieldsAsAttributes = false;
+    private boolean skipUnusedFields = false;
     private boolean strict = true;
+    private FixedLengthRecordFraming framing = FixedLengthRecordFraming.LINE;
+    private boolean memoryMapped = false;
+    private int parallelism = 1;
+    private boolean pipelined = false;
+    private int pipelineDepth = 4;
+    private boolean directBinding = false;
+    private int functionCacheSize = 0;
+    private boolean compiledLayout = false;
+    private String metricsListener;
+    private String recordIndex;
+    private int recordIndexInterval = 1000;
+    private boolean recordIndexVerify;
+    private long firstRecord = 1;
+    private long lastRecord = Long.MAX_VALUE;
+    private final StringBuilder recordTypes = new StringBuilder();
+    private int discriminatorOffset = 0;
+    private int discriminatorLength = 0;
 
     public FixedLengthReaderConfigurator(String fields) {
         AssertArgument.isNotNullAndNotEmpty(fields, "fields");
@@ -89,6 +108,30 @@ public class FixedLengthReaderConfigurator implements ReaderConfigurator {
         return this;
     }
 
+    Charset getEncoding() {
+        return encoding;
+    }
+
+    FixedLengthRecordFraming getFraming() {
+        return framing;
+    }
+
+    boolean isLineNumber() {
+        return lineNumber;
+    }
+
+    int getSkipLines() {
+        return skipLines;
+    }
+
+    long getFirstRecord() {
+        return firstRecord;
+    }
+
+    long getLastRecord() {
+        return lastRecord;
+    }
+
     public FixedLengthReaderConfigurator setRootElementName(String rootElementName) {
         AssertArgument.isNotNullAndNotEmpty(rootElementName, "rootElementName");
         this.rootElementName = rootElementName;
@@ -123,6 +166,170 @@ public class FixedLengthReaderConfigurator implements ReaderConfigurator {
         return this;
     }
 
+    /**
+     * Emit every record as a single element, with the field values as attributes instead of child elements.
+     *
+     * @param fieldsAsAttributes True to emit the fields as attributes.
+     * @return This configurator.
+     */
+    public FixedLengthReaderConfigurator setFieldsAsAttributes(boolean fieldsAsAttributes) {
+        this.fieldsAsAttributes = fieldsAsAttributes;
+        return this;
+    }
+
+    /**
+     * Ignore the fields that aren't consumed by any visitor or binding, so they're never decoded nor emitted.
+     *
+     * @param skipUnusedFields True to skip the unused fields.
+     * @return This configurator.
+     */
+    public FixedLengthReaderConfigurator setSkipUnusedFields(boolean skipUnusedFields) {
+        this.skipUnusedFields = skipUnusedFields;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setFraming(FixedLengthRecordFraming framing) {
+        AssertArgument.isNotNull(framing, "framing");
+        this.framing = framing;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("'parallelism' must be greater than zero.");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth < 1) {
+            throw new IllegalArgumentException("'pipelineDepth' must be greater than zero.");
+        }
+        this.pipelineDepth = pipelineDepth;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setCompiledLayout(boolean compiledLayout) {
+        this.compiledLayout = compiledLayout;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setDirectBinding(boolean directBinding) {
+        this.directBinding = directBinding;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setFunctionCacheSize(int functionCacheSize) {
+        if (functionCacheSize < 0) {
+            throw new IllegalArgumentException("'functionCacheSize' must not be negative.");
+        }
+        this.functionCacheSize = functionCacheSize;
+        return this;
+    }
+
+    /**
+     * Set the record index file used to seek to the first record of a file source.  The index is built and persisted
+     * when the file doesn't exist or is out of date.
+     *
+     * @param recordIndex The index file path.
+     * @return This configurator.
+     */
+    public FixedLengthReaderConfigurator setRecordIndex(String recordIndex) {
+        AssertArgument.isNotNullAndNotEmpty(recordIndex, "recordIndex");
+        this.recordIndex = recordIndex;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setRecordIndexInterval(int recordIndexInterval) {
+        if (recordIndexInterval < 1) {
+            throw new IllegalArgumentException("'recordIndexInterval' must be greater than zero.");
+        }
+        this.recordIndexInterval = recordIndexInterval;
+        return this;
+    }
+
+    /**
+     * Verify a persisted record index against the whole file instead of only its size and its first and last bytes,
+     * so that an in-place edit which keeps the size of the file is detected.  Costs a scan of the file per parse.
+     *
+     * @param recordIndexVerify True to verify the record index against the file.
+     * @return This configurator.
+     */
+    public FixedLengthReaderConfigurator setRecordIndexVerify(boolean recordIndexVerify) {
+        this.recordIndexVerify = recordIndexVerify;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setFirstRecord(long firstRecord) {
+        if (firstRecord < 1) {
+            throw new IllegalArgumentException("'firstRecord' must be greater than zero.");
+        }
+        this.firstRecord = firstRecord;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setLastRecord(long lastRecord) {
+        if (lastRecord < 1) {
+            throw new IllegalArgumentException("'lastRecord' must be greater than zero.");
+        }
+        this.lastRecord = lastRecord;
+        return this;
+    }
+
+    /**
+     * Add a record type.  Records starting with (or, when a discriminator length is set, having at the discriminator
+     * offset) the discriminator are parsed with the fields of the record type instead of the default fields.
+     *
+     * @param discriminator     The discriminator value.
+     * @param recordElementName The element name of records of this type.
+     * @param fields            The fields of records of this type.
+     * @return This configurator.
+     */
+    public FixedLengthReaderConfigurator addRecordType(String discriminator, String recordElementName, String fields) {
+        AssertArgument.isNotNullAndNotEmpty(discriminator, "discriminator");
+        AssertArgument.isNotNullAndNotEmpty(recordElementName, "recordElementName");
+        AssertArgument.isNotNullAndNotEmpty(fields, "fields");
+        if (discriminator.indexOf(':') != -1 || discriminator.indexOf(';') != -1 || !discriminator.trim().equals(discriminator)) {
+            throw new IllegalArgumentException("'discriminator' must not contain ':' or ';' or leading/trailing whitespace.");
+        }
+        if (recordTypes.length() > 0) {
+            recordTypes.append(';');
+        }
+        recordTypes.append(discriminator).append(':').append(recordElementName).append(':').append(fields);
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setDiscriminator(int discriminatorOffset, int discriminatorLength) {
+        if (discriminatorOffset < 0 || discriminatorLength < 0) {
+            throw new IllegalArgumentException("'discriminatorOffset' and 'discriminatorLength' must not be negative.");
+        }
+        this.discriminatorOffset = discriminatorOffset;
+        this.discriminatorLength = discriminatorLength;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setMetricsListener(String metricsListener) {
+        AssertArgument.isNotNullAndNotEmpty(metricsListener, "metricsListener");
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    public FixedLengthReaderConfigurator setMetricsListener(Class<? extends FixedLengthMetricsListener> metricsListener) {
+        AssertArgument.isNotNull(metricsListener, "metricsListener");
+        return setMetricsListener(metricsListener.getName());
+    }
+
     public FixedLengthReaderConfigurator setBinding(FixedLengthBinding binding) {
         this.binding = binding;
         return this;
@@ -152,6 +359,31 @@ public class FixedLengthReaderConfigurator implements ReaderConfigurator {
         configurator.getParameters().setProperty("truncatedAttributeName", truncatedAttributeName);
         configurator.getParameters().setProperty("indent", Boolean.toString(indent));
         configurator.getParameters().setProperty("strict", Boolean.toString(strict));
+        configurator.getParameters().setProperty("fieldsAsAttributes", Boolean.toString(fieldsAsAttributes));
+        configurator.getParameters().setProperty("skipUnusedFields", Boolean.toString(skipUnusedFields));
+        configurator.getParameters().setProperty("framing", framing.toString());
+        configurator.getParameters().setProperty("memoryMapped", Boolean.toString(memoryMapped));
+        configurator.getParameters().setProperty("parallelism", Integer.toString(parallelism));
+        configurator.getParameters().setProperty("pipelined", Boolean.toString(pipelined));
+        configurator.getParameters().setProperty("pipelineDepth", Integer.toString(pipelineDepth));
+        configurator.getParameters().setProperty("directBinding", Boolean.toString(directBinding));
+        configurator.getParameters().setProperty("functionCacheSize", Integer.toString(functionCacheSize));
+        configurator.getParameters().setProperty("compiledLayout", Boolean.toString(compiledLayout));
+        if (recordIndex != null) {
+            configurator.getParameters().setProperty("recordIndex", recordIndex);
+        }
+        configurator.getParameters().setProperty("recordIndexInterval", Integer.toString(recordIndexInterval));
+        configurator.getParameters().setProperty("recordIndexVerify", Boolean.toString(recordIndexVerify));
+        configurator.getParameters().setProperty("firstRecord", Long.toString(firstRecord));
+        configurator.getParameters().setProperty("lastRecord", Long.toString(lastRecord));
+        if (recordTypes.length() > 0) {
+            configurator.getParameters().setProperty("recordTypes", recordTypes.toString());
+        }
+        configurator.getParameters().setProperty("discriminatorOffset", Integer.toString(discriminatorOffset));
+        configurator.getParameters().setProperty("discriminatorLength", Integer.toString(discriminatorLength));
+        if (metricsListener != null) {
+            configurator.getParameters().setProperty("metricsListener", metricsListener);
+        }
 
         if (binding != null) {
             configurator.getParameters().setProperty("bindBeanId", binding.getBeanId());
@@ -162,6 +394,8 @@ public class FixedLengthReaderConfigurator implements ReaderConfigurator {
                     throw new SmooksConfigException("Fixed length 'MAP' Binding must specify a 'keyField' property on the binding configuration.");
                 }
                 configurator.getParameters().setProperty("bindMapKeyField", binding.getKeyField());
+                configurator.getParameters().setProperty("bindMapLongKeys", Boolean.toString(binding.isLongKeys()));
+                configurator.getParameters().setProperty("bindMapInitialCapacity", Integer.toString(binding.getInitialCapacity()));
             }
         }
 
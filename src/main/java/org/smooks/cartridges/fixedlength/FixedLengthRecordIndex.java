@@ -0,0 +1,400 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Sparse record number to byte offset index of a Fixed Length file.
+ * <p/>
+ * The index holds the byte offset of every N<sup>th</sup> record (the index interval), so finding the offset of any record
+ * costs a table lookup plus a raw byte scan over less than N records, instead of reading the file from the start.  Record
+ * numbers are line numbers, i.e. the first line of the file is record 1, exactly as the <code>lineNumber</code> attribute of
+ * the {@link FixedLengthReader}.
+ * <p/>
+ * Seeking to a record range:
+ * <pre>
+ * FixedLengthRecordIndex index = FixedLengthRecordIndex.loadOrBuild(channel, indexFile, StandardCharsets.UTF_8, 1000);
+ *
+ * channel.position(index.findOffset(channel, 1200000));
+ * try (Stream&lt;Record&gt; records = listBinder.stream(Channels.newReader(channel, "UTF-8"))) {
+ *     records.limit(501).forEach(...);
+ * }</pre>
+ * The {@link FixedLengthReader} uses the index for its <code>recordIndex</code>, <code>firstRecord</code> and
+ * <code>lastRecord</code> options, e.g. to resume a crashed job from the record after the last committed record.
+ * <p/>
+ * An index is persisted in a compact binary format (delta encoded offsets) and is only reused while it's current, i.e.
+ * while the size and the fingerprint (a checksum of the first and last 4 KB) of the file haven't changed.  That check is
+ * best-effort: an edit which keeps the size of the file and doesn't touch its first and last 4 KB (e.g. a changed record
+ * in the middle of a file of constant width records) goes unnoticed, and the index then points at the wrong records.
+ * When such edits can't be ruled out, {@link #verify(FileChannel) verify} the index against the file, or load it through
+ * {@link #loadOrBuild(FileChannel, Path, Charset, int, boolean)} with verification, at the cost of a scan of the file.
+ * Indexing requires an encoding in which a line terminator byte can't be part of another character i.e. a single byte encoding or
+ * UTF-8.  Instances are immutable and thread safe.
+ */
+public final class FixedLengthRecordIndex {
+
+    private static final int MAGIC = 0x464C4958;
+    private static final int VERSION = 1;
+    private static final int FINGERPRINT_SIZE = 4096;
+
+    private final int interval;
+    private final byte lf;
+    private final byte cr;
+    private final long fileSize;
+    private final long fingerprint;
+    private final long recordCount;
+    private final long[] offsets;
+
+    private FixedLengthRecordIndex(int interval, byte lf, byte cr, long fileSize, long fingerprint, long recordCount, long[] offsets) {
+        this.interval = interval;
+        this.lf = lf;
+        this.cr = cr;
+        this.fileSize = fileSize;
+        this.fingerprint = fingerprint;
+        this.recordCount = recordCount;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Build the index of a file.
+     *
+     * @param channel  The file channel.  The position of the channel is not changed.
+     * @param encoding The encoding of the file.
+     * @param interval The number of records between indexed records.
+     * @return The index.
+     * @throws IOException Error reading the file.
+     */
+    public static FixedLengthRecordIndex build(FileChannel channel, Charset encoding, int interval) throws IOException {
+        AssertArgument.isNotNull(channel, "channel");
+        AssertArgument.isNotNull(encoding, "encoding");
+        FileChunk.assertSplittableEncoding(encoding);
+        if (interval < 1) {
+            throw new IllegalArgumentException("'interval' must be greater than zero.");
+        }
+
+        return scan(channel, "\n".getBytes(encoding)[0], "\r".getBytes(encoding)[0], interval);
+    }
+
+    private static FixedLengthRecordIndex scan(FileChannel channel, byte lf, byte cr, int interval) throws IOException {
+        long size = channel.size();
+        ByteBuffer window = ByteBuffer.allocate(LineSkipper.SCAN_WINDOW_SIZE);
+        long[] offsets = new long[16];
+        int entries = 0;
+        long records = 0;
+        boolean atRecordStart = true;
+        boolean afterCR = false;
+
+        for (long position = 0; position < size; ) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = window.get(i);
+                if (afterCR) {
+                    afterCR = false;
+                    if (b == lf) {
+                        continue;
+                    }
+                }
+                if (atRecordStart) {
+                    if (records % interval == 0) {
+                        if (entries == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, entries * 2);
+                        }
+                        offsets[entries++] = position + i;
+                    }
+                    records++;
+                    atRecordStart = false;
+                }
+                if (b == lf || b == cr) {
+                    atRecordStart = true;
+                    afterCR = (b == cr);
+                }
+            }
+            position += read;
+        }
+
+        return new FixedLengthRecordIndex(interval, lf, cr, size, fingerprint(channel), records, Arrays.copyOf(offsets, entries));
+    }
+
+    /**
+     * Load a persisted index.
+     *
+     * @param indexFile The index file.
+     * @param encoding  The encoding of the indexed file.
+     * @return The index.
+     * @throws IOException Error reading the index file.
+     */
+    public static FixedLengthRecordIndex load(Path indexFile, Charset encoding) throws IOException {
+        AssertArgument.isNotNull(indexFile, "indexFile");
+        AssertArgument.isNotNull(encoding, "encoding");
+        FileChunk.assertSplittableEncoding(encoding);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new SmooksException("'" + indexFile + "' is not a Fixed Length record index.");
+            }
+            int interval = in.readInt();
+            long fileSize = in.readLong();
+            long fingerprint = in.readLong();
+            long recordCount = in.readLong();
+            long[] offsets = new long[in.readInt()];
+            long offset = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                offset += readVarLong(in);
+                offsets[i] = offset;
+            }
+
+            return new FixedLengthRecordIndex(interval, "\n".getBytes(encoding)[0], "\r".getBytes(encoding)[0], fileSize, fingerprint, recordCount, offsets);
+        }
+    }
+
+    /**
+     * Load a persisted index if it's current, otherwise build the index and persist it.
+     *
+     * @param channel   The file channel.  The position of the channel is not changed.
+     * @param indexFile The index file.
+     * @param encoding  The encoding of the file.
+     * @param interval  The number of records between indexed records, when building the index.
+     * @return The index.
+     * @throws IOException Error reading the file or reading/writing the index file.
+     */
+    public static FixedLengthRecordIndex loadOrBuild(FileChannel channel, Path indexFile, Charset encoding, int interval) throws IOException {
+        return loadOrBuild(channel, indexFile, encoding, interval, false);
+    }
+
+    /**
+     * Load a persisted index if it's current, otherwise build the index and persist it.
+     *
+     * @param channel   The file channel.  The position of the channel is not changed.
+     * @param indexFile The index file.
+     * @param encoding  The encoding of the file.
+     * @param interval  The number of records between indexed records, when building the index.
+     * @param verify    True to verify a persisted index against the file (see {@link #verify(FileChannel)}) instead of
+     *                  the best-effort {@link #isCurrent(FileChannel)} check.
+     * @return The index.
+     * @throws IOException Error reading the file or reading/writing the index file.
+     */
+    public static FixedLengthRecordIndex loadOrBuild(FileChannel channel, Path indexFile, Charset encoding, int interval, boolean verify) throws IOException {
+        FixedLengthRecordIndex persisted = null;
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                persisted = load(indexFile, encoding);
+                if (!verify && persisted.isCurrent(channel)) {
+                    return persisted;
+                }
+            } catch (IOException | SmooksException e) {
+                // Corrupt or foreign index file, rebuild it...
+            }
+        }
+
+        FixedLengthRecordIndex index = build(channel, encoding, (persisted != null ? persisted.interval : interval));
+        if (persisted != null && persisted.matches(index)) {
+            return persisted;
+        }
+        index.save(indexFile);
+
+        return index;
+    }
+
+    /**
+     * Persist the index.  The index file is replaced atomically, where supported by the file system.
+     *
+     * @param indexFile The index file.
+     * @throws IOException Error writing the index file.
+     */
+    public void save(Path indexFile) throws IOException {
+        AssertArgument.isNotNull(indexFile, "indexFile");
+
+        Path directory = indexFile.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(interval);
+                out.writeLong(fileSize);
+                out.writeLong(fingerprint);
+                out.writeLong(recordCount);
+                out.writeInt(offsets.length);
+                long previous = 0;
+                for (long offset : offsets) {
+                    writeVarLong(out, offset - previous);
+                    previous = offset;
+                }
+            }
+            try {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Whether the index is the index of the file i.e. whether the file didn't change since it was indexed.
+     * <p/>
+     * Best-effort: only the size and the first and last 4 KB of the file are compared, so an edit in the middle of the
+     * file which keeps its size isn't detected.  Use {@link #verify(FileChannel)} to compare the whole file.
+     *
+     * @param channel The file channel.  The position of the channel is not changed.
+     * @return True if the index is current.
+     * @throws IOException Error reading the file.
+     */
+    public boolean isCurrent(FileChannel channel) throws IOException {
+        return channel.size() == fileSize && fingerprint(channel) == fingerprint;
+    }
+
+    /**
+     * Whether the index is the index of the file, by scanning the whole file.  Unlike {@link #isCurrent(FileChannel)},
+     * this detects every change which moves a record, at the cost of reading the file.
+     *
+     * @param channel The file channel.  The position of the channel is not changed.
+     * @return True if the index is the index of the file.
+     * @throws IOException Error reading the file.
+     */
+    public boolean verify(FileChannel channel) throws IOException {
+        return isCurrent(channel) && matches(scan(channel, lf, cr, interval));
+    }
+
+    private boolean matches(FixedLengthRecordIndex other) {
+        return other.interval == interval && other.fileSize == fileSize && other.fingerprint == fingerprint
+                && other.recordCount == recordCount && Arrays.equals(other.offsets, offsets);
+    }
+
+    /**
+     * Find the byte offset of a record.
+     *
+     * @param channel      The indexed file channel.  The position of the channel is not changed.
+     * @param recordNumber The record number, starting at 1.
+     * @return The byte offset of the first byte of the record, or the size of the file if the file has less records.
+     * @throws IOException Error reading the file.
+     */
+    public long findOffset(FileChannel channel, long recordNumber) throws IOException {
+        if (recordNumber < 1) {
+            throw new IllegalArgumentException("'recordNumber' must be greater than zero.");
+        }
+        if (recordNumber > recordCount) {
+            return fileSize;
+        }
+
+        long entry = (recordNumber - 1) / interval;
+
+        return LineSkipper.skip(channel, offsets[(int) entry], fileSize, recordNumber - 1 - entry * interval, lf, cr);
+    }
+
+    /**
+     * The number of records between indexed records.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * The number of records in the indexed file.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private static long fingerprint(FileChannel channel) throws IOException {
+        long size = channel.size();
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, FINGERPRINT_SIZE));
+
+        channel.read(buffer, 0);
+        crc.update(buffer.array(), 0, buffer.position());
+
+        buffer.clear();
+        channel.read(buffer, Math.max(0, size - buffer.capacity()));
+        crc.update(buffer.array(), 0, buffer.position());
+
+        return crc.getValue();
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SmooksException("Corrupt Fixed Length record index.");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[interval=%s,recordCount=%s,entries=%s]", getClass().getSimpleName(), interval, recordCount, offsets.length);
+    }
+}
@@ -0,0 +1,151 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.Registry;
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming Fixed Length record iterator.
+ * <p/>
+ * Lazily binds the records of a Fixed Length stream, one record per call to {@link #next()}.  Only the current
+ * record is held in memory, so arbitrarily large streams can be processed in constant memory.  Records which don't
+ * contain enough characters for all the fields are skipped (strict parsing).
+ * <p/>
+ * The underlying {@link Reader} is closed when the end of the stream is reached or when the iterator
+ * is {@link #close() closed}, whichever comes first.  Not thread safe.
+ *
+ * @param <T> The record type.
+ * @see FixedLengthRecordParser#iterator(Reader)
+ * @see org.smooks.cartridges.fixedlength.prog.FixedLengthListBinder#stream(Reader)
+ */
+public class FixedLengthRecordIterator<T> implements Iterator<T>, Closeable {
+
+    private final Reader reader;
+    private final RecordReader recordReader;
+    private final RecordBinder recordBinder;
+    private final int totalFieldLength;
+    private T next;
+    private boolean closed;
+
+    /**
+     * Public constructor.
+     *
+     * @param fields     The comma separated field definitions, e.g. "firstname[10]?trim,lastname[10]".
+     * @param recordType The record type.  Either a {@link java.util.Map} or a bean class with a default constructor.
+     * @param reader     The Fixed Length stream.
+     * @param registry   The registry providing the type converters used to bind the field values.
+     */
+    public FixedLengthRecordIterator(String fields, Class<T> recordType, Reader reader, Registry registry) {
+        this(new FixedLengthRecordParser<>(fields, recordType, registry), reader);
+    }
+
+    FixedLengthRecordIterator(FixedLengthRecordParser<T> recordParser, Reader reader) {
+        AssertArgument.isNotNull(reader, "reader");
+
+        this.reader = reader;
+        this.recordReader = new LineRecordReader(reader);
+        this.recordBinder = recordParser.getRecordBinder();
+        this.totalFieldLength = recordParser.getRecordLayout().getTotalFieldLength();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            next = readNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T record = next;
+        next = null;
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T readNext() {
+        try {
+            while (recordReader.nextRecord()) {
+                if (recordReader.getRecordLength() >= totalFieldLength) {
+                    return (T) recordBinder.bind(recordReader);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw new SmooksException("Failed to read Fixed Length stream.", e);
+        }
+
+        close();
+        return null;
+    }
+
+    /**
+     * Close the iterator, releasing the underlying {@link Reader}.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        recordReader.close();
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new SmooksException("Failed to close Fixed Length stream.", e);
+        }
+    }
+}
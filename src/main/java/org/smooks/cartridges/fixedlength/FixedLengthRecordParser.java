@@ -0,0 +1,202 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.Registry;
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Thread safe Fixed Length record parser.
+ * <p/>
+ * Binds Fixed Length records straight onto beans, without a Smooks execution.  The field layout and
+ * bean binding handles are built once, on construction, and shared by all threads.  The per parse state
+ * (the line buffer) is taken from a small pool shared by all the parsers, so repeated parsing of small payloads
+ * doesn't allocate beyond the bound beans themselves, whichever threads (virtual threads included) parse them.
+ * <p/>
+ * Records which don't contain enough characters for all the fields are skipped (strict parsing).
+ * <p/>
+ * Instances should be created once and cached.
+ *
+ * @param <T> The record type.
+ */
+public class FixedLengthRecordParser<T> {
+
+    /**
+     * Line buffers that grew beyond this size (because of very long lines) are not pooled.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Idle line readers, shared by all the parsers.  Bounded, so it holds at most a couple of buffers per core
+     * however many parsers and threads come and go.
+     */
+    private static final BlockingQueue<LineRecordReader> POOLED_READERS = new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private final RecordLayout recordLayout;
+    private final RecordBinder recordBinder;
+
+    /**
+     * Public constructor.
+     *
+     * @param fields     The comma separated field definitions, e.g. "firstname[10]?trim,lastname[10]".
+     * @param recordType The record type.  Either a {@link java.util.Map} or a bean class with a default constructor.
+     * @param registry   The registry providing the type converters used to bind the field values.
+     */
+    public FixedLengthRecordParser(String fields, Class<T> recordType, Registry registry) {
+        AssertArgument.isNotNullAndNotEmpty(fields, "fields");
+        AssertArgument.isNotNull(recordType, "recordType");
+        AssertArgument.isNotNull(registry, "registry");
+
+        this.recordLayout = RecordLayoutCache.getRecordLayout(fields, 0);
+        this.recordBinder = new RecordBinder(recordType, recordLayout.getFields(), registry);
+    }
+
+    /**
+     * Parse the supplied stream, passing each record to the supplied callback as soon as it is bound.
+     * <p/>
+     * The supplied {@link Reader} is not closed.
+     *
+     * @param reader         The Fixed Length stream.
+     * @param recordConsumer The record callback.
+     */
+    @SuppressWarnings("unchecked")
+    public void parse(Reader reader, Consumer<? super T> recordConsumer) {
+        AssertArgument.isNotNull(reader, "reader");
+        AssertArgument.isNotNull(recordConsumer, "recordConsumer");
+
+        // The pooled reader is out of the pool while parsing, so a callback which parses on the same
+        // thread gets another one...
+        LineRecordReader recordReader = POOLED_READERS.poll();
+        if (recordReader != null) {
+            recordReader.reset(reader);
+        } else {
+            recordReader = new LineRecordReader(reader);
+        }
+
+        int totalFieldLength = recordLayout.getTotalFieldLength();
+        try {
+            while (recordReader.nextRecord()) {
+                if (recordReader.getRecordLength() >= totalFieldLength) {
+                    recordConsumer.accept((T) recordBinder.bind(recordReader));
+                }
+            }
+        } catch (IOException e) {
+            throw new SmooksException("Failed to read Fixed Length stream.", e);
+        } finally {
+            recordReader.reset(null);
+            if (recordReader.getCapacity() <= MAX_POOLED_BUFFER_SIZE) {
+                POOLED_READERS.offer(recordReader);
+            }
+        }
+    }
+
+    /**
+     * Lazily parse the supplied stream.
+     *
+     * @param reader The Fixed Length stream.
+     * @return The record iterator.  The supplied {@link Reader} is closed when the iterator is exhausted or closed.
+     */
+    public FixedLengthRecordIterator<T> iterator(Reader reader) {
+        return new FixedLengthRecordIterator<>(this, reader);
+    }
+
+    /**
+     * Publish the records of the supplied stream, binding them only as fast as they're requested.  The records are
+     * delivered on the thread requesting them.
+     *
+     * @param reader The Fixed Length stream.
+     * @return The record publisher.  The supplied {@link Reader} is closed when the stream is exhausted, fails or the
+     * subscription is cancelled.
+     */
+    public FixedLengthRecordPublisher<T> publisher(Reader reader) {
+        return publisher(reader, Runnable::run);
+    }
+
+    /**
+     * Publish the records of the supplied stream, binding them only as fast as they're requested.
+     *
+     * @param reader   The Fixed Length stream.
+     * @param executor The executor binding and delivering the records.
+     * @return The record publisher.  The supplied {@link Reader} is closed when the stream is exhausted, fails or the
+     * subscription is cancelled.
+     */
+    public FixedLengthRecordPublisher<T> publisher(Reader reader, Executor executor) {
+        return new FixedLengthRecordPublisher<>(this, reader, executor);
+    }
+
+    /**
+     * Create a key extractor for the supplied field.
+     *
+     * @param keyField The key field name.
+     * @return A thread safe function returning the bound value of the key field of a record.
+     * @throws org.smooks.api.SmooksConfigException The layout doesn't contain the field.
+     */
+    @SuppressWarnings("unchecked")
+    public Function<T, Object> createKeyExtractor(String keyField) {
+        AssertArgument.isNotNullAndNotEmpty(keyField, "keyField");
+        recordLayout.assertValidFieldName(keyField);
+
+        return (Function<T, Object>) recordBinder.createKeyExtractor(keyField);
+    }
+
+    static int getPooledReaderCount() {
+        return POOLED_READERS.size();
+    }
+
+    RecordLayout getRecordLayout() {
+        return recordLayout;
+    }
+
+    RecordBinder getRecordBinder() {
+        return recordBinder;
+    }
+}
@@ -0,0 +1,245 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.assertion.AssertArgument;
+
+import java.io.Reader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed Length record publisher, with backpressure.
+ * <p/>
+ * Binds the records of a Fixed Length stream only as fast as its subscriber requests them, so a slow consumer (e.g. a
+ * message producer or a database writer) processes an arbitrarily large stream in a single pass, in constant memory.
+ * The publisher follows the Reactive Streams protocol: {@link Subscriber#onSubscribe(Subscription)} first, then at most
+ * as many {@link Subscriber#onNext(Object)} calls as requested, then either {@link Subscriber#onComplete()} or
+ * {@link Subscriber#onError(Throwable)}.  Its interfaces have the method signatures of the Reactive Streams and
+ * <code>java.util.concurrent.Flow</code> interfaces, so it can be adapted to either with a few lambdas.
+ * <p/>
+ * The records are bound and delivered on the supplied {@link Executor}, or on the thread calling
+ * {@link Subscription#request(long)} by default.  Deliveries are never concurrent and re-entrant requests are queued,
+ * not recursed into.  The publisher reads ahead one record once the demand is met, to signal the completion of the stream
+ * without waiting for more demand.  The supplied {@link Reader} is closed when the stream completes, fails or the
+ * subscription is cancelled.  A publisher accepts a single subscriber.
+ *
+ * @param <T> The record type.
+ * @see FixedLengthRecordParser#publisher(Reader)
+ */
+public class FixedLengthRecordPublisher<T> {
+
+    /**
+     * Record subscriber.
+     */
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T record);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Subscription of a {@link Subscriber} to a publisher.
+     */
+    public interface Subscription {
+        /**
+         * Request more records.
+         *
+         * @param n The number of records, greater than zero.
+         */
+        void request(long n);
+
+        /**
+         * Stop delivering records and release the stream.
+         */
+        void cancel();
+    }
+
+    private final FixedLengthRecordIterator<T> recordIterator;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    FixedLengthRecordPublisher(FixedLengthRecordParser<T> recordParser, Reader reader, Executor executor) {
+        AssertArgument.isNotNull(executor, "executor");
+
+        this.recordIterator = recordParser.iterator(reader);
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribe to the records.
+     *
+     * @param subscriber The subscriber.
+     */
+    public void subscribe(Subscriber<? super T> subscriber) {
+        AssertArgument.isNotNull(subscriber, "subscriber");
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A Fixed Length record publisher accepts a single subscriber."));
+            return;
+        }
+
+        RecordSubscription subscription = new RecordSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class RecordSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        // Number of pending drain passes.  Only the caller moving it from 0 drains...
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+
+        private RecordSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " records.  The number of requested records must be greater than zero.");
+            } else {
+                requested.getAndUpdate(current -> (current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    drain();
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            long demand = requested.get();
+            long emitted = 0;
+            boolean complete = false;
+            try {
+                while (!cancelled && invalidRequest == null) {
+                    if (!recordIterator.hasNext()) {
+                        complete = true;
+                        break;
+                    }
+                    if (emitted == demand) {
+                        break;
+                    }
+                    subscriber.onNext(recordIterator.next());
+                    emitted++;
+                }
+            } catch (RuntimeException e) {
+                Throwable closeFailure = terminate();
+                if (closeFailure != null) {
+                    e.addSuppressed(closeFailure);
+                }
+                subscriber.onError(e);
+                return;
+            }
+
+            if (cancelled) {
+                terminate();
+            } else if (invalidRequest != null) {
+                terminate();
+                subscriber.onError(invalidRequest);
+            } else if (complete) {
+                Throwable closeFailure = terminate();
+                if (closeFailure != null) {
+                    subscriber.onError(closeFailure);
+                } else {
+                    subscriber.onComplete();
+                }
+            } else if (demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        /**
+         * Release the stream.
+         *
+         * @return The failure to close the stream, or <code>null</code>.
+         */
+        private Throwable terminate() {
+            done = true;
+            try {
+                recordIterator.close();
+                return null;
+            } catch (RuntimeException e) {
+                return e;
+            }
+        }
+    }
+}
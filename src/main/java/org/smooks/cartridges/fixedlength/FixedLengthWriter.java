@@ -0,0 +1,378 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Fixed Length record writer.
+ * <p/>
+ * Serializes beans (or {@link java.util.Map Maps}) into Fixed Length records with the same field definitions as the
+ * {@link FixedLengthReader}, e.g. "firstname[10]?trim,lastname[10],$ignore$[2],amount[12]:decimal(2)".  The bean
+ * properties (or map entries) with the same name as the fields are written, the way the reader binds them:
+ * <ul>
+ *     <li>Untyped fields are written left aligned and space padded.  Longer values are truncated.  The string
+ *     functions of the field, if any, are applied to the value first.</li>
+ *     <li>Typed fields are written in the form their type decodes, e.g. numbers right aligned and zero padded with
+ *     the decimals implied by the scale.  A typed value which doesn't fit the field fails the write.</li>
+ *     <li>Ignored fields and <code>null</code> values are written as spaces.</li>
+ * </ul>
+ * The record layout, the property getters and a blank record template are built once, on construction.  Each record
+ * is written over a copy of the template in a reusable block buffer, which is flushed to the underlying stream
+ * when it's full, so writing a record doesn't allocate beyond what the property getters return.
+ * <p/>
+ * Not thread safe.
+ *
+ * @param <T> The record type.
+ */
+public class FixedLengthWriter<T> implements Closeable, Flushable {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final OutputStream outputStream;
+    private final CharsetEncoder encoder;
+    private final FieldWriter[] fieldWriters;
+    private final int totalFieldLength;
+    private char[] template;
+    private char[] buffer;
+    private ByteBuffer bytes;
+    private int position;
+
+    /**
+     * Public constructor.
+     *
+     * @param fields     The comma separated field definitions, e.g. "firstname[10],lastname[10]".
+     * @param recordType The record type.  Either a {@link java.util.Map} or a bean class with getters for the fields.
+     * @param writer     The Fixed Length output.
+     */
+    public FixedLengthWriter(String fields, Class<T> recordType, Writer writer) {
+        this(fields, recordType, writer, null, null);
+        AssertArgument.isNotNull(writer, "writer");
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param fields       The comma separated field definitions, e.g. "firstname[10],lastname[10]".
+     * @param recordType   The record type.  Either a {@link java.util.Map} or a bean class with getters for the fields.
+     * @param outputStream The Fixed Length output.
+     * @param encoding     The encoding of the output.
+     */
+    public FixedLengthWriter(String fields, Class<T> recordType, OutputStream outputStream, Charset encoding) {
+        this(fields, recordType, null, outputStream, encoding);
+        AssertArgument.isNotNull(outputStream, "outputStream");
+    }
+
+    private FixedLengthWriter(String fields, Class<T> recordType, Writer writer, OutputStream outputStream, Charset encoding) {
+        AssertArgument.isNotNullAndNotEmpty(fields, "fields");
+        AssertArgument.isNotNull(recordType, "recordType");
+
+        RecordLayout recordLayout = RecordLayoutCache.getRecordLayout(fields, 0);
+        List<FieldWriter> fieldWriters = new ArrayList<>();
+        int offset = 0;
+        for (Field field : recordLayout.getFields()) {
+            if (!field.ignore()) {
+                Function<Object, Object> getter = RecordBinder.createPropertyGetter(recordType, field.getName());
+                if (field.getFieldType() != null) {
+                    fieldWriters.add(new TypedFieldWriter(field, offset, getter));
+                } else if (field.getFieldFunction() != null) {
+                    fieldWriters.add(new FunctionFieldWriter(field, offset, getter));
+                } else {
+                    fieldWriters.add(new TextFieldWriter(field, offset, getter));
+                }
+            }
+            offset += field.getLength();
+        }
+
+        this.writer = writer;
+        this.outputStream = outputStream;
+        this.encoder = (encoding != null ? encoding.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE) : null);
+        this.fieldWriters = fieldWriters.toArray(new FieldWriter[0]);
+        this.totalFieldLength = recordLayout.getTotalFieldLength();
+        setRecordSeparator("\n");
+    }
+
+    /**
+     * Set the separator written after each record.  Defaults to "\n".  An empty separator writes the records back to
+     * back, for {@link FixedLengthRecordFraming#FIXED} framing.
+     *
+     * @param recordSeparator The record separator.
+     * @return This writer.
+     */
+    public FixedLengthWriter<T> setRecordSeparator(String recordSeparator) {
+        AssertArgument.isNotNull(recordSeparator, "recordSeparator");
+
+        template = new char[totalFieldLength + recordSeparator.length()];
+        Arrays.fill(template, 0, totalFieldLength, ' ');
+        recordSeparator.getChars(0, recordSeparator.length(), template, totalFieldLength);
+        if (buffer == null) {
+            buffer = new char[Math.max(DEFAULT_BUFFER_SIZE, template.length)];
+        } else if (buffer.length < template.length) {
+            buffer = Arrays.copyOf(buffer, template.length);
+        }
+        return this;
+    }
+
+    /**
+     * Write a record.
+     *
+     * @param record The record.
+     * @throws SmooksException A typed field value doesn't fit its field, or the output failed.
+     */
+    public void write(T record) {
+        AssertArgument.isNotNull(record, "record");
+
+        if (buffer.length - position < template.length) {
+            try {
+                flushBuffer();
+            } catch (IOException e) {
+                throw new SmooksException("Failed to write Fixed Length records.", e);
+            }
+        }
+        System.arraycopy(template, 0, buffer, position, template.length);
+        for (FieldWriter fieldWriter : fieldWriters) {
+            fieldWriter.write(record, buffer, position);
+        }
+        position += template.length;
+    }
+
+    /**
+     * Write the records, e.g. the list or the values of the map bound by a {@link FixedLengthBinding}.
+     *
+     * @param records The records.
+     */
+    public void writeAll(Iterable<? extends T> records) {
+        AssertArgument.isNotNull(records, "records");
+
+        for (T record : records) {
+            write(record);
+        }
+    }
+
+    /**
+     * Write the buffered records to the underlying stream and flush it.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        if (writer != null) {
+            writer.flush();
+        } else {
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Write the buffered records to the underlying stream and close it.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (writer != null) {
+                writer.close();
+            } else {
+                outputStream.close();
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.write(buffer, 0, position);
+        } else if (position > 0) {
+            encode();
+        }
+        position = 0;
+    }
+
+    /**
+     * Encode the buffered records, writing the byte buffer to the output stream whenever it fills up.
+     */
+    private void encode() throws IOException {
+        if (bytes == null) {
+            bytes = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, (long) (buffer.length * encoder.averageBytesPerChar()) + 16));
+        }
+        CharBuffer chars = CharBuffer.wrap(buffer, 0, position);
+        while (encoder.encode(chars, bytes, true).isOverflow()) {
+            writeBytes();
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            writeBytes();
+        }
+        writeBytes();
+        encoder.reset();
+    }
+
+    private void writeBytes() throws IOException {
+        outputStream.write(bytes.array(), 0, bytes.position());
+        bytes.clear();
+    }
+
+    /**
+     * Writes the value of a field into the buffer.
+     */
+    private abstract static class FieldWriter {
+
+        final String name;
+        final int offset;
+        final int length;
+        final Function<Object, Object> getter;
+
+        private FieldWriter(Field field, int offset, Function<Object, Object> getter) {
+            this.name = field.getName();
+            this.offset = offset;
+            this.length = field.getLength();
+            this.getter = getter;
+        }
+
+        /**
+         * Write the field value of the record over the blank field of the record starting at the supplied position.
+         */
+        abstract void write(Object record, char[] buffer, int recordPosition);
+
+        /**
+         * Copy text left aligned into the field, truncating it to the field length.
+         */
+        void copy(CharSequence text, char[] buffer, int fieldPosition) {
+            int textLength = Math.min(text.length(), length);
+            if (text instanceof String) {
+                ((String) text).getChars(0, textLength, buffer, fieldPosition);
+            } else {
+                for (int i = 0; i < textLength; i++) {
+                    buffer[fieldPosition + i] = text.charAt(i);
+                }
+            }
+        }
+    }
+
+    private static final class TextFieldWriter extends FieldWriter {
+
+        private TextFieldWriter(Field field, int offset, Function<Object, Object> getter) {
+            super(field, offset, getter);
+        }
+
+        @Override
+        void write(Object record, char[] buffer, int recordPosition) {
+            Object value = getter.apply(record);
+            if (value != null) {
+                copy(value instanceof CharSequence ? (CharSequence) value : value.toString(), buffer, recordPosition + offset);
+            }
+        }
+    }
+
+    private static final class FunctionFieldWriter extends FieldWriter {
+
+        private final FieldFunction fieldFunction;
+        private char[] functionChars;
+        private char[] resultChars;
+
+        private FunctionFieldWriter(Field field, int offset, Function<Object, Object> getter) {
+            super(field, offset, getter);
+            this.fieldFunction = field.getFieldFunction();
+            this.functionChars = new char[length];
+            this.resultChars = new char[length];
+        }
+
+        @Override
+        void write(Object record, char[] buffer, int recordPosition) {
+            Object value = getter.apply(record);
+            if (value != null) {
+                String text = value.toString();
+                int textLength = text.length();
+                if (textLength > functionChars.length) {
+                    functionChars = new char[textLength];
+                    resultChars = new char[textLength];
+                }
+                text.getChars(0, textLength, functionChars, 0);
+
+                int valueLength = fieldFunction.apply(functionChars, 0, textLength, resultChars);
+                if (valueLength == -1) {
+                    copy(fieldFunction.apply(functionChars, 0, textLength), buffer, recordPosition + offset);
+                } else {
+                    System.arraycopy(resultChars, 0, buffer, recordPosition + offset, Math.min(valueLength, length));
+                }
+            }
+        }
+    }
+
+    private static final class TypedFieldWriter extends FieldWriter {
+
+        private final FieldType fieldType;
+
+        private TypedFieldWriter(Field field, int offset, Function<Object, Object> getter) {
+            super(field, offset, getter);
+            this.fieldType = field.getFieldType();
+        }
+
+        @Override
+        void write(Object record, char[] buffer, int recordPosition) {
+            Object value = getter.apply(record);
+            if (value != null) {
+                try {
+                    fieldType.encode(value, buffer, recordPosition + offset, length);
+                } catch (SmooksException e) {
+                    throw new SmooksException("Failed to write Fixed Length field '" + name + "'.", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Fixed record length reader.
+ * <p/>
+ * Frames a stream without record terminators into records of a fixed number of characters.  The stream is read into a
+ * reusable character buffer with bulk reads and each record is exposed as a slice of that buffer, without scanning the
+ * characters.  A short last record (end of stream) is exposed with its actual length.
+ */
+class FixedRecordReader extends RecordReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final int recordLength;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private int currentLength;
+    private boolean eof;
+
+    FixedRecordReader(Reader reader, int recordLength) {
+        if (recordLength < 1) {
+            throw new IllegalArgumentException("'recordLength' must be greater than zero.");
+        }
+        this.reader = reader;
+        this.recordLength = recordLength;
+        // A whole number of records, so records are only moved when the stream returns short reads...
+        this.buffer = new char[Math.max(1, DEFAULT_BUFFER_SIZE / recordLength) * recordLength];
+    }
+
+    @Override
+    boolean nextRecord() throws IOException {
+        position += currentLength;
+        if (limit - position < recordLength && !eof) {
+            // Move the partial record to the front of the buffer and fill it up...
+            int pending = limit - position;
+            System.arraycopy(buffer, position, buffer, 0, pending);
+            position = 0;
+            limit = pending;
+            while (limit < recordLength) {
+                int read = reader.read(buffer, limit, buffer.length - limit);
+                if (read == -1) {
+                    eof = true;
+                    break;
+                }
+                limit += read;
+            }
+        }
+
+        currentLength = Math.min(recordLength, limit - position);
+
+        return currentLength > 0;
+    }
+
+    @Override
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    int getRecordOffset() {
+        return position;
+    }
+
+    @Override
+    int getRecordLength() {
+        return currentLength;
+    }
+}
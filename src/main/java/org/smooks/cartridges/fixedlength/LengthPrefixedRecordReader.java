@@ -0,0 +1,170 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Length prefixed record reader.
+ * <p/>
+ * Frames a byte stream of records prefixed by a 4 byte record descriptor word (RDW) into records.  The first two bytes
+ * of the RDW hold the big endian length of the record, including the RDW.  The stream is read into a reusable byte
+ * buffer with bulk reads and the bytes of each record are decoded into a reusable character buffer.
+ */
+class LengthPrefixedRecordReader extends RecordReader {
+
+    static final int RDW_LENGTH = 4;
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private final InputStream stream;
+    private final CharsetDecoder decoder;
+    private byte[] bytes = new byte[DEFAULT_BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long streamOffset;
+    private char[] buffer = new char[256];
+    private int recordLength;
+
+    LengthPrefixedRecordReader(InputStream stream, Charset encoding) {
+        this.stream = stream;
+        this.decoder = encoding.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    boolean nextRecord() throws IOException {
+        if (!fill(RDW_LENGTH)) {
+            if (limit > position) {
+                throw new SmooksException("Truncated record descriptor word at byte offset " + (streamOffset + position) + " of the length prefixed Fixed Length stream.");
+            }
+            return false;
+        }
+
+        int length = ((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF);
+        if (length < RDW_LENGTH) {
+            throw new SmooksException("Invalid record descriptor word at byte offset " + (streamOffset + position) + " of the length prefixed Fixed Length stream.  Record length " + length + " is less than " + RDW_LENGTH + ".");
+        }
+        if (!fill(length)) {
+            throw new SmooksException("Truncated record at byte offset " + (streamOffset + position) + " of the length prefixed Fixed Length stream.  Expected " + length + " bytes, found " + (limit - position) + ".");
+        }
+
+        decodeRecord(position + RDW_LENGTH, length - RDW_LENGTH);
+        position += length;
+
+        return true;
+    }
+
+    /**
+     * Make sure the buffer holds at least the supplied number of bytes from the current position on.
+     *
+     * @return False if the end of the stream is reached first.
+     */
+    private boolean fill(int length) throws IOException {
+        if (limit - position >= length) {
+            return true;
+        }
+
+        int pending = limit - position;
+        if (length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(length, bytes.length * 2));
+        }
+        System.arraycopy(bytes, position, bytes, 0, pending);
+        streamOffset += position;
+        position = 0;
+        limit = pending;
+
+        while (limit < length) {
+            int read = stream.read(bytes, limit, bytes.length - limit);
+            if (read == -1) {
+                return false;
+            }
+            limit += read;
+        }
+
+        return true;
+    }
+
+    private void decodeRecord(int offset, int length) throws CharacterCodingException {
+        int maxChars = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if (maxChars > buffer.length) {
+            buffer = new char[Math.max(maxChars, buffer.length * 2)];
+        }
+
+        CharBuffer chars = CharBuffer.wrap(buffer);
+        decoder.reset();
+        CoderResult result = decoder.decode(ByteBuffer.wrap(bytes, offset, length), chars, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        result = decoder.flush(chars);
+        if (result.isError()) {
+            result.throwException();
+        }
+        recordLength = chars.position();
+    }
+
+    @Override
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    int getRecordOffset() {
+        return 0;
+    }
+
+    @Override
+    int getRecordLength() {
+        return recordLength;
+    }
+}
@@ -0,0 +1,165 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Line based record reader.
+ * <p/>
+ * Scans a reusable character buffer for line terminators (<code>'\n'</code>, <code>'\r'</code> or
+ * <code>"\r\n"</code>, the same as {@link java.io.BufferedReader#readLine()}), several characters at a time (see
+ * {@link BulkScanner}), and exposes each line as a slice of that buffer.  No {@link String} or <code>char[]</code>
+ * is materialized per line.  The buffer only grows when a single line doesn't fit in it.
+ */
+class LineRecordReader extends RecordReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private Reader reader;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private int recordOffset;
+    private int recordLength;
+    private boolean skipLF;
+
+    LineRecordReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    LineRecordReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    @Override
+    boolean nextRecord() throws IOException {
+        int start = position;
+        int scan = position;
+
+        while (true) {
+            if (scan == limit) {
+                // Move the partial record to the front of the buffer (or grow the buffer) and fill it up...
+                int pending = limit - start;
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, pending);
+                } else if (pending == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                start = 0;
+                scan = pending;
+                limit = pending;
+
+                int read = reader.read(buffer, limit, buffer.length - limit);
+                if (read == -1) {
+                    position = limit;
+                    if (pending == 0) {
+                        return false;
+                    }
+                    recordOffset = 0;
+                    recordLength = pending;
+                    return true;
+                }
+                limit += read;
+            }
+
+            if (skipLF) {
+                skipLF = false;
+                if (buffer[scan] == '\n') {
+                    start++;
+                    scan++;
+                    continue;
+                }
+            }
+            int terminator = BulkScanner.indexOfLineTerminator(buffer, scan, limit);
+            if (terminator == -1) {
+                scan = limit;
+                continue;
+            }
+            recordOffset = start;
+            recordLength = terminator - start;
+            position = terminator + 1;
+            skipLF = (buffer[terminator] == '\r');
+            return true;
+        }
+    }
+
+    /**
+     * Point this reader at a new stream, keeping the (possibly grown) buffer.
+     *
+     * @param reader The new stream.
+     */
+    void reset(Reader reader) {
+        this.reader = reader;
+        position = 0;
+        limit = 0;
+        recordOffset = 0;
+        recordLength = 0;
+        skipLF = false;
+    }
+
+    /**
+     * The capacity of the buffer in characters.
+     */
+    int getCapacity() {
+        return buffer.length;
+    }
+
+    @Override
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    int getRecordOffset() {
+        return recordOffset;
+    }
+
+    @Override
+    int getRecordLength() {
+        return recordLength;
+    }
+}
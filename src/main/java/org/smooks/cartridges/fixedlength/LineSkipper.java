@@ -0,0 +1,214 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Skips lines by scanning the raw bytes for line terminators (<code>'\n'</code>, <code>'\r'</code> or
+ * <code>"\r\n"</code>), without decoding the skipped lines.
+ * <p/>
+ * Requires an encoding in which a line terminator byte can't be part of another character i.e. a single byte encoding
+ * or UTF-8.  See {@link FileChunk#isSplittableEncoding(java.nio.charset.Charset)}.
+ */
+final class LineSkipper {
+
+    static final int SCAN_WINDOW_SIZE = 8192;
+
+    private LineSkipper() {
+    }
+
+    /**
+     * Skip lines of a file.
+     *
+     * @param channel  The file channel.  The position of the channel is not changed.
+     * @param position The position of the first byte of a line.
+     * @param end      The end position of the scan.
+     * @param count    The number of lines to skip.
+     * @param lf       The line feed byte.
+     * @param cr       The carriage return byte.
+     * @return The position of the first byte of the line after the skipped lines, or the end position.
+     * @throws IOException Error reading the file.
+     */
+    static long skip(FileChannel channel, long position, long end, long count, byte lf, byte cr) throws IOException {
+        if (count == 0) {
+            return position;
+        }
+
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW_SIZE);
+        boolean afterCR = false;
+
+        while (position < end) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            read = (int) Math.min(read, end - position);
+            int i = 0;
+            while (i < read) {
+                if (afterCR) {
+                    afterCR = false;
+                    if (window.get(i) == lf) {
+                        i++;
+                        continue;
+                    }
+                }
+                if (count == 0) {
+                    return position + i;
+                }
+                int terminator = BulkScanner.indexOfLineTerminator(window, i, read, lf, cr);
+                if (terminator == -1) {
+                    break;
+                }
+                count--;
+                afterCR = (window.get(terminator) == cr);
+                i = terminator + 1;
+            }
+            position += read;
+        }
+
+        return end;
+    }
+
+    /**
+     * Count the lines of a file range.
+     *
+     * @param channel  The file channel.  The position of the channel is not changed.
+     * @param position The position of the first byte of a line.
+     * @param end      The end position of the range, after a line terminator or at the end of the file.
+     * @param lf       The line feed byte.
+     * @param cr       The carriage return byte.
+     * @return The number of lines, the last line of the file counted whether or not it's terminated.
+     * @throws IOException Error reading the file.
+     */
+    static long count(FileChannel channel, long position, long end, byte lf, byte cr) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW_SIZE);
+        boolean afterCR = false;
+        boolean inLine = false;
+        long count = 0;
+
+        while (position < end) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            read = (int) Math.min(read, end - position);
+            int i = 0;
+            while (i < read) {
+                if (afterCR) {
+                    afterCR = false;
+                    if (window.get(i) == lf) {
+                        i++;
+                        continue;
+                    }
+                }
+                int terminator = BulkScanner.indexOfLineTerminator(window, i, read, lf, cr);
+                if (terminator == -1) {
+                    inLine = true;
+                    break;
+                }
+                count++;
+                inLine = false;
+                afterCR = (window.get(terminator) == cr);
+                i = terminator + 1;
+            }
+            position += read;
+        }
+
+        // The last line doesn't need a terminator...
+        return (inLine ? count + 1 : count);
+    }
+
+    /**
+     * Skip lines of a stream.  The bytes read beyond the skipped lines are pushed back onto the stream.
+     *
+     * @param stream The stream, positioned on the first byte of a line, with a pushback buffer of at least
+     *               {@link #SCAN_WINDOW_SIZE} bytes.
+     * @param count  The number of lines to skip.
+     * @param lf     The line feed byte.
+     * @param cr     The carriage return byte.
+     * @return The number of skipped lines, less than count if the stream ended.
+     * @throws IOException Error reading the stream.
+     */
+    static long skip(PushbackInputStream stream, long count, byte lf, byte cr) throws IOException {
+        byte[] window = new byte[SCAN_WINDOW_SIZE];
+        boolean afterCR = false;
+        boolean inLine = false;
+        long skipped = 0;
+
+        while (skipped < count || afterCR) {
+            int read = stream.read(window);
+            if (read == -1) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = window[i];
+                if (afterCR) {
+                    afterCR = false;
+                    if (b == lf) {
+                        continue;
+                    }
+                }
+                if (skipped == count) {
+                    stream.unread(window, i, read - i);
+                    return skipped;
+                }
+                if (b == lf || b == cr) {
+                    skipped++;
+                    afterCR = (b == cr);
+                    inLine = false;
+                } else {
+                    inLine = true;
+                }
+            }
+        }
+
+        // The last line doesn't need a terminator...
+        return (inLine ? skipped + 1 : skipped);
+    }
+}
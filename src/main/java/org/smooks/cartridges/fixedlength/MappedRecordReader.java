@@ -0,0 +1,222 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksConfigException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * Memory mapped, line based record reader for single byte encoded files.
+ * <p/>
+ * Maps the file region by region with {@link FileChannel#map(FileChannel.MapMode, long, long)}, scans the raw
+ * bytes for line terminators and slices the records by byte offset.  Because every character is exactly one
+ * byte, characters are decoded through a 256 entry lookup table, and only for the ranges asked for through
+ * {@link #decode(int, int)}.
+ */
+class MappedRecordReader extends RecordReader {
+
+    private static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long end;
+    private final char[] decodeTable;
+    private final byte lf;
+    private final byte cr;
+    private int regionSize;
+    private MappedByteBuffer region;
+    private long regionPosition;
+    private int position;
+    private boolean skipLF;
+    private char[] buffer = new char[256];
+    private int recordStart;
+    private int recordLength;
+
+    MappedRecordReader(FileChannel channel, Charset encoding) throws IOException {
+        this(channel, encoding, DEFAULT_REGION_SIZE);
+    }
+
+    MappedRecordReader(FileChannel channel, Charset encoding, int regionSize) throws IOException {
+        this.channel = channel;
+        this.end = channel.size();
+        this.decodeTable = createDecodeTable(encoding);
+        this.lf = encodeSingleByte(encoding, '\n');
+        this.cr = encodeSingleByte(encoding, '\r');
+        this.regionSize = regionSize;
+        map(channel.position());
+    }
+
+    /**
+     * Assert that the encoding is a single byte encoding i.e. that every character is exactly one byte.
+     *
+     * @param encoding The encoding.
+     * @throws SmooksConfigException The encoding is not a single byte encoding.
+     */
+    static void assertSingleByteEncoding(Charset encoding) throws SmooksConfigException {
+        createDecodeTable(encoding);
+    }
+
+    @Override
+    boolean nextRecord() throws IOException {
+        int start = position;
+        int scan = position;
+
+        while (true) {
+            int limit = region.limit();
+            while (scan < limit) {
+                if (skipLF) {
+                    skipLF = false;
+                    if (region.get(scan) == lf) {
+                        start++;
+                        scan++;
+                        continue;
+                    }
+                }
+                int terminator = BulkScanner.indexOfLineTerminator(region, scan, limit, lf, cr);
+                if (terminator == -1) {
+                    scan = limit;
+                    break;
+                }
+                setRecord(start, terminator - start);
+                position = terminator + 1;
+                skipLF = (region.get(terminator) == cr);
+                return true;
+            }
+
+            if (regionPosition + limit >= end) {
+                // Last region...
+                position = scan;
+                if (scan == start) {
+                    return false;
+                }
+                setRecord(start, scan - start);
+                return true;
+            }
+
+            // The record continues in the next region. Remap the file starting at the record, growing the
+            // region if the record doesn't fit in a single region...
+            if (start == 0) {
+                regionSize = (int) Math.min((long) regionSize * 2, Integer.MAX_VALUE);
+            }
+            map(regionPosition + start);
+            scan -= start;
+            start = 0;
+        }
+    }
+
+    @Override
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    int getRecordOffset() {
+        return 0;
+    }
+
+    @Override
+    int getRecordLength() {
+        return recordLength;
+    }
+
+    @Override
+    void decode(int offset, int length) {
+        int from = recordStart + offset;
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = decodeTable[region.get(from + i) & 0xFF];
+        }
+    }
+
+    private void setRecord(int start, int length) {
+        recordStart = start;
+        recordLength = length;
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+    }
+
+    private void map(long position) throws IOException {
+        regionPosition = position;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, end - position));
+        this.position = 0;
+    }
+
+    private static char[] createDecodeTable(Charset encoding) {
+        CharsetEncoder encoder;
+        try {
+            encoder = encoding.newEncoder();
+        } catch (UnsupportedOperationException e) {
+            throw unsupportedEncoding(encoding);
+        }
+        if (encoder.maxBytesPerChar() != 1.0f) {
+            throw unsupportedEncoding(encoding);
+        }
+
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        char[] decodeTable = new String(bytes, encoding).toCharArray();
+        if (decodeTable.length != bytes.length) {
+            throw unsupportedEncoding(encoding);
+        }
+
+        return decodeTable;
+    }
+
+    private static byte encodeSingleByte(Charset encoding, char c) {
+        byte[] bytes = String.valueOf(c).getBytes(encoding);
+        if (bytes.length != 1) {
+            throw unsupportedEncoding(encoding);
+        }
+        return bytes[0];
+    }
+
+    private static SmooksConfigException unsupportedEncoding(Charset encoding) {
+        return new SmooksConfigException("Encoding '" + encoding.name() + "' is not supported by the memory mapped Fixed Length reader. A single byte encoding is required.");
+    }
+}
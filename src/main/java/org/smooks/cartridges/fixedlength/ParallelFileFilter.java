@@ -0,0 +1,249 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+import org.smooks.io.payload.JavaResult;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Filters Fixed Length files through a {@link Smooks} instance, in parallel if requested.
+ * <p/>
+ * For a parallelism greater than 1 the file is split into record aligned {@link FileChunk chunks} (about four
+ * per thread, for load balancing), in the encoding of the {@link FixedLengthReaderConfigurator reader configuration},
+ * and every chunk is filtered on its own thread of a shared {@link ForkJoinPool} (see
+ * {@link ParallelRecordReader#getPool(int)}).  The {@link JavaResult results} are returned in file order, so the
+ * binders can merge them in order.
+ * <p/>
+ * Line numbers, skipLines and the record range (firstRecord and lastRecord) apply to the whole file.  When any of them
+ * is configured, the lines of every chunk are counted first (on the same threads, without decoding), so every chunk is
+ * filtered with the number of lines before it.  The chunks without records in range aren't filtered.  Only
+ * '{@link FixedLengthRecordFraming#LINE LINE}' framed files can be split.
+ */
+public final class ParallelFileFilter {
+
+    private static final long MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Smooks smooks;
+    private final Charset encoding;
+    private final int parallelism;
+    private final boolean lineNumbered;
+    private final long leadingLines;
+    private final long lastRecord;
+    private volatile boolean filtered;
+
+    /**
+     * Create a filter.
+     *
+     * @param smooks             The Smooks instance, configured with the reader configuration.
+     * @param readerConfigurator The reader configuration of the Smooks instance.
+     * @param parallelism        The number of threads.
+     */
+    public ParallelFileFilter(Smooks smooks, FixedLengthReaderConfigurator readerConfigurator, int parallelism) {
+        AssertArgument.isNotNull(smooks, "smooks");
+        AssertArgument.isNotNull(readerConfigurator, "readerConfigurator");
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("'parallelism' must be greater than zero.");
+        }
+        if (parallelism > 1) {
+            FileChunk.assertSplittableEncoding(readerConfigurator.getEncoding());
+            if (readerConfigurator.getFraming() != FixedLengthRecordFraming.LINE) {
+                throw new IllegalArgumentException("Parallel Fixed Length filtering requires '" + FixedLengthRecordFraming.LINE + "' framing.");
+            }
+        }
+
+        this.smooks = smooks;
+        this.encoding = readerConfigurator.getEncoding();
+        this.parallelism = parallelism;
+        this.leadingLines = Math.max(readerConfigurator.getSkipLines(), readerConfigurator.getFirstRecord() - 1);
+        this.lastRecord = readerConfigurator.getLastRecord();
+        this.lineNumbered = readerConfigurator.isLineNumber() || leadingLines > 0 || lastRecord < Long.MAX_VALUE;
+    }
+
+    /**
+     * @return True if files are split into chunks filtered concurrently, false if every file is filtered as a whole.
+     */
+    public boolean isParallel() {
+        return parallelism > 1;
+    }
+
+    public List<JavaResult> filter(File file) {
+        List<JavaResult> javaResults = new ArrayList<>();
+        filter(file, javaResults::add);
+        return javaResults;
+    }
+
+    /**
+     * Filter a file, handing the {@link JavaResult results} to a consumer in file order, as they complete.  A result is
+     * released as soon as it is consumed, so a consumer merging the results doesn't hold every chunk at once.
+     *
+     * @param file     The Fixed Length file.
+     * @param consumer The result consumer, called on the calling thread.
+     */
+    public void filter(File file, Consumer<JavaResult> consumer) {
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            if (parallelism == 1) {
+                JavaResult javaResult = new JavaResult();
+                Runnable filter = () -> smooks.filterSource(createExecutionContext(0), new StreamSource(fileInputStream), javaResult);
+                if (filtered) {
+                    filter.run();
+                } else {
+                    filterFirst(filter);
+                }
+                consumer.accept(javaResult);
+                return;
+            }
+
+            FileChannel channel = fileInputStream.getChannel();
+            long chunkSize = Math.max(channel.size() / ((long) parallelism * CHUNKS_PER_THREAD), MIN_CHUNK_SIZE);
+            List<FileChunk> chunks = FileChunk.split(channel, encoding, chunkSize);
+
+            ForkJoinPool pool = ParallelRecordReader.getPool(parallelism);
+            long[] lineOffsets = (lineNumbered ? countLines(pool, channel, chunks) : null);
+            List<ForkJoinTask<JavaResult>> tasks = new ArrayList<>(chunks.size());
+            try {
+                for (int i = 0; i < chunks.size(); i++) {
+                    FileChunk chunk = chunks.get(i);
+                    long lineOffset = 0;
+                    if (lineOffsets != null) {
+                        lineOffset = lineOffsets[i];
+                        if (lineOffsets[i + 1] <= leadingLines || lineOffset >= lastRecord) {
+                            continue;
+                        }
+                    }
+
+                    long chunkLineOffset = lineOffset;
+                    ForkJoinTask<JavaResult> task = ForkJoinTask.adapt(() -> {
+                        JavaResult javaResult = new JavaResult();
+                        smooks.filterSource(createExecutionContext(chunkLineOffset), new StreamSource(chunk.openStream(channel)), javaResult);
+                        return javaResult;
+                    });
+                    tasks.add(task);
+                    if (tasks.size() == 1 && !filtered) {
+                        filterFirst(task::invoke);
+                    } else {
+                        pool.execute(task);
+                    }
+                }
+
+                for (int i = 0; i < tasks.size(); i++) {
+                    JavaResult javaResult = tasks.get(i).get();
+                    tasks.set(i, null);
+                    consumer.accept(javaResult);
+                }
+            } finally {
+                // The pool is shared, only the chunks of this file are cancelled...
+                for (ForkJoinTask<JavaResult> task : tasks) {
+                    if (task != null) {
+                        task.cancel(true);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new SmooksException("Failed to read Fixed Length file '" + file + "'.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmooksException("Interrupted while filtering Fixed Length file '" + file + "'.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SmooksException("Failed to filter Fixed Length file '" + file + "'.", e.getCause());
+        }
+    }
+
+    /**
+     * Smooks lazily completes its content delivery configuration on the first filter, which isn't thread safe, so the
+     * first filter is run on its own, and the first chunk of a parallel filter before the other chunks are forked.
+     */
+    private synchronized void filterFirst(Runnable filter) {
+        filter.run();
+        filtered = true;
+    }
+
+    /**
+     * Count the lines of the chunks concurrently.
+     *
+     * @return The number of lines before every chunk, and the total number of lines as the last element.
+     */
+    private long[] countLines(ForkJoinPool pool, FileChannel channel, List<FileChunk> chunks) throws InterruptedException, ExecutionException {
+        byte lf = "\n".getBytes(encoding)[0];
+        byte cr = "\r".getBytes(encoding)[0];
+        List<ForkJoinTask<Long>> counts = new ArrayList<>(chunks.size());
+        for (FileChunk chunk : chunks) {
+            counts.add(pool.submit(() -> LineSkipper.count(channel, chunk.getPosition(), chunk.getPosition() + chunk.getLength(), lf, cr)));
+        }
+
+        long[] lineOffsets = new long[chunks.size() + 1];
+        for (int i = 0; i < counts.size(); i++) {
+            lineOffsets[i + 1] = lineOffsets[i] + counts.get(i).get();
+        }
+        return lineOffsets;
+    }
+
+    private ExecutionContext createExecutionContext(long lineOffset) {
+        // Smooks decodes the stream in the content encoding of the execution context...
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.setContentEncoding(encoding.name());
+        if (lineOffset > 0) {
+            executionContext.put(FixedLengthReader.LINE_OFFSET, lineOffset);
+        }
+        return executionContext;
+    }
+}
@@ -0,0 +1,247 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parallel, line based record reader for files.
+ * <p/>
+ * Splits the file into record aligned {@link FileChunk chunks} and decodes and frames the chunks on a
+ * {@link ForkJoinPool}.  The records are handed out in file order, so the consumer (and its line numbering)
+ * stays sequential.  At most two chunks per thread are in flight, which bounds the memory used.
+ * <p/>
+ * The pools are shared, see {@link #getPool(int)}, so parsing a file doesn't start and stop threads.
+ */
+class ParallelRecordReader extends RecordReader {
+
+    static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final FileChannel channel;
+    private final Charset encoding;
+    private final ForkJoinPool pool;
+    private final Iterator<FileChunk> chunks;
+    private final Deque<ForkJoinTask<ChunkRecords>> inFlight = new ArrayDeque<>();
+    private final int maxInFlight;
+    private ChunkRecords current;
+
+    ParallelRecordReader(FileChannel channel, Charset encoding, int parallelism) throws IOException {
+        this(channel, encoding, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    ParallelRecordReader(FileChannel channel, Charset encoding, int parallelism, long chunkSize) throws IOException {
+        List<FileChunk> chunkList = FileChunk.split(channel, encoding, chunkSize);
+
+        this.channel = channel;
+        this.encoding = encoding;
+        this.pool = getPool(parallelism);
+        this.chunks = chunkList.iterator();
+        this.maxInFlight = parallelism * 2;
+        submitChunks();
+    }
+
+    @Override
+    boolean nextRecord() throws IOException {
+        while (current == null || !current.nextRecord()) {
+            ForkJoinTask<ChunkRecords> task = inFlight.poll();
+            if (task == null) {
+                current = null;
+                return false;
+            }
+            try {
+                current = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for Fixed Length chunk.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SmooksException("Unexpected error reading Fixed Length chunk.", cause);
+            }
+            submitChunks();
+        }
+        return true;
+    }
+
+    @Override
+    char[] getBuffer() {
+        return current.chars;
+    }
+
+    @Override
+    int getRecordOffset() {
+        return current.recordOffsets[current.record];
+    }
+
+    @Override
+    int getRecordLength() {
+        return current.recordLengths[current.record];
+    }
+
+    @Override
+    void close() {
+        // The pool is shared, only the chunks of this reader are cancelled...
+        for (ForkJoinTask<ChunkRecords> task : inFlight) {
+            task.cancel(true);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * Get the pool for the supplied parallelism.  The pools are shared by all the readers (and binders) of the same
+     * parallelism.  The common pool is used when its parallelism matches.  The pool threads are daemon threads which
+     * are released when they're idle.
+     *
+     * @param parallelism The number of threads.
+     * @return The pool.
+     */
+    static ForkJoinPool getPool(int parallelism) {
+        if (parallelism == ForkJoinPool.getCommonPoolParallelism()) {
+            return ForkJoinPool.commonPool();
+        }
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    private void submitChunks() {
+        while (inFlight.size() < maxInFlight && chunks.hasNext()) {
+            FileChunk chunk = chunks.next();
+            inFlight.add(pool.submit(() -> new ChunkRecords(chunk)));
+        }
+    }
+
+    /**
+     * The decoded records of a chunk.
+     */
+    private class ChunkRecords {
+
+        private final char[] chars;
+        private int[] recordOffsets = new int[64];
+        private int[] recordLengths = new int[64];
+        private int recordCount;
+        private int record = -1;
+
+        private ChunkRecords(FileChunk chunk) {
+            CharBuffer charBuffer;
+            try {
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk.getPosition(), chunk.getLength());
+                charBuffer = encoding.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .decode(bytes);
+            } catch (CharacterCodingException e) {
+                throw new SmooksException("Unexpected error decoding Fixed Length chunk " + chunk + ".", e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            chars = charBuffer.array();
+            frame(charBuffer.arrayOffset(), charBuffer.arrayOffset() + charBuffer.limit());
+        }
+
+        private void frame(int start, int limit) {
+            int recordStart = start;
+            boolean skipLF = false;
+
+            int i = start;
+            while (i < limit) {
+                if (skipLF) {
+                    skipLF = false;
+                    if (chars[i] == '\n') {
+                        recordStart = ++i;
+                        continue;
+                    }
+                }
+                int terminator = BulkScanner.indexOfLineTerminator(chars, i, limit);
+                if (terminator == -1) {
+                    break;
+                }
+                addRecord(recordStart, terminator - recordStart);
+                recordStart = i = terminator + 1;
+                skipLF = (chars[terminator] == '\r');
+            }
+            if (recordStart < limit) {
+                addRecord(recordStart, limit - recordStart);
+            }
+        }
+
+        private void addRecord(int offset, int length) {
+            if (recordCount == recordOffsets.length) {
+                recordOffsets = Arrays.copyOf(recordOffsets, recordCount * 2);
+                recordLengths = Arrays.copyOf(recordLengths, recordCount * 2);
+            }
+            recordOffsets[recordCount] = offset;
+            recordLengths[recordCount] = length;
+            recordCount++;
+        }
+
+        private boolean nextRecord() {
+            return ++record < recordCount;
+        }
+    }
+}
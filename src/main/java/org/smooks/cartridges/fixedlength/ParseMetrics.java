@@ -0,0 +1,192 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Mutable metrics of a single Fixed Length execution.
+ * <p/>
+ * Only created when a {@link FixedLengthMetricsListener} is configured.  Not thread safe, owned by the parsing thread.
+ */
+final class ParseMetrics {
+
+    private final long startNanos = System.nanoTime();
+
+    long records;
+    long skippedRecords;
+    long truncatedRecords;
+    long characters;
+    long functionNanos;
+    long contentHandlerNanos;
+    long bindingNanos;
+
+    FixedLengthMetrics toMetrics(boolean failed) {
+        return new FixedLengthMetrics(records, skippedRecords, truncatedRecords, characters, System.nanoTime() - startNanos,
+                functionNanos, contentHandlerNanos, bindingNanos, failed);
+    }
+
+    ContentHandler timed(ContentHandler contentHandler) {
+        return new TimingContentHandler(contentHandler);
+    }
+
+    /**
+     * Adds the time spent in the decorated {@link ContentHandler} to the content handler time.
+     */
+    private final class TimingContentHandler implements ContentHandler {
+
+        private final ContentHandler contentHandler;
+
+        private TimingContentHandler(ContentHandler contentHandler) {
+            this.contentHandler = contentHandler;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            contentHandler.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.startDocument();
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.endDocument();
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.startPrefixMapping(prefix, uri);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.endPrefixMapping(prefix);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.startElement(uri, localName, qName, atts);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.endElement(uri, localName, qName);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            long startNanos = System.nanoTime();
+            try {
+                contentHandler.characters(ch, start, length);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - startNanos;
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            long startNanos = System.nanoTime();
+            try {
+                contentHandler.ignorableWhitespace(ch, start, length);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - startNanos;
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.processingInstruction(target, data);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            long start = System.nanoTime();
+            try {
+                contentHandler.skippedEntity(name);
+            } finally {
+                contentHandlerNanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,536 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.SmooksException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipelined record reader.
+ * <p/>
+ * Overlaps the I/O and decoding of the stream with the consumer of the records.  A reader thread reads the stream in
+ * large blocks, a framing thread decodes the blocks and frames them into batches of records and the consumer (the
+ * parse thread) slices, emits or binds the records.  The stages are connected by bounded rings of reusable blocks
+ * and batches: a stage blocks when the next stage falls behind, so the memory used is bounded, and no buffer is
+ * allocated once the buffers have grown to the size of the blocks.
+ * <p/>
+ * The batches are handed over in stream order, so the records (and their numbering) are the same as those of
+ * {@link LineRecordReader} or {@link FixedRecordReader}.  A failure of the reader or framing thread is thrown by
+ * {@link #nextRecord()} after the records preceding it.
+ * <p/>
+ * The stages run on a shared pool of daemon threads, so a parse doesn't start threads of its own once the pool has
+ * warmed up.  When the reader is closed before the end of the stream, the stream is closed (unblocking a stage that
+ * waits on it) and the stages are interrupted and waited for, so they don't outlive the parse.
+ */
+class PipelinedRecordReader extends RecordReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedRecordReader.class);
+
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private static final AtomicInteger STAGE_THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService STAGES = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fixed-length-pipeline-" + STAGE_THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BlockingQueue<Block> freeBlocks;
+    private final BlockingQueue<Block> fullBlocks;
+    private final BlockingQueue<RecordBatch> freeBatches;
+    private final BlockingQueue<RecordBatch> fullBatches;
+    private final Closeable stream;
+    private final CountDownLatch stagesStopped = new CountDownLatch(2);
+    private final Stage readerStage;
+    private final Stage framingStage;
+    private volatile boolean endOfStream;
+    private RecordBatch current;
+
+    /**
+     * @param byteStream   The byte stream, decoded with <code>encoding</code> on the framing thread.  Only used when
+     *                     there's no <code>charStream</code>.
+     * @param charStream   The character stream, or <code>null</code> to read the <code>byteStream</code>.
+     * @param encoding     The encoding of the <code>byteStream</code>.
+     * @param framing      {@link FixedLengthRecordFraming#LINE} or {@link FixedLengthRecordFraming#FIXED}.
+     * @param recordLength The length of the records in characters, when {@link FixedLengthRecordFraming#FIXED}.
+     * @param depth        The number of blocks and batches in each ring.
+     */
+    PipelinedRecordReader(InputStream byteStream, Reader charStream, Charset encoding, FixedLengthRecordFraming framing, int recordLength, int depth) {
+        this(byteStream, charStream, encoding, framing, recordLength, depth, DEFAULT_BLOCK_SIZE);
+    }
+
+    PipelinedRecordReader(InputStream byteStream, Reader charStream, Charset encoding, FixedLengthRecordFraming framing, int recordLength, int depth, int blockSize) {
+        if (framing == FixedLengthRecordFraming.LENGTH_PREFIXED) {
+            throw new IllegalArgumentException("Unsupported framing '" + framing + "'.");
+        }
+        if (framing == FixedLengthRecordFraming.FIXED && recordLength < 1) {
+            throw new IllegalArgumentException("'recordLength' must be greater than zero.");
+        }
+        if (depth < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("'depth' and 'blockSize' must be greater than zero.");
+        }
+        if (byteStream == null && charStream == null) {
+            throw new IllegalArgumentException("A byte or character stream is required.");
+        }
+
+        freeBlocks = new ArrayBlockingQueue<>(depth);
+        fullBlocks = new ArrayBlockingQueue<>(depth);
+        freeBatches = new ArrayBlockingQueue<>(depth);
+        fullBatches = new ArrayBlockingQueue<>(depth);
+        for (int i = 0; i < depth; i++) {
+            freeBlocks.add(charStream != null ? new Block(new char[blockSize]) : new Block(new byte[blockSize]));
+            freeBatches.add(new RecordBatch(blockSize));
+        }
+
+        CharsetDecoder decoder = null;
+        if (charStream == null) {
+            // Same as an InputStreamReader...
+            decoder = encoding.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        stream = (charStream != null ? charStream : byteStream);
+        readerStage = new Stage(() -> read(byteStream, charStream));
+        framingStage = new Stage(new Framer(decoder, framing, recordLength, blockSize));
+        STAGES.execute(readerStage);
+        STAGES.execute(framingStage);
+    }
+
+    @Override
+    boolean nextRecord() throws IOException {
+        while (current == null || ++current.record >= current.count) {
+            if (current != null) {
+                if (current.last) {
+                    return false;
+                }
+                freeBatches.add(current);
+            }
+            try {
+                current = fullBatches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for Fixed Length records.");
+            }
+            current.record = -1;
+            if (current.failure != null) {
+                rethrow(current.failure);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    char[] getBuffer() {
+        return current.chars;
+    }
+
+    @Override
+    int getRecordOffset() {
+        return current.recordOffsets[current.record];
+    }
+
+    @Override
+    int getRecordLength() {
+        return current.recordLengths[current.record];
+    }
+
+    /**
+     * Stop the stages.  When the reader stage hasn't reached the end of the stream, the stream is closed, as it can't
+     * be read any further (and the reader stage may be blocked on it).
+     */
+    @Override
+    void close() {
+        if (!endOfStream) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close the Fixed Length stream.", e);
+            }
+        }
+        readerStage.stop();
+        framingStage.stop();
+
+        try {
+            if (!stagesStopped.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("The Fixed Length pipeline didn't stop within {} ms of being closed.", CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new SmooksException("Unexpected error reading Fixed Length stream.", failure);
+    }
+
+    /**
+     * The reader stage: fills the free blocks from the stream.
+     */
+    private void read(InputStream byteStream, Reader charStream) {
+        Block block = null;
+        try {
+            do {
+                block = freeBlocks.take();
+                if (charStream != null) {
+                    block.fill(charStream);
+                } else {
+                    block.fill(byteStream);
+                }
+                // Before the block is handed over, so it's seen by a close after the last record...
+                endOfStream = block.last;
+                fullBlocks.put(block);
+            } while (!block.last);
+        } catch (InterruptedException e) {
+            // Closed...
+        } catch (Throwable t) {
+            // Hand the failure to the next stage in place of the block, so the consumer doesn't wait forever...
+            block.failure = t;
+            block.last = true;
+            try {
+                fullBlocks.put(block);
+            } catch (InterruptedException e) {
+                // Closed...
+            }
+        }
+    }
+
+    /**
+     * A stage of the pipeline, run on a pooled thread.  Stopping the stage interrupts its thread, or keeps it from
+     * running when it hasn't started yet.
+     */
+    private class Stage implements Runnable {
+
+        private final Runnable task;
+        private Thread thread;
+        private boolean done;
+
+        private Stage(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    thread = Thread.currentThread();
+                }
+                try {
+                    task.run();
+                } finally {
+                    synchronized (this) {
+                        thread = null;
+                        done = true;
+                        // Don't pass a stop interrupt on to the next task of the pooled thread...
+                        Thread.interrupted();
+                    }
+                }
+            } finally {
+                stagesStopped.countDown();
+            }
+        }
+
+        private synchronized void stop() {
+            done = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * A block of the stream.
+     */
+    private static class Block {
+
+        private final byte[] bytes;
+        private final char[] chars;
+        private int length;
+        private boolean last;
+        private Throwable failure;
+
+        private Block(byte[] bytes) {
+            this.bytes = bytes;
+            this.chars = null;
+        }
+
+        private Block(char[] chars) {
+            this.bytes = null;
+            this.chars = chars;
+        }
+
+        private void fill(InputStream byteStream) throws IOException {
+            int read = 0;
+            length = 0;
+            while (length < bytes.length && (read = byteStream.read(bytes, length, bytes.length - length)) != -1) {
+                length += read;
+            }
+            last = (read == -1);
+        }
+
+        private void fill(Reader charStream) throws IOException {
+            int read = 0;
+            length = 0;
+            while (length < chars.length && (read = charStream.read(chars, length, chars.length - length)) != -1) {
+                length += read;
+            }
+            last = (read == -1);
+        }
+    }
+
+    /**
+     * The framing stage: decodes the blocks into the free batches and frames the records of the batches.  A record
+     * that spans blocks is carried over to the next batch.
+     */
+    private class Framer implements Runnable {
+
+        private final CharsetDecoder decoder;
+        private final FixedLengthRecordFraming framing;
+        private final int recordLength;
+        private ByteBuffer input;
+        private char[] carry = new char[256];
+        private int carryLength;
+        private boolean skipLF;
+
+        private Framer(CharsetDecoder decoder, FixedLengthRecordFraming framing, int recordLength, int blockSize) {
+            this.decoder = decoder;
+            this.framing = framing;
+            this.recordLength = recordLength;
+            this.input = (decoder != null ? ByteBuffer.allocate(blockSize + 16) : null);
+        }
+
+        @Override
+        public void run() {
+            RecordBatch batch = null;
+            try {
+                do {
+                    Block block = fullBlocks.take();
+                    batch = freeBatches.take();
+                    batch.clear();
+                    if (block.failure != null) {
+                        batch.failure = block.failure;
+                    } else {
+                        System.arraycopy(carry, 0, batch.ensureCapacity(carryLength + block.length + 2), 0, carryLength);
+                        int limit = (decoder != null ? decode(block, batch, carryLength) : copy(block, batch, carryLength));
+                        frame(batch, carryLength, limit, block.last);
+                    }
+                    batch.last = block.last;
+                    freeBlocks.put(block);
+
+                    // Batches without a complete record stay with this stage...
+                    if (batch.count > 0 || batch.last) {
+                        fullBatches.put(batch);
+                    } else {
+                        freeBatches.put(batch);
+                    }
+                } while (!batch.last);
+            } catch (InterruptedException e) {
+                // Closed...
+            } catch (Throwable t) {
+                batch.clear();
+                batch.failure = t;
+                batch.last = true;
+                try {
+                    fullBatches.put(batch);
+                } catch (InterruptedException e) {
+                    // Closed...
+                }
+            }
+        }
+
+        private int copy(Block block, RecordBatch batch, int offset) {
+            System.arraycopy(block.chars, 0, batch.chars, offset, block.length);
+            return offset + block.length;
+        }
+
+        private int decode(Block block, RecordBatch batch, int offset) throws CharacterCodingException {
+            if (input.remaining() < block.length) {
+                input.flip();
+                input = ByteBuffer.allocate(input.remaining() + block.length).put(input);
+            }
+            input.put(block.bytes, 0, block.length).flip();
+
+            CharBuffer output = CharBuffer.wrap(batch.chars, offset, batch.chars.length - offset);
+            CoderResult result;
+            while ((result = decoder.decode(input, output, block.last)).isOverflow()) {
+                output = batch.grow(output);
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (block.last) {
+                while (decoder.flush(output).isOverflow()) {
+                    output = batch.grow(output);
+                }
+            }
+            // Keep the bytes of a character that continues in the next block...
+            input.compact();
+
+            return output.position();
+        }
+
+        private void frame(RecordBatch batch, int scan, int limit, boolean last) {
+            char[] chars = batch.chars;
+            int recordStart = 0;
+
+            if (framing == FixedLengthRecordFraming.FIXED) {
+                while (limit - recordStart >= recordLength) {
+                    batch.addRecord(recordStart, recordLength);
+                    recordStart += recordLength;
+                }
+            } else {
+                int i = scan;
+                while (i < limit) {
+                    if (skipLF) {
+                        skipLF = false;
+                        if (chars[i] == '\n') {
+                            recordStart = ++i;
+                            continue;
+                        }
+                    }
+                    int terminator = BulkScanner.indexOfLineTerminator(chars, i, limit);
+                    if (terminator == -1) {
+                        break;
+                    }
+                    batch.addRecord(recordStart, terminator - recordStart);
+                    recordStart = i = terminator + 1;
+                    skipLF = (chars[terminator] == '\r');
+                }
+            }
+
+            if (last) {
+                if (recordStart < limit) {
+                    batch.addRecord(recordStart, limit - recordStart);
+                }
+                carryLength = 0;
+            } else {
+                carryLength = limit - recordStart;
+                if (carryLength > carry.length) {
+                    carry = new char[Math.max(carryLength, carry.length * 2)];
+                }
+                System.arraycopy(chars, recordStart, carry, 0, carryLength);
+            }
+        }
+    }
+
+    /**
+     * The decoded records of one or more blocks.
+     */
+    private static class RecordBatch {
+
+        private char[] chars;
+        private int[] recordOffsets = new int[64];
+        private int[] recordLengths = new int[64];
+        private int count;
+        private int record;
+        private boolean last;
+        private Throwable failure;
+
+        private RecordBatch(int capacity) {
+            chars = new char[capacity];
+        }
+
+        private void clear() {
+            count = 0;
+            record = -1;
+            last = false;
+            failure = null;
+        }
+
+        private char[] ensureCapacity(int capacity) {
+            if (capacity > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+            }
+            return chars;
+        }
+
+        private CharBuffer grow(CharBuffer output) {
+            int position = output.position();
+            chars = Arrays.copyOf(chars, chars.length * 2);
+            return CharBuffer.wrap(chars, position, chars.length - position);
+        }
+
+        private void addRecord(int offset, int length) {
+            if (count == recordOffsets.length) {
+                recordOffsets = Arrays.copyOf(recordOffsets, count * 2);
+                recordLengths = Arrays.copyOf(recordLengths, count * 2);
+            }
+            recordOffsets[count] = offset;
+            recordLengths[count] = length;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,482 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.Registry;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.converter.TypeConverter;
+import org.smooks.api.converter.TypeConverterFactory;
+import org.smooks.engine.lookup.converter.SourceTargetTypeConverterFactoryLookup;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Binds Fixed Length records straight from the {@link RecordReader} buffer onto instances of a bean class,
+ * without generating SAX events and without going through the {@link org.smooks.cartridges.javabean.Bean}
+ * visitors.
+ * <p/>
+ * The record fields are bound onto the bean properties with the same name, in the same way as the
+ * {@link org.smooks.cartridges.javabean.Bean} field bindings set up by the {@link FixedLengthReader}.  When the bean
+ * class is a {@link Map}, the field values are put into the map under the field names.
+ * <p/>
+ * The constructor, setter and getter handles of a bean class are generated once (through the
+ * {@link LambdaMetafactory} where possible) and cached for the lifetime of the class.  A binder instance holds
+ * no per-record state, so it can be shared between threads.
+ */
+class RecordBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordBinder.class);
+
+    // MethodHandles.privateLookupIn(Class, Lookup), on Java 9+...
+    private static final Method PRIVATE_LOOKUP_IN;
+
+    static {
+        Method privateLookupIn = null;
+        try {
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (NoSuchMethodException e) {
+            LOGGER.debug("No private lookups.  Bean classes the cartridge can't see are bound through method handles.");
+        }
+        PRIVATE_LOOKUP_IN = privateLookupIn;
+    }
+
+    private static final ClassValue<BeanType> BEAN_TYPES = new ClassValue<BeanType>() {
+        @Override
+        protected BeanType computeValue(Class<?> type) {
+            return new BeanType(type);
+        }
+    };
+
+    private final Class<?> beanClass;
+    private final Field[] fields;
+    private final boolean mapBean;
+    private final Supplier<Object> constructor;
+    private final PropertyBinding[] propertyBindings;
+
+    RecordBinder(Class<?> beanClass, Field[] fields, Registry registry) {
+        this.beanClass = beanClass;
+        this.fields = fields;
+        this.mapBean = Map.class.isAssignableFrom(beanClass);
+
+        BeanType beanType = BEAN_TYPES.get(beanClass);
+        this.constructor = beanType.getConstructor();
+        this.propertyBindings = new PropertyBinding[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            if (!fields[i].ignore() && !mapBean) {
+                Class<?> valueType = (fields[i].getFieldType() != null ? fields[i].getFieldType().getValueType() : String.class);
+                propertyBindings[i] = new PropertyBinding(beanType.getSetter(fields[i].getName()), valueType, registry);
+            }
+        }
+    }
+
+    /**
+     * Bind the current record of the record reader onto a new bean instance.
+     * <p/>
+     * Fields that are truncated (the record is shorter than the field layout) are not bound.
+     *
+     * @param recordReader The record reader, positioned on the record.
+     * @return The bean instance.
+     */
+    @SuppressWarnings("unchecked")
+    Object bind(RecordReader recordReader) {
+        Object bean = constructor.get();
+        int recordLength = recordReader.getRecordLength();
+        int fieldOffset = 0;
+
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            int fieldLength = field.getLength();
+
+            if (!field.ignore() && fieldOffset + fieldLength <= recordLength) {
+                recordReader.decode(fieldOffset, fieldLength);
+
+                FieldType fieldType = field.getFieldType();
+                FieldFunction fieldFunction = field.getFieldFunction();
+                Object value;
+                if (fieldType != null) {
+                    value = fieldType.decode(recordReader.getBuffer(), recordReader.getRecordOffset() + fieldOffset, fieldLength);
+                } else if (fieldFunction != null) {
+                    value = fieldFunction.apply(recordReader.getBuffer(), recordReader.getRecordOffset() + fieldOffset, fieldLength);
+                } else {
+                    value = new String(recordReader.getBuffer(), recordReader.getRecordOffset() + fieldOffset, fieldLength);
+                }
+
+                if (mapBean) {
+                    ((Map<String, Object>) bean).put(field.getName(), value);
+                } else {
+                    propertyBindings[i].set(bean, value);
+                }
+            }
+
+            fieldOffset += fieldLength;
+        }
+
+        return bean;
+    }
+
+    /**
+     * Create a key extractor for the supplied field.
+     *
+     * @param keyField The key field name.
+     * @return A function returning the (bound) value of the key field of a bean created by this binder.
+     */
+    Function<Object, Object> createKeyExtractor(String keyField) {
+        return createKeyExtractor(beanClass, keyField);
+    }
+
+    /**
+     * Create a key extractor for the supplied field of the supplied bean class.
+     *
+     * @param beanClass The bean class, or a {@link Map} class.
+     * @param keyField  The key field name.
+     * @return A function returning the value of the key field of a bean.
+     */
+    static Function<Object, Object> createKeyExtractor(Class<?> beanClass, String keyField) {
+        return createPropertyGetter(beanClass, keyField);
+    }
+
+    /**
+     * Create a getter for the supplied property of the supplied bean class.
+     *
+     * @param beanClass The bean class, or a {@link Map} class.
+     * @param property  The property name.
+     * @return A function returning the value of the property of a bean.
+     */
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> createPropertyGetter(Class<?> beanClass, String property) {
+        if (Map.class.isAssignableFrom(beanClass)) {
+            return bean -> ((Map<String, Object>) bean).get(property);
+        }
+        return BEAN_TYPES.get(beanClass).getGetter(property);
+    }
+
+    private static class PropertyBinding {
+
+        private final BiConsumer<Object, Object> setter;
+        private final TypeConverter<Object, ?> typeConverter;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private PropertyBinding(Setter setter, Class<?> valueType, Registry registry) {
+            this.setter = setter.consumer;
+
+            Class<?> propertyType = wrap(setter.propertyType);
+            if (propertyType.isAssignableFrom(valueType)) {
+                typeConverter = null;
+            } else if (valueType == String.class && propertyType.isEnum()) {
+                typeConverter = value -> Enum.valueOf((Class) propertyType, (String) value);
+            } else if (propertyType == String.class) {
+                typeConverter = Object::toString;
+            } else if (Number.class.isAssignableFrom(valueType) && isConvertibleNumberType(propertyType)) {
+                typeConverter = value -> convertNumber((Number) value, propertyType);
+            } else {
+                TypeConverterFactory typeConverterFactory = registry.lookup(new SourceTargetTypeConverterFactoryLookup<>(valueType, propertyType));
+                if (typeConverterFactory != null) {
+                    typeConverter = typeConverterFactory.createTypeConverter();
+                } else {
+                    // Fall back on converting the text of typed values...
+                    TypeConverterFactory<? super String, ?> stringTypeConverterFactory = registry.lookup(new SourceTargetTypeConverterFactoryLookup<>(String.class, propertyType));
+                    if (stringTypeConverterFactory == null) {
+                        throw new SmooksConfigException("No type converter found for converting Fixed Length field values to '" + propertyType.getName() + "'.");
+                    }
+                    TypeConverter<? super String, ?> stringTypeConverter = stringTypeConverterFactory.createTypeConverter();
+                    typeConverter = value -> stringTypeConverter.convert(value.toString());
+                }
+            }
+        }
+
+        private void set(Object bean, Object value) {
+            // Blank typed fields are not bound...
+            if (value != null) {
+                setter.accept(bean, (typeConverter != null ? typeConverter.convert(value) : value));
+            }
+        }
+    }
+
+    private static boolean isConvertibleNumberType(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Double.class || type == Float.class
+                || type == BigDecimal.class || type == BigInteger.class;
+    }
+
+    private static Object convertNumber(Number value, Class<?> type) {
+        if (type == Integer.class) {
+            return (value instanceof BigDecimal ? ((BigDecimal) value).intValueExact() : Math.toIntExact(value.longValue()));
+        } else if (type == Long.class) {
+            return (value instanceof BigDecimal ? ((BigDecimal) value).longValueExact() : value.longValue());
+        } else if (type == Double.class) {
+            return value.doubleValue();
+        } else if (type == Float.class) {
+            return value.floatValue();
+        } else if (type == BigDecimal.class) {
+            return (value instanceof BigDecimal ? value : BigDecimal.valueOf(value.longValue()));
+        } else {
+            return (value instanceof BigDecimal ? ((BigDecimal) value).toBigIntegerExact() : BigInteger.valueOf(value.longValue()));
+        }
+    }
+
+    private static class Setter {
+
+        private final Class<?> propertyType;
+        private final BiConsumer<Object, Object> consumer;
+
+        private Setter(Class<?> propertyType, BiConsumer<Object, Object> consumer) {
+            this.propertyType = propertyType;
+            this.consumer = consumer;
+        }
+    }
+
+    /**
+     * The cached constructor, setter and getter handles of a bean class.
+     */
+    private static class BeanType {
+
+        private final Class<?> type;
+        private final ConcurrentMap<String, Setter> setters = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Function<Object, Object>> getters = new ConcurrentHashMap<>();
+        private volatile Supplier<Object> constructor;
+
+        private BeanType(Class<?> type) {
+            this.type = type;
+        }
+
+        private Supplier<Object> getConstructor() {
+            if (constructor == null) {
+                constructor = createConstructor(type);
+            }
+            return constructor;
+        }
+
+        private Setter getSetter(String property) {
+            return setters.computeIfAbsent(property, name -> createSetter(type, name));
+        }
+
+        private Function<Object, Object> getGetter(String property) {
+            return getters.computeIfAbsent(property, name -> createGetter(type, name));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> createConstructor(Class<?> type) {
+        MethodHandle handle;
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            if (!Modifier.isPublic(type.getModifiers()) || !Modifier.isPublic(constructor.getModifiers())) {
+                constructor.setAccessible(true);
+            }
+            handle = MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            throw new SmooksConfigException("Bean class '" + type.getName() + "' must have a no-argument constructor.", e);
+        }
+
+        MethodHandles.Lookup lookup = lambdaLookup(type, type);
+        if (lookup != null) {
+            try {
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), handle, MethodType.methodType(type));
+                return (Supplier<Object>) callSite.getTarget().invoke();
+            } catch (Throwable e) {
+                LOGGER.debug("Failed to create a constructor lambda for '{}'.  Falling back to a method handle.", type.getName(), e);
+            }
+        }
+
+        MethodHandle genericHandle = handle.asType(MethodType.methodType(Object.class));
+        return () -> {
+            try {
+                return genericHandle.invokeExact();
+            } catch (RuntimeException | Error t) {
+                throw t;
+            } catch (Throwable t) {
+                throw new SmooksException("Failed to create an instance of '" + type.getName() + "'.", t);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Setter createSetter(Class<?> type, String property) {
+        String setterName = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+
+        // Prefer a String setter if the setter is overloaded...
+        Method setterMethod = null;
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(setterName) && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+                if (setterMethod == null || method.getParameterTypes()[0] == String.class) {
+                    setterMethod = method;
+                }
+            }
+        }
+        if (setterMethod == null) {
+            throw new SmooksConfigException("Bean class '" + type.getName() + "' doesn't have a public setter method '" + setterName + "' for Fixed Length field '" + property + "'.");
+        }
+
+        Class<?> propertyType = setterMethod.getParameterTypes()[0];
+        MethodHandle handle = unreflect(setterMethod);
+        MethodHandles.Lookup lookup = lambdaLookup(type, setterMethod.getDeclaringClass(), wrap(propertyType));
+        if (lookup != null) {
+            try {
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class), handle,
+                        MethodType.methodType(void.class, setterMethod.getDeclaringClass(), wrap(propertyType)));
+                return new Setter(propertyType, (BiConsumer<Object, Object>) callSite.getTarget().invoke());
+            } catch (Throwable e) {
+                LOGGER.debug("Failed to create a setter lambda for '{}.{}'.  Falling back to a method handle.", type.getName(), setterName, e);
+            }
+        }
+
+        MethodHandle genericHandle = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return new Setter(propertyType, (bean, value) -> {
+            try {
+                genericHandle.invokeExact(bean, value);
+            } catch (RuntimeException | Error t) {
+                throw t;
+            } catch (Throwable t) {
+                throw new SmooksException("Failed to set property '" + property + "' on '" + type.getName() + "'.", t);
+            }
+        });
+    }
+
+    /**
+     * Get the lookup the lambdas binding a bean class are spun with.
+     * <p/>
+     * The lambda classes link against the bean classes.  When the cartridge's class loader can see them, the
+     * cartridge's lookup is used.  Otherwise (e.g. a bean class loaded by a child or application class loader) a
+     * private lookup in the bean class is used where the runtime supports it (Java 9+), so the lambda classes are
+     * defined in the bean's class loader.  Failing that, null is returned and the bean is bound through plain
+     * {@link MethodHandle method handles}, which don't link against the bean classes.
+     *
+     * @param type        The bean class.
+     * @param linkedTypes The classes the lambda links against.
+     * @return The lookup, or null if the lambdas can't see the bean classes.
+     */
+    static MethodHandles.Lookup lambdaLookup(Class<?> type, Class<?>... linkedTypes) {
+        ClassLoader cartridgeClassLoader = RecordBinder.class.getClassLoader();
+        boolean visible = true;
+        for (Class<?> linkedType : linkedTypes) {
+            visible &= isVisible(linkedType, cartridgeClassLoader);
+        }
+        if (visible) {
+            return MethodHandles.lookup();
+        }
+
+        if (PRIVATE_LOOKUP_IN != null) {
+            try {
+                return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, type, MethodHandles.lookup());
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.debug("No private lookup in '{}'.", type.getName(), e);
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader classLoader) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, classLoader) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static Function<Object, Object> createGetter(Class<?> type, String property) {
+        String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+
+        Method getterMethod;
+        try {
+            getterMethod = type.getMethod("get" + capitalized);
+        } catch (NoSuchMethodException e) {
+            try {
+                getterMethod = type.getMethod("is" + capitalized);
+            } catch (NoSuchMethodException e2) {
+                throw new SmooksConfigException("Bean class '" + type.getName() + "' doesn't have a public getter method for Fixed Length field '" + property + "'.");
+            }
+        }
+
+        MethodHandle genericHandle = unreflect(getterMethod).asType(MethodType.methodType(Object.class, Object.class));
+        return bean -> {
+            try {
+                return genericHandle.invokeExact(bean);
+            } catch (RuntimeException | Error t) {
+                throw t;
+            } catch (Throwable t) {
+                throw new SmooksException("Failed to get property '" + property + "' from '" + type.getName() + "'.", t);
+            }
+        };
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                method.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new SmooksConfigException("Method '" + method + "' is not accessible.", e);
+        }
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        return MethodType.methodType(type).wrap().returnType();
+    }
+}
@@ -0,0 +1,202 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksConfigException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed Fixed Length record layout.
+ * <p/>
+ * Holds the {@link Field} definitions parsed from the <code>fields</code> configuration, e.g.
+ * "firstname[10]?trim,lastname[10],$ignore$[2],amount[12]:decimal(2)", together with the total record length.
+ * <p/>
+ * Layouts are immutable and shared through the {@link RecordLayoutCache}, together with their compiled layouts.
+ */
+final class RecordLayout {
+
+    private static final char FUNCTION_SEPARATOR = '?';
+    private static final char TYPE_SEPARATOR = ':';
+
+    private final Field[] fields;
+    private final int totalFieldLength;
+    private final Map<String, CompiledRecordLayout> compiledLayouts = new ConcurrentHashMap<>();
+
+    private RecordLayout(Field[] fields, int totalFieldLength) {
+        this.fields = fields;
+        this.totalFieldLength = totalFieldLength;
+    }
+
+    /**
+     * Parse the field definitions.
+     *
+     * @param flFields The field definitions, one per field.
+     * @return The record layout.
+     */
+    static RecordLayout parse(String[] flFields) {
+        return parse(flFields, 0);
+    }
+
+    /**
+     * Parse the field definitions.
+     *
+     * @param flFields          The field definitions, one per field.
+     * @param functionCacheSize The maximum number of cached function results per field.  Zero disables caching.
+     * @return The record layout.
+     */
+    static RecordLayout parse(String[] flFields, int functionCacheSize) {
+        // Parse input fields to extract names and lengths
+        Field[] fields = new Field[flFields.length];
+        int totalFieldLength = 0;
+        for (int i = 0; i < flFields.length; i++) {
+            // Extract informations about the field
+            String fieldInfos = flFields[i].trim();
+            // Extract name of the field (before bracket)
+            String fieldName = fieldInfos.substring(0, fieldInfos.lastIndexOf('['));
+            // Extract length of the field (between brackets)
+            int fieldLength = Integer.parseInt(fieldInfos.substring(fieldInfos.lastIndexOf('[') + 1, fieldInfos.lastIndexOf(']')));
+
+            String functionDefinition = fieldInfos.substring(fieldInfos.lastIndexOf(']') + 1);
+
+            // Extract the type of the field (after colon).  Typed fields are decoded, not manipulated by functions...
+            FieldType fieldType = null;
+            if (functionDefinition.length() != 0 && functionDefinition.charAt(0) == TYPE_SEPARATOR) {
+                if (functionDefinition.indexOf(FUNCTION_SEPARATOR) != -1) {
+                    throw new SmooksConfigException("Invalid field definition '" + fieldInfos + "'.  String functions can't be combined with a field type.");
+                }
+                fieldType = FieldType.parse(functionDefinition.substring(1));
+                functionDefinition = "";
+            }
+
+            if (functionDefinition.length() != 0 && functionDefinition.charAt(0) == FUNCTION_SEPARATOR) {
+                functionDefinition = functionDefinition.substring(1);
+            }
+
+            FieldFunction fieldFunction = null;
+            if (functionDefinition.length() != 0) {
+                fieldFunction = FieldFunction.compile(functionDefinition, functionCacheSize);
+            }
+
+            fields[i] = new Field(fieldName, fieldLength, fieldFunction, fieldType);
+
+            totalFieldLength += fieldLength;
+        }
+
+        return new RecordLayout(fields, totalFieldLength);
+    }
+
+    /**
+     * Parse the comma separated field definitions.
+     *
+     * @param fields The comma separated field definitions.
+     * @return The record layout.
+     */
+    static RecordLayout parse(String fields) {
+        return parse(fields, 0);
+    }
+
+    /**
+     * Parse the comma separated field definitions.
+     *
+     * @param fields            The comma separated field definitions.
+     * @param functionCacheSize The maximum number of cached function results per field.  Zero disables caching.
+     * @return The record layout.
+     */
+    static RecordLayout parse(String fields, int functionCacheSize) {
+        return parse(fields.split(","), functionCacheSize);
+    }
+
+    Field[] getFields() {
+        return fields;
+    }
+
+    int getTotalFieldLength() {
+        return totalFieldLength;
+    }
+
+    /**
+     * Get the compiled layout of the fields.  The compiled layouts are created once per indentation and truncated
+     * attribute name.
+     *
+     * @param indent                 Indent the field elements.
+     * @param truncatedAttributeName The name of the attribute marking a truncated field element.
+     * @return The compiled layout.
+     */
+    CompiledRecordLayout getCompiledLayout(boolean indent, String truncatedAttributeName) {
+        return compiledLayouts.computeIfAbsent(indent + ":" + truncatedAttributeName, key -> {
+            AttributesImpl truncatedAttributes = new AttributesImpl();
+            truncatedAttributes.addAttribute(XMLConstants.NULL_NS_URI, truncatedAttributeName, truncatedAttributeName, "xs:boolean", Boolean.TRUE.toString());
+            return CompiledRecordLayout.compile(fields, indent, truncatedAttributes);
+        });
+    }
+
+    /**
+     * Assert that the layout contains a field with the supplied name.
+     *
+     * @param fieldName The field name.
+     * @throws SmooksConfigException The layout doesn't contain the field.
+     */
+    void assertValidFieldName(String fieldName) {
+        for (Field field : fields) {
+            if (field.getName().equals(fieldName)) {
+                return;
+            }
+        }
+
+        String fieldNames = "";
+        for (Field field : fields) {
+            if (!field.ignore()) {
+                if (fieldNames.length() > 0) {
+                    fieldNames += ", ";
+                }
+                fieldNames += field.getName();
+            }
+        }
+
+        throw new SmooksConfigException("Invalid field name '" + fieldName + "'.  Valid names: [" + fieldNames + "].");
+    }
+}
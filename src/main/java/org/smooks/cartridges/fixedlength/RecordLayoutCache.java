@@ -0,0 +1,169 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Process wide cache of parsed Fixed Length record layouts and record type selectors.
+ * <p/>
+ * Readers, record parsers, writers and the programmatic binders are often created many times over from the same few
+ * field definitions.  Since the parsed layouts are immutable, they're parsed once and shared.  The layouts are keyed by
+ * their normalized definition and the options which affect the parsing.  The encoding doesn't, the layouts are defined
+ * in characters.  The compiled layouts (see {@link CompiledRecordLayout}) are in turn held by their {@link RecordLayout}.
+ * <p/>
+ * Layouts with function result caches (a function cache size greater than zero) aren't shared.  The result caches are
+ * synchronized, so sharing them would have unrelated readers contend on every cached field.  Those layouts are parsed
+ * per reader instead.
+ * <p/>
+ * The cache is a bounded LRU cache.  Its size is set by the <code>org.smooks.cartridges.fixedlength.layoutCacheSize</code>
+ * system property (default 256).  Zero disables caching.
+ */
+final class RecordLayoutCache {
+
+    static final int MAX_SIZE = Integer.getInteger("org.smooks.cartridges.fixedlength.layoutCacheSize", 256);
+
+    private static final Cache CACHE = new Cache(MAX_SIZE);
+
+    private RecordLayoutCache() {
+    }
+
+    /**
+     * Get the layout of the field definitions.
+     *
+     * @param flFields          The field definitions, one per field.
+     * @param functionCacheSize The maximum number of cached function results per field.  Zero disables caching.
+     * @return The record layout.
+     */
+    static RecordLayout getRecordLayout(String[] flFields, int functionCacheSize) {
+        if (functionCacheSize > 0) {
+            return RecordLayout.parse(flFields, functionCacheSize);
+        }
+        StringBuilder key = new StringBuilder("fields|");
+        for (int i = 0; i < flFields.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(flFields[i].trim());
+        }
+        return CACHE.get(key.toString(), () -> RecordLayout.parse(flFields, functionCacheSize));
+    }
+
+    /**
+     * Get the layout of the comma separated field definitions.
+     *
+     * @param fields            The comma separated field definitions.
+     * @param functionCacheSize The maximum number of cached function results per field.  Zero disables caching.
+     * @return The record layout.
+     */
+    static RecordLayout getRecordLayout(String fields, int functionCacheSize) {
+        return getRecordLayout(fields.split(","), functionCacheSize);
+    }
+
+    /**
+     * Get the selector of the record type definitions.
+     *
+     * @param recordTypes         The semicolon separated record type definitions.
+     * @param discriminatorOffset The offset of the discriminator in the record.
+     * @param discriminatorLength The length of the discriminator, or zero when the discriminator is a prefix.
+     * @param functionCacheSize   The maximum number of cached function results per field.  Zero disables caching.
+     * @return The selector.
+     */
+    static RecordTypeSelector getRecordTypeSelector(String recordTypes, int discriminatorOffset, int discriminatorLength, int functionCacheSize) {
+        if (functionCacheSize > 0) {
+            return RecordTypeSelector.parse(recordTypes, discriminatorOffset, discriminatorLength, functionCacheSize);
+        }
+        String key = "types|" + discriminatorOffset + '|' + discriminatorLength + '|' + recordTypes.trim();
+        return CACHE.get(key, () -> RecordTypeSelector.parse(recordTypes, discriminatorOffset, discriminatorLength, 0));
+    }
+
+    static int size() {
+        return CACHE.size();
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Bounded LRU cache of the parsed layouts and selectors.
+     */
+    private static final class Cache {
+
+        // Access ordered, so the first entry is the least recently used...
+        private final LinkedHashMap<String, Object> values = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxSize;
+
+        private Cache(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized <T> T get(String key, Supplier<T> parser) {
+            T value = (T) values.get(key);
+            if (value == null) {
+                // Invalid definitions throw and aren't cached...
+                value = parser.get();
+                if (maxSize > 0) {
+                    values.put(key, value);
+                    if (values.size() > maxSize) {
+                        Iterator<String> eldest = values.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                    }
+                }
+            }
+            return value;
+        }
+
+        private synchronized int size() {
+            return values.size();
+        }
+
+        private synchronized void clear() {
+            values.clear();
+        }
+    }
+}
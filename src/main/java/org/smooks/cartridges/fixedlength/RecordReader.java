@@ -0,0 +1,91 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import java.io.IOException;
+
+/**
+ * Fixed Length record reader.
+ * <p/>
+ * Frames the Fixed Length stream into records and exposes the current record as a slice of a reusable
+ * character buffer.  The slice returned by {@link #getBuffer()}, {@link #getRecordOffset()} and
+ * {@link #getRecordLength()} is only valid until the next call to {@link #nextRecord()}.
+ */
+abstract class RecordReader {
+
+    /**
+     * Advance to the next record.
+     *
+     * @return <code>true</code> if a record is available, <code>false</code> if the end of the stream is reached.
+     * @throws IOException Error reading the underlying stream.
+     */
+    abstract boolean nextRecord() throws IOException;
+
+    abstract char[] getBuffer();
+
+    abstract int getRecordOffset();
+
+    /**
+     * The length of the current record in characters.
+     */
+    abstract int getRecordLength();
+
+    /**
+     * Make sure the characters of the current record in the range [offset, offset + length) are available
+     * in {@link #getBuffer()}.
+     * <p/>
+     * Readers that decode lazily only decode the ranges asked for.  Readers that already hold decoded
+     * characters do nothing.
+     *
+     * @param offset The offset of the range, relative to the start of the record.
+     * @param length The length of the range.
+     */
+    void decode(int offset, int length) {
+    }
+
+    /**
+     * Release the resources held by the reader.  The underlying stream is not closed.
+     */
+    void close() {
+    }
+}
@@ -0,0 +1,225 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.smooks.api.SmooksConfigException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Selects the layout of a Fixed Length record by its discriminator.
+ * <p/>
+ * The record types are defined as a semicolon separated list of "discriminator:recordElementName:fields" entries, e.g.
+ * "H:header:type[1],date[8];T:trailer:type[1],count[6]:int".  When the discriminator length is set, the discriminator
+ * is the value at the discriminator offset, of that length.  Otherwise the discriminator is a prefix of the record
+ * (starting at the discriminator offset) and the longest matching discriminator wins.
+ * <p/>
+ * The discriminators are hashed into an open addressing table when the selector is created, so selecting the type of a
+ * record costs one hash and (usually) one comparison per distinct discriminator length, without allocating.
+ */
+final class RecordTypeSelector {
+
+    private static final char TYPE_SEPARATOR = ';';
+    private static final char PART_SEPARATOR = ':';
+
+    private final int offset;
+    // Distinct discriminator lengths, longest first...
+    private final int[] lengths;
+    private final char[][] keys;
+    private final RecordType[] types;
+    private final int mask;
+
+    private RecordTypeSelector(int offset, List<RecordType> recordTypes) {
+        TreeSet<Integer> distinctLengths = new TreeSet<>();
+        for (RecordType recordType : recordTypes) {
+            distinctLengths.add(recordType.getDiscriminator().length());
+        }
+
+        this.offset = offset;
+        this.lengths = distinctLengths.descendingSet().stream().mapToInt(Integer::intValue).toArray();
+
+        int capacity = Integer.highestOneBit(Math.max(recordTypes.size() * 2 - 1, 1)) << 1;
+        this.keys = new char[capacity][];
+        this.types = new RecordType[capacity];
+        this.mask = capacity - 1;
+
+        for (RecordType recordType : recordTypes) {
+            char[] key = recordType.getDiscriminator().toCharArray();
+            int i = hash(key, 0, key.length) & mask;
+            while (keys[i] != null) {
+                if (equals(keys[i], key, 0, key.length)) {
+                    throw new SmooksConfigException("Duplicate Fixed Length record type discriminator '" + recordType.getDiscriminator() + "'.");
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            types[i] = recordType;
+        }
+    }
+
+    /**
+     * Parse the record type definitions.
+     *
+     * @param recordTypes         The semicolon separated record type definitions.
+     * @param discriminatorOffset The offset of the discriminator in the record.
+     * @param discriminatorLength The length of the discriminator, or zero when the discriminator is a prefix.
+     * @param functionCacheSize   The maximum number of cached function results per field.  Zero disables caching.
+     * @return The selector.
+     */
+    static RecordTypeSelector parse(String recordTypes, int discriminatorOffset, int discriminatorLength, int functionCacheSize) {
+        if (discriminatorOffset < 0 || discriminatorLength < 0) {
+            throw new SmooksConfigException("Fixed Length record type discriminator offset and length must not be negative.");
+        }
+
+        List<RecordType> types = new ArrayList<>();
+        for (String definition : recordTypes.split(String.valueOf(TYPE_SEPARATOR))) {
+            definition = definition.trim();
+            if (definition.isEmpty()) {
+                continue;
+            }
+
+            int discriminatorEnd = definition.indexOf(PART_SEPARATOR);
+            int nameEnd = (discriminatorEnd != -1 ? definition.indexOf(PART_SEPARATOR, discriminatorEnd + 1) : -1);
+            if (discriminatorEnd < 1 || nameEnd == -1) {
+                throw new SmooksConfigException("Invalid Fixed Length record type definition '" + definition + "'.  Expected 'discriminator:recordElementName:fields'.");
+            }
+
+            String discriminator = definition.substring(0, discriminatorEnd);
+            String recordElementName = definition.substring(discriminatorEnd + 1, nameEnd).trim();
+            if (recordElementName.isEmpty()) {
+                throw new SmooksConfigException("Invalid Fixed Length record type definition '" + definition + "'.  The record element name is missing.");
+            }
+            if (discriminatorLength > 0 && discriminator.length() != discriminatorLength) {
+                throw new SmooksConfigException("Invalid Fixed Length record type discriminator '" + discriminator + "'.  Expected a discriminator of " + discriminatorLength + " characters.");
+            }
+
+            types.add(new RecordType(discriminator, recordElementName, RecordLayoutCache.getRecordLayout(definition.substring(nameEnd + 1), functionCacheSize)));
+        }
+
+        if (types.isEmpty()) {
+            throw new SmooksConfigException("Fixed Length record types '" + recordTypes + "' don't define any record type.");
+        }
+
+        return new RecordTypeSelector(discriminatorOffset, types);
+    }
+
+    /**
+     * Select the type of the current record of the reader.
+     *
+     * @param recordReader The record reader, positioned on a record.
+     * @return The record type, or null if no discriminator matches.
+     */
+    RecordType select(RecordReader recordReader) {
+        int available = recordReader.getRecordLength() - offset;
+        if (available < lengths[lengths.length - 1]) {
+            return null;
+        }
+
+        recordReader.decode(offset, Math.min(lengths[0], available));
+        char[] buffer = recordReader.getBuffer();
+        int start = recordReader.getRecordOffset() + offset;
+
+        for (int length : lengths) {
+            if (length > available) {
+                continue;
+            }
+            for (int i = hash(buffer, start, length) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (equals(keys[i], buffer, start, length)) {
+                    return types[i];
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static int hash(char[] chars, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(char[] key, char[] chars, int start, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A discriminated record type.
+     */
+    static final class RecordType {
+
+        private final String discriminator;
+        private final String recordElementName;
+        private final RecordLayout recordLayout;
+
+        private RecordType(String discriminator, String recordElementName, RecordLayout recordLayout) {
+            this.discriminator = discriminator;
+            this.recordElementName = recordElementName;
+            this.recordLayout = recordLayout;
+        }
+
+        String getDiscriminator() {
+            return discriminator;
+        }
+
+        String getRecordElementName() {
+            return recordElementName;
+        }
+
+        RecordLayout getRecordLayout() {
+            return recordLayout;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength.prog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.SmooksException;
+import org.smooks.assertion.AssertArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed Length batch binder.
+ * <p/>
+ * Binds many (typically small) Fixed Length files or streams concurrently, through a shared
+ * {@link FixedLengthListBinder}, so the record layout is built once for the whole batch.  Every source is bound on
+ * its own thread, at most {@link #setConcurrency(int) concurrency} at a time.  On Java 21+ these are virtual threads,
+ * which park rather than block a platform thread while waiting on I/O.  On older runtimes they're platform threads
+ * of a pool sized by the concurrency.  The per call parsing state comes from the bounded pool shared by all the
+ * binders, not from thread locals, so a thread per source doesn't allocate a line buffer per source.
+ * <p/>
+ * Exmaple usage:
+ * <pre>
+ * FixedLengthBatchBinder batchBinder = new FixedLengthBatchBinder(new FixedLengthListBinder(fields, Person.class)).setConcurrency(256);
+ *
+ * FixedLengthBatchBinder.BatchResult&lt;Path&gt; batch = batchBinder.bindPaths(paths);
+ * for (FixedLengthBatchBinder.SourceResult&lt;Path&gt; result : batch.getResults()) {
+ *     if (result.isFailed()) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * A source which fails doesn't fail the batch.  Its error is reported in its {@link SourceResult}.  Binder instances
+ * are thread safe.
+ */
+public class FixedLengthBatchBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FixedLengthBatchBinder.class);
+
+    private final FixedLengthListBinder binder;
+    private int concurrency = 64;
+    private Charset encoding = Charset.defaultCharset();
+
+    public FixedLengthBatchBinder(FixedLengthListBinder binder) {
+        AssertArgument.isNotNull(binder, "binder");
+        this.binder = binder;
+    }
+
+    /**
+     * Set the maximum number of sources bound at the same time.
+     *
+     * @param concurrency The maximum number of concurrently bound sources. Default of 64.
+     * @return This binder instance.
+     */
+    public FixedLengthBatchBinder setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("'concurrency' must be greater than zero.");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Set the encoding of the sources.
+     *
+     * @param encoding The encoding.  Default of the platform encoding, as used by
+     *                 {@link FixedLengthListBinder#bind(InputStream)}.
+     * @return This binder instance.
+     */
+    public FixedLengthBatchBinder setEncoding(Charset encoding) {
+        AssertArgument.isNotNull(encoding, "encoding");
+        this.encoding = encoding;
+        return this;
+    }
+
+    /**
+     * Bind the records of the supplied files.
+     *
+     * @param paths The Fixed Length files.
+     * @return The batch result, with a result per file in the order of the supplied files.
+     */
+    public BatchResult<Path> bindPaths(Collection<? extends Path> paths) {
+        AssertArgument.isNotNull(paths, "paths");
+
+        return bindAll(paths, path -> new InputStreamReader(Files.newInputStream(path), encoding));
+    }
+
+    /**
+     * Bind the records of the supplied streams.  The streams are closed once they're bound.
+     *
+     * @param streams The Fixed Length streams.
+     * @return The batch result, with a result per stream in the order of the supplied streams.
+     */
+    public BatchResult<InputStream> bindStreams(Collection<? extends InputStream> streams) {
+        AssertArgument.isNotNull(streams, "streams");
+
+        return bindAll(streams, stream -> new InputStreamReader(stream, encoding));
+    }
+
+    private <S> BatchResult<S> bindAll(Collection<? extends S> sources, SourceOpener<S> opener) {
+        long start = System.nanoTime();
+        List<Future<SourceResult<S>>> futures = new ArrayList<>(sources.size());
+        Semaphore permits = new Semaphore(concurrency);
+        ExecutorService executor = BatchThreads.newExecutor(Math.min(concurrency, Math.max(sources.size(), 1)));
+        try {
+            for (S source : sources) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return bind(source, opener);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<SourceResult<S>> results = new ArrayList<>(futures.size());
+            for (Future<SourceResult<S>> future : futures) {
+                results.add(future.get());
+            }
+
+            return new BatchResult<>(results, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmooksException("Interrupted while binding the Fixed Length batch.", e);
+        } catch (ExecutionException e) {
+            // The source failures are reported in the results, so this is an unexpected failure...
+            throw new SmooksException("Failed to bind the Fixed Length batch.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <S> SourceResult<S> bind(S source, SourceOpener<S> opener) {
+        long start = System.nanoTime();
+        try (Reader reader = opener.open(source)) {
+            @SuppressWarnings("unchecked")
+            List<Object> records = binder.bind(reader);
+            return new SourceResult<>(source, records, null, System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Failed to bind Fixed Length source '{}'.", source, e);
+            return new SourceResult<>(source, Collections.emptyList(), e, System.nanoTime() - start);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SourceOpener<S> {
+        Reader open(S source) throws IOException;
+    }
+
+    /**
+     * The result of binding a single source.
+     */
+    public static final class SourceResult<S> {
+
+        private final S source;
+        private final List<Object> records;
+        private final Exception error;
+        private final long nanos;
+
+        private SourceResult(S source, List<Object> records, Exception error, long nanos) {
+            this.source = source;
+            this.records = records;
+            this.error = error;
+            this.nanos = nanos;
+        }
+
+        public S getSource() {
+            return source;
+        }
+
+        /**
+         * Get the bound records.
+         *
+         * @return The bound records, or an empty list if binding the source failed.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> List<T> getRecords() {
+            return (List<T>) records;
+        }
+
+        /**
+         * Get the error binding the source.
+         *
+         * @return The error, or null if the source was bound.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        /**
+         * Get the time spent binding the source, opening and reading it included.
+         *
+         * @return The binding time, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * The results of binding a batch of sources, with the aggregate throughput statistics.
+     */
+    public static final class BatchResult<S> {
+
+        private final List<SourceResult<S>> results;
+        private final long elapsedNanos;
+        private final int failedSources;
+        private final long records;
+
+        private BatchResult(List<SourceResult<S>> results, long elapsedNanos) {
+            int failedSources = 0;
+            long records = 0;
+            for (SourceResult<S> result : results) {
+                if (result.isFailed()) {
+                    failedSources++;
+                }
+                records += result.records.size();
+            }
+
+            this.results = Collections.unmodifiableList(results);
+            this.elapsedNanos = elapsedNanos;
+            this.failedSources = failedSources;
+            this.records = records;
+        }
+
+        /**
+         * Get the source results.
+         *
+         * @return The source results, in the order of the supplied sources.
+         */
+        public List<SourceResult<S>> getResults() {
+            return results;
+        }
+
+        public int getSourceCount() {
+            return results.size();
+        }
+
+        public int getFailedSourceCount() {
+            return failedSources;
+        }
+
+        public long getRecordCount() {
+            return records;
+        }
+
+        /**
+         * Get the wall clock time spent binding the batch.
+         *
+         * @return The elapsed time, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getSourcesPerSecond() {
+            return perSecond(results.size());
+        }
+
+        public double getRecordsPerSecond() {
+            return perSecond(records);
+        }
+
+        private double perSecond(long count) {
+            return (elapsedNanos > 0 ? count * 1_000_000_000d / elapsedNanos : 0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[sources=%d,failed=%d,records=%d,elapsedMillis=%d]", getClass().getSimpleName(), results.size(), failedSources, records, elapsedNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * Creates the batch threads.  Virtual threads are looked up reflectively, the code targets Java 8.
+     */
+    static final class BatchThreads {
+
+        private static final Method NEW_VIRTUAL_THREAD_EXECUTOR;
+
+        static {
+            Method newVirtualThreadExecutor = null;
+            try {
+                newVirtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e) {
+                LOGGER.debug("Virtual threads aren't available.  Fixed Length batches are bound on platform threads.");
+            }
+            NEW_VIRTUAL_THREAD_EXECUTOR = newVirtualThreadExecutor;
+        }
+
+        private BatchThreads() {
+        }
+
+        static boolean isVirtual() {
+            return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+        }
+
+        /**
+         * Create the batch executor.
+         *
+         * @param poolSize The number of platform threads, when virtual threads aren't available.
+         * @return The executor.
+         */
+        static ExecutorService newExecutor(int poolSize) {
+            if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+                try {
+                    return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    throw new SmooksException("Failed to create the virtual thread executor.", e);
+                }
+            }
+            return newPlatformExecutor(poolSize);
+        }
+
+        /**
+         * Create a pool of daemon platform threads, the executor when virtual threads aren't available.
+         *
+         * @param poolSize The number of threads.
+         * @return The executor.
+         */
+        static ExecutorService newPlatformExecutor(int poolSize) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(poolSize, runnable -> {
+                Thread thread = new Thread(runnable, "fixed-length-batch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -47,14 +47,25 @@ import org.smooks.assertion.AssertArgument;
 import org.smooks.cartridges.fixedlength.FixedLengthBinding;
 import org.smooks.cartridges.fixedlength.FixedLengthBindingType;
 import org.smooks.cartridges.fixedlength.FixedLengthReaderConfigurator;
+import org.smooks.cartridges.fixedlength.FixedLengthRecordIterator;
+import org.smooks.cartridges.fixedlength.FixedLengthRecordParser;
+import org.smooks.cartridges.fixedlength.FixedLengthRecordPublisher;
+import org.smooks.cartridges.fixedlength.ParallelFileFilter;
 import org.smooks.io.payload.JavaResult;
 
-import javax.xml.transform.stream.StreamSource;
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Fixed Length {@link java.util.List} Binder class.
@@ -72,6 +83,18 @@ import java.util.UUID;
  *     }
  * }
  * </pre>
+ * Large streams can be bound lazily, holding only the current record in memory:
+ * <pre>
+ * try (Stream&lt;Person&gt; people = binder.stream(fixedLengthStream)) {
+ *     people.filter(person -&gt; person.getAge() &gt; 18).forEach(...);
+ * }
+ * </pre>
+ * Slow consumers (message producers, database writers etc...) can pull the records with backpressure through a
+ * {@link #publisher(Reader, Executor) publisher}, which binds the records only as fast as they're requested.
+ * Binder instances are thread safe.  The field layout and bean binding handles are built once and the per call
+ * parsing state is pooled across binders, so {@link #bind(Reader)} can be called concurrently on small payloads
+ * without per call setup cost.  Batches of many small files or streams are bound concurrently through a
+ * {@link FixedLengthBatchBinder}.
  *
  * @author <a href="mailto:maurice.zeijen@smies.com">maurice.zeijen@smies.com</a>
  */
@@ -79,27 +102,139 @@ public class FixedLengthListBinder {
 
     private String beanId = UUID.randomUUID().toString();
     private Smooks smooks;
+    private FixedLengthRecordParser<?> recordParser;
+    private FixedLengthReaderConfigurator readerConfigurator;
+    private ParallelFileFilter fileFilter;
 
     public FixedLengthListBinder(String fields, Class recordType) {
         AssertArgument.isNotNullAndNotEmpty(fields, "fields");
         AssertArgument.isNotNull(recordType, "recordType");
 
         smooks = new Smooks();
-        smooks.setReaderConfig(new FixedLengthReaderConfigurator(fields)
-                .setBinding(new FixedLengthBinding(beanId, recordType, FixedLengthBindingType.LIST)));
+        readerConfigurator = new FixedLengthReaderConfigurator(fields)
+                .setDirectBinding(true)
+                .setBinding(new FixedLengthBinding(beanId, recordType, FixedLengthBindingType.LIST));
+        smooks.setReaderConfig(readerConfigurator);
+        fileFilter = new ParallelFileFilter(smooks, readerConfigurator, 1);
+        recordParser = new FixedLengthRecordParser<>(fields, (Class<?>) recordType, smooks.getApplicationContext().getRegistry());
+    }
+
+    /**
+     * Set the number of threads used by {@link #bind(File)}.
+     * <p/>
+     * With a parallelism greater than 1, the file is split into record aligned chunks which are bound
+     * concurrently, on threads shared with the other binders of the same parallelism.  The results are merged in
+     * file order.  The file is split on line terminators in the encoding it's read in (UTF-8), which must be an
+     * encoding in which a line terminator byte can't be part of another character i.e. a single byte encoding or UTF-8.
+     *
+     * @param parallelism The number of threads. Default of 1.
+     * @return This binder instance.
+     */
+    public synchronized FixedLengthListBinder setParallelism(int parallelism) {
+        this.fileFilter = new ParallelFileFilter(smooks, readerConfigurator, parallelism);
+        return this;
     }
 
     public List bind(Reader fixedLengthStream) {
         AssertArgument.isNotNull(fixedLengthStream, "fixedLengthStream");
 
-        JavaResult javaResult = new JavaResult();
-
-        smooks.filterSource(new StreamSource(fixedLengthStream), javaResult);
+        List<Object> records = new ArrayList<>();
+        recordParser.parse(fixedLengthStream, records::add);
 
-        return (List) javaResult.getBean(beanId);
+        return records;
     }
 
     public List bind(InputStream fixedLengthStream) {
         return bind(new InputStreamReader(fixedLengthStream));
     }
+
+    @SuppressWarnings("rawtypes")
+    public List bind(File fixedLengthFile) {
+        AssertArgument.isNotNull(fixedLengthFile, "fixedLengthFile");
+
+        List<Object> records = new ArrayList<>();
+        for (JavaResult javaResult : getFileFilter().filter(fixedLengthFile)) {
+            records.addAll((List<?>) javaResult.getBean(beanId));
+        }
+
+        return records;
+    }
+
+    private synchronized ParallelFileFilter getFileFilter() {
+        return fileFilter;
+    }
+
+    /**
+     * Lazily bind the records of the supplied stream.
+     * <p/>
+     * Only the current record is held in memory.  Closing the returned {@link Stream} closes the supplied
+     * {@link Reader}, so it should be consumed in a try-with-resources block.
+     *
+     * @param fixedLengthStream The Fixed Length stream.
+     * @return The record {@link Stream}.
+     */
+    public <T> Stream<T> stream(Reader fixedLengthStream) {
+        FixedLengthRecordIterator<T> recordIterator = iterator(fixedLengthStream);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(recordIterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(recordIterator::close);
+    }
+
+    public <T> Stream<T> stream(InputStream fixedLengthStream) {
+        return stream(new InputStreamReader(fixedLengthStream));
+    }
+
+    /**
+     * Lazily bind the records of the supplied stream.
+     * <p/>
+     * Only the current record is held in memory.  The supplied {@link Reader} is closed when the iterator
+     * is exhausted or closed.
+     *
+     * @param fixedLengthStream The Fixed Length stream.
+     * @return The record iterator.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> FixedLengthRecordIterator<T> iterator(Reader fixedLengthStream) {
+        AssertArgument.isNotNull(fixedLengthStream, "fixedLengthStream");
+
+        return (FixedLengthRecordIterator<T>) recordParser.iterator(fixedLengthStream);
+    }
+
+    /**
+     * Publish the records of the supplied stream, binding them only as fast as the subscriber requests them.
+     * <p/>
+     * Only the requested records are held in memory.  The supplied {@link Reader} is closed when the stream is
+     * exhausted, fails or the subscription is cancelled.
+     *
+     * @param fixedLengthStream The Fixed Length stream.
+     * @param executor          The executor binding and delivering the records, e.g. <code>Runnable::run</code> to
+     *                          deliver them on the thread requesting them.
+     * @return The record publisher.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> FixedLengthRecordPublisher<T> publisher(Reader fixedLengthStream, Executor executor) {
+        AssertArgument.isNotNull(fixedLengthStream, "fixedLengthStream");
+
+        return (FixedLengthRecordPublisher<T>) recordParser.publisher(fixedLengthStream, executor);
+    }
+
+    /**
+     * Bind the records of the supplied stream, passing each record to the supplied callback as soon as it is bound.
+     * <p/>
+     * Only the current record is held in memory.  The supplied {@link Reader} is closed on return.
+     *
+     * @param fixedLengthStream The Fixed Length stream.
+     * @param recordConsumer    The record callback.
+     */
+    public <T> void bind(Reader fixedLengthStream, Consumer<? super T> recordConsumer) {
+        AssertArgument.isNotNull(recordConsumer, "recordConsumer");
+
+        try (FixedLengthRecordIterator<T> recordIterator = iterator(fixedLengthStream)) {
+            recordIterator.forEachRemaining(recordConsumer);
+        }
+    }
+
+    public <T> void bind(InputStream fixedLengthStream, Consumer<? super T> recordConsumer) {
+        bind(new InputStreamReader(fixedLengthStream), recordConsumer);
+    }
 }
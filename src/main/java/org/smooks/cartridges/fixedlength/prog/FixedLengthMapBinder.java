@@ -45,16 +45,22 @@ package org.smooks.cartridges.fixedlength.prog;
 import org.smooks.Smooks;
 import org.smooks.assertion.AssertArgument;
 import org.smooks.cartridges.fixedlength.FixedLengthBinding;
+import org.smooks.cartridges.fixedlength.FixedLengthBindingMaps;
 import org.smooks.cartridges.fixedlength.FixedLengthBindingType;
+import org.smooks.cartridges.fixedlength.FixedLengthLongKeyMap;
 import org.smooks.cartridges.fixedlength.FixedLengthReaderConfigurator;
+import org.smooks.cartridges.fixedlength.FixedLengthRecordParser;
+import org.smooks.cartridges.fixedlength.ParallelFileFilter;
 import org.smooks.io.payload.JavaResult;
 
-import javax.xml.transform.stream.StreamSource;
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * Fixed Length {@link java.util.Map} Binder class.
@@ -72,6 +78,9 @@ import java.util.UUID;
  *     }
  * }
  * </pre>
+ * Binder instances are thread safe.  The field layout and bean binding handles are built once and the per call
+ * parsing state is pooled across binders, so {@link #bind(Reader)} can be called concurrently on small payloads
+ * without per call setup cost.
  *
  * @author <a href="mailto:maurice.zeijen@smies.com">maurice.zeijen@smies.com</a>
  */
@@ -79,6 +88,14 @@ public class FixedLengthMapBinder {
 
     private String beanId = UUID.randomUUID().toString();
     private Smooks smooks;
+    private FixedLengthRecordParser<Object> recordParser;
+    private Function<Object, Object> keyExtractor;
+    private FixedLengthReaderConfigurator readerConfigurator;
+    private FixedLengthBinding binding;
+    private ParallelFileFilter fileFilter;
+    private int parallelism = 1;
+    private boolean longKeys;
+    private int initialCapacity;
 
     public FixedLengthMapBinder(String fields, Class recordType, String keyField) {
         AssertArgument.isNotNullAndNotEmpty(fields, "fields");
@@ -86,21 +103,102 @@ public class FixedLengthMapBinder {
         AssertArgument.isNotNullAndNotEmpty(keyField, "keyField");
 
         smooks = new Smooks();
-        smooks.setReaderConfig(new FixedLengthReaderConfigurator(fields)
-                .setBinding(new FixedLengthBinding(beanId, recordType, FixedLengthBindingType.MAP).setKeyField(keyField)));
+        binding = new FixedLengthBinding(beanId, recordType, FixedLengthBindingType.MAP).setKeyField(keyField);
+        readerConfigurator = new FixedLengthReaderConfigurator(fields)
+                .setDirectBinding(true)
+                .setBinding(binding);
+        @SuppressWarnings("unchecked")
+        Class<Object> recordClass = (Class<Object>) recordType;
+        recordParser = new FixedLengthRecordParser<>(fields, recordClass, smooks.getApplicationContext().getRegistry());
+        keyExtractor = recordParser.createKeyExtractor(keyField);
+    }
+
+    /**
+     * Set the number of threads used by {@link #bind(File)}.
+     * <p/>
+     * With a parallelism greater than 1, the file is split into record aligned chunks which are bound
+     * concurrently, on threads shared with the other binders of the same parallelism.  The results are merged in
+     * file order.  The file is split on line terminators in the encoding it's read in (UTF-8), which must be an
+     * encoding in which a line terminator byte can't be part of another character i.e. a single byte encoding or UTF-8.
+     *
+     * @param parallelism The number of threads. Default of 1.
+     * @return This binder instance.
+     */
+    public synchronized FixedLengthMapBinder setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("'parallelism' must be greater than zero.");
+        }
+        this.parallelism = parallelism;
+        this.fileFilter = null;
+        return this;
+    }
+
+    /**
+     * Bind the records into a {@link FixedLengthLongKeyMap}, with primitive long keys.
+     *
+     * @param longKeys True if the key field values are long values (e.g. numeric account IDs).  Default of false.
+     * @return This binder instance.
+     */
+    public synchronized FixedLengthMapBinder setLongKeys(boolean longKeys) {
+        this.longKeys = longKeys;
+        this.fileFilter = null;
+        return this;
+    }
+
+    /**
+     * Pre-size the bound maps.
+     *
+     * @param initialCapacity The expected number of records.  Default of 0 (the default capacity).
+     * @return This binder instance.
+     */
+    public synchronized FixedLengthMapBinder setInitialCapacity(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("'initialCapacity' must not be negative.");
+        }
+        this.initialCapacity = initialCapacity;
+        this.fileFilter = null;
+        return this;
     }
 
     public Map bind(Reader fixedLengthStream) {
         AssertArgument.isNotNull(fixedLengthStream, "fixedLengthStream");
 
-        JavaResult javaResult = new JavaResult();
-
-        smooks.filterSource(new StreamSource(fixedLengthStream), javaResult);
+        Map<?, Object> records = FixedLengthBindingMaps.newMap(longKeys, initialCapacity);
+        recordParser.parse(fixedLengthStream, record -> FixedLengthBindingMaps.put(records, keyExtractor.apply(record), record));
 
-        return (Map) javaResult.getBean(beanId);
+        return records;
     }
 
     public Map bind(InputStream fixedLengthStream) {
         return bind(new InputStreamReader(fixedLengthStream));
     }
+
+    @SuppressWarnings("rawtypes")
+    public Map bind(File fixedLengthFile) {
+        AssertArgument.isNotNull(fixedLengthFile, "fixedLengthFile");
+
+        ParallelFileFilter fileFilter = getFileFilter();
+        if (fileFilter.isParallel()) {
+            // Merge the chunk maps, in file order, into the one pre-sized map as the chunks complete...
+            Map<?, Object> records = FixedLengthBindingMaps.newMap(longKeys, initialCapacity);
+            fileFilter.filter(fixedLengthFile, javaResult ->
+                    FixedLengthBindingMaps.putAll(records, (Map<?, ?>) javaResult.getBean(beanId)));
+            return records;
+        }
+
+        List<JavaResult> javaResults = fileFilter.filter(fixedLengthFile);
+        return (Map) javaResults.get(0).getBean(beanId);
+    }
+
+    private synchronized ParallelFileFilter getFileFilter() {
+        if (fileFilter == null) {
+            // The binding options are read when the reader configuration is applied, so every change gets its own Smooks
+            // instance.  The chunks of a parallel filter are merged, so only the merged map is pre-sized...
+            binding.setLongKeys(longKeys).setInitialCapacity(parallelism == 1 ? initialCapacity : 0);
+            Smooks fileSmooks = new Smooks();
+            fileSmooks.setReaderConfig(readerConfigurator);
+            fileFilter = new ParallelFileFilter(fileSmooks, readerConfigurator, parallelism);
+        }
+        return fileFilter;
+    }
 }
@@ -0,0 +1,93 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkScannerTest {
+
+    @Test
+    public void test_line_terminator() {
+        char[] chars = "0123\t\rabc\ndef".toCharArray();
+
+        assertEquals(5, BulkScanner.indexOfLineTerminator(chars, 0, chars.length));
+        assertEquals(9, BulkScanner.indexOfLineTerminator(chars, 6, chars.length));
+        assertEquals(-1, BulkScanner.indexOfLineTerminator(chars, 10, chars.length));
+        assertEquals(-1, BulkScanner.indexOfLineTerminator(chars, 0, 5));
+    }
+
+    @Test
+    public void test_padding() {
+        char[] chars = "    value       ".toCharArray();
+
+        assertEquals(4, BulkScanner.skipPadding(chars, 0, chars.length, ' '));
+        assertEquals(9, BulkScanner.skipTrailingPadding(chars, 0, chars.length, ' '));
+        assertEquals(chars.length, BulkScanner.skipPadding(chars, 9, chars.length, ' '));
+        assertEquals(9, BulkScanner.skipTrailingPadding(chars, 9, chars.length, ' '));
+    }
+
+    @Test
+    public void test_byte_scan() {
+        byte[] bytes = "0123456789abcdef\rghijklmnopqrstuvwxyz\n0123".getBytes(StandardCharsets.US_ASCII);
+
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+            for (int from = 0; from < bytes.length; from++) {
+                int expected = -1;
+                for (int i = from; i < bytes.length && expected == -1; i++) {
+                    if (bytes[i] == '\n' || bytes[i] == '\r') {
+                        expected = i;
+                    }
+                }
+                assertEquals(expected, BulkScanner.indexOfLineTerminator(buffer, from, bytes.length, (byte) '\n', (byte) '\r'));
+            }
+            assertEquals(-1, BulkScanner.indexOfLineTerminator(buffer, 0, 16, (byte) '\n', (byte) '\r'));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarRecordBinderTest {
+
+    @Test
+    public void test_typed_columns() throws Exception {
+        FixedLengthColumns columns = bind("code[3]?trim,$ignore$[1],qty[4]:int,total[10]:long,amount[7]:decimal(2),date[8]:date(yyyyMMdd),time[12]:date(yyyyMMddHHmm)",
+                "AB " + "x" + "  12" + "      1000" + "  12345" + "20240131" + "202401311230\n" +
+                "CD " + "x" + "  -3" + "          " + "    2.5" + "20240229" + "            \n" +
+                "AB " + "x" + "   7");
+
+        assertEquals(3, columns.getRowCount());
+        assertEquals("[code, qty, total, amount, date, time]", columns.getColumnNames().toString());
+
+        FixedLengthColumn.StringColumn code = columns.getColumn("code", FixedLengthColumn.StringColumn.class);
+        assertArrayEquals(new int[]{0, 1, 0}, code.getCodes());
+        assertArrayEquals(new String[]{"AB", "CD"}, code.getDictionary());
+        assertEquals("CD", code.getString(1));
+
+        assertArrayEquals(new int[]{12, -3, 7}, columns.getColumn("qty", FixedLengthColumn.IntColumn.class).getValues());
+
+        FixedLengthColumn.LongColumn total = columns.getColumn("total", FixedLengthColumn.LongColumn.class);
+        assertEquals(1000L, total.getLong(0));
+        assertTrue(total.isNull(1));
+        assertNull(total.getValue(1));
+
+        FixedLengthColumn.DecimalColumn amount = columns.getColumn("amount", FixedLengthColumn.DecimalColumn.class);
+        assertArrayEquals(new long[]{12345, 250, 0}, amount.getValues());
+        assertEquals(new BigDecimal("123.45"), amount.getDecimal(0));
+        assertEquals(2.5, amount.getDouble(1), 0.0);
+        assertTrue(amount.isNull(2));
+
+        FixedLengthColumn.DateColumn date = columns.getColumn("date", FixedLengthColumn.DateColumn.class);
+        assertFalse(date.isDateTime());
+        assertEquals(LocalDate.of(2024, 2, 29), date.getDate(1));
+        assertEquals(LocalDate.of(2024, 1, 31).toEpochDay(), date.getLong(0));
+
+        FixedLengthColumn.DateColumn time = columns.getColumn("time", FixedLengthColumn.DateColumn.class);
+        assertTrue(time.isDateTime());
+        assertEquals(LocalDateTime.of(2024, 1, 31, 12, 30), time.getDateTime(0));
+        assertTrue(time.isNull(1));
+        assertTrue(time.isNull(2));
+    }
+
+    @Test
+    public void test_dictionary() throws Exception {
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            records.append(String.format("%05d", i % 1000)).append('\n');
+        }
+
+        FixedLengthColumns columns = bind("key[5]?left_trim", records.toString());
+        FixedLengthColumn.StringColumn key = columns.getColumn("key", FixedLengthColumn.StringColumn.class);
+
+        assertEquals(10000, key.size());
+        assertEquals(1000, key.getDictionary().length);
+        for (int row = 0; row < key.size(); row++) {
+            assertEquals(row % 1000, key.getCode(row));
+            assertEquals(String.format("%05d", row % 1000), key.getString(row));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_unknown_column() throws Exception {
+        bind("a[1],$ignore$[1]", "ab").getColumn("$ignore$");
+    }
+
+    private static FixedLengthColumns bind(String fields, String records) throws Exception {
+        ColumnarRecordBinder binder = new ColumnarRecordBinder(RecordLayout.parse(fields).getFields());
+        RecordReader recordReader = new LineRecordReader(new StringReader(records));
+        while (recordReader.nextRecord()) {
+            binder.bind(recordReader);
+        }
+        return binder.getResult();
+    }
+}
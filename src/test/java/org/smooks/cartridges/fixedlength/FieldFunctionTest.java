@@ -0,0 +1,100 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.cartridges.flatfile.function.StringFunctionExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class FieldFunctionTest {
+
+    private static final String[] DEFINITIONS = {"trim", "left_trim", "right_trim", "upper_case", "lower_case", "trim.upper_case",
+            "upper_case.lower_case", "left_trim.right_trim.upper_case", ".trim", "capitalize", "trim.cap_first", "uncap_first"};
+    private static final String[] VALUES = {"", "   ", " aBc ", "\tabc ", "ab c ", "  stra\u00dfe ", "\u00c9mile ", "x", "\u0001abc\u0001"};
+
+    @Test
+    public void test_matches_string_function_executor() {
+        for (String definition : DEFINITIONS) {
+            StringFunctionExecutor stringFunctionExecutor = StringFunctionExecutor.getInstance(definition);
+            FieldFunction fieldFunction = FieldFunction.compile(definition, 0);
+            FieldFunction cachedFieldFunction = FieldFunction.compile(definition, 2);
+
+            for (String value : VALUES) {
+                // Surround the value with other characters, the way it appears in a record...
+                char[] record = ("##" + value + "##").toCharArray();
+                String expected = stringFunctionExecutor.execute(value);
+                String message = definition + " on '" + value + "'";
+
+                assertEquals(message, expected, fieldFunction.apply(record, 2, value.length()));
+                assertEquals(message, expected, cachedFieldFunction.apply(record, 2, value.length()));
+
+                char[] target = new char[16];
+                int length = fieldFunction.apply(record, 2, value.length(), target);
+                assertEquals(message, expected, new String(target, 0, length));
+            }
+        }
+    }
+
+    @Test
+    public void test_target_too_small() {
+        FieldFunction fieldFunction = FieldFunction.compile("upper_case", 0);
+
+        assertEquals(-1, fieldFunction.apply("stra\u00dfe".toCharArray(), 0, 6, new char[6]));
+        assertEquals(7, fieldFunction.apply("stra\u00dfe".toCharArray(), 0, 6, new char[7]));
+    }
+
+    @Test
+    public void test_cache() {
+        FieldFunction fieldFunction = FieldFunction.compile("trim", 2);
+
+        String eur = fieldFunction.apply("EUR USD EUR GBP EUR".toCharArray(), 0, 4);
+        assertSame(eur, fieldFunction.apply("EUR USD EUR GBP EUR".toCharArray(), 8, 4));
+        fieldFunction.apply("EUR USD EUR GBP EUR".toCharArray(), 4, 4);
+        fieldFunction.apply("EUR USD EUR GBP EUR".toCharArray(), 12, 4);
+        // EUR was evicted...
+        assertNotSame(eur, fieldFunction.apply("EUR USD EUR GBP EUR".toCharArray(), 16, 3));
+    }
+}
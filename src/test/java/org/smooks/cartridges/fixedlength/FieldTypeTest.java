@@ -0,0 +1,194 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class FieldTypeTest {
+
+    @Test
+    public void test_int() {
+        FieldType fieldType = FieldType.parse("int");
+
+        assertEquals(Integer.class, fieldType.getValueType());
+        assertEquals(42, decode(fieldType, "000042"));
+        assertEquals(42, decode(fieldType, "    42"));
+        assertEquals(-42, decode(fieldType, "-42   "));
+        assertEquals(42, decode(fieldType, "+42"));
+        assertNull(decode(fieldType, "      "));
+        assertInvalid(fieldType, "4 2");
+        assertInvalid(fieldType, "4.2");
+        assertInvalid(fieldType, "9999999999");
+    }
+
+    @Test
+    public void test_long() {
+        FieldType fieldType = FieldType.parse("long");
+
+        assertEquals(Long.MAX_VALUE, decode(fieldType, Long.toString(Long.MAX_VALUE)));
+        assertEquals(-1234567890123L, decode(fieldType, "-1234567890123"));
+        assertInvalid(fieldType, "99999999999999999999");
+    }
+
+    @Test
+    public void test_overpunch() {
+        FieldType fieldType = FieldType.parse("int");
+
+        assertEquals(120, decode(fieldType, "12{"));
+        assertEquals(123, decode(fieldType, "12C"));
+        assertEquals(-120, decode(fieldType, "12}"));
+        assertEquals(-129, decode(fieldType, "12R"));
+        assertEquals(-5, decode(fieldType, "N"));
+        assertInvalid(fieldType, "0C1");
+    }
+
+    @Test
+    public void test_decimal() {
+        FieldType fieldType = FieldType.parse("decimal(2)");
+
+        assertEquals(BigDecimal.class, fieldType.getValueType());
+        assertEquals(new BigDecimal("123.45"), decode(fieldType, "0000012345"));
+        assertEquals(new BigDecimal("-123.45"), decode(fieldType, "000001234N"));
+        assertEquals(new BigDecimal("1.5"), decode(fieldType, "       1.5"));
+        assertEquals(new BigDecimal("12345678901234567890.12"), decode(fieldType, "1234567890123456789012"));
+        assertEquals(new BigDecimal("12"), decode(FieldType.parse("decimal"), "12"));
+        assertEquals("-123.45", fieldType.toText(decode(fieldType, "-12345")));
+        assertNull(decode(fieldType, ""));
+        assertInvalid(fieldType, "1.2.3");
+        assertInvalid(fieldType, "-");
+    }
+
+    @Test
+    public void test_date() {
+        FieldType fieldType = FieldType.parse("date(yyyyMMdd)");
+
+        assertEquals(LocalDate.class, fieldType.getValueType());
+        assertEquals(LocalDate.of(2020, 1, 31), decode(fieldType, "20200131"));
+        assertEquals(LocalDate.of(2020, 1, 31), decode(fieldType, "20200131  "));
+        assertNull(decode(fieldType, "        "));
+        assertInvalid(fieldType, "20200132");
+        assertInvalid(fieldType, "2020013X");
+
+        FieldType dateTimeType = FieldType.parse("date(yyyy-MM-dd HH:mm:ss)");
+        assertEquals(LocalDateTime.class, dateTimeType.getValueType());
+        assertEquals(LocalDateTime.of(2020, 1, 31, 23, 59, 1), decode(dateTimeType, "2020-01-31 23:59:01"));
+
+        // The literals must match the pattern...
+        FieldType separatedType = FieldType.parse("date(yyyy-MM-dd)");
+        assertEquals(LocalDate.of(2024, 1, 15), decode(separatedType, "2024-01-15"));
+        assertInvalid(separatedType, "2024/01/15");
+        assertInvalid(separatedType, "2024x01x15");
+        assertInvalid(dateTimeType, "2020-01-31T23:59:01");
+
+        // Not a simple pattern...
+        assertEquals(LocalDate.of(2020, 1, 31), decode(FieldType.parse("date(dd MMM yyyy)"), "31 Jan 2020"));
+    }
+
+    @Test
+    public void test_invalid_definitions() {
+        for (String definition : new String[]{"float", "int(2)", "decimal(x)", "date", "date(yyyyMMdd"}) {
+            try {
+                FieldType.parse(definition);
+                fail("Expected SmooksConfigException for '" + definition + "'");
+            } catch (SmooksConfigException e) {
+                // Expected...
+            }
+        }
+    }
+
+    @Test(expected = SmooksConfigException.class)
+    public void test_type_with_function() {
+        RecordLayout.parse("amount[10]:decimal(2)?trim");
+    }
+
+    @Test
+    public void test_encode() {
+        assertEquals("-0042", encode(FieldType.parse("int"), -42, 5));
+        assertEquals("-9223372036854775808", encode(FieldType.parse("long"), Long.MIN_VALUE, 20));
+        assertEquals("0000012345", encode(FieldType.parse("decimal(2)"), new BigDecimal("123.45"), 10));
+        assertEquals("12345678901234567890123", encode(FieldType.parse("decimal(3)"), new BigDecimal("12345678901234567890.123"), 23));
+        assertEquals("31/01/2020  ", encode(FieldType.parse("date(dd/MM/yyyy)"), LocalDate.of(2020, 1, 31), 12));
+        assertEquals("2020-01-31T13:45", encode(FieldType.parse("date(yyyy-MM-dd'T'HH:mm)"), LocalDateTime.of(2020, 1, 31, 13, 45), 16));
+        assertEquals("      ", encode(FieldType.parse("int"), null, 6));
+
+        // Encoded values decode to the same value...
+        FieldType fieldType = FieldType.parse("date(yyyyMMddHHmmss)");
+        LocalDateTime dateTime = LocalDateTime.of(2020, 1, 31, 13, 45, 59);
+        assertEquals(dateTime, decode(fieldType, encode(fieldType, dateTime, 14)));
+    }
+
+    private static String encode(FieldType fieldType, Object value, int length) {
+        // Surround the field with other characters, the way it appears in a record...
+        char[] record = new char[length + 4];
+        Arrays.fill(record, '#');
+        fieldType.encode(value, record, 2, length);
+        assertEquals("##", new String(record, length + 2, 2));
+        return new String(record, 2, length);
+    }
+
+    private static Object decode(FieldType fieldType, String value) {
+        // Surround the value with other characters, the way it appears in a record...
+        char[] record = ("##" + value + "##").toCharArray();
+        return fieldType.decode(record, 2, value.length());
+    }
+
+    private static void assertInvalid(FieldType fieldType, String value) {
+        try {
+            decode(fieldType, value);
+            fail("Expected SmooksException for '" + value + "'");
+        } catch (SmooksException e) {
+            // Expected...
+        }
+    }
+}
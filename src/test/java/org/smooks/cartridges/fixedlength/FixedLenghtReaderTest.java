@@ -43,19 +43,42 @@
 package org.smooks.cartridges.fixedlength;
 
 import org.junit.Test;
+import org.smooks.FilterSettings;
 import org.smooks.Smooks;
 import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
 import org.smooks.api.delivery.Filter;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.ChildrenVisitor;
 import org.smooks.engine.resource.config.ParameterAccessor;
 import org.smooks.io.payload.JavaResult;
+import org.smooks.io.payload.StringResult;
 import org.smooks.support.SmooksUtil;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Element;
 
 import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author <a href="mailto:maurice.zeijen@smies.com">maurice.zeijen@smies.com</a>
@@ -369,4 +392,755 @@ public class FixedLenghtReaderTest {
         expected = "<set><record truncated=\"true\"><first>aa</first><second>bbb</second><third truncated=\"true\"/></record></set>";
         assertEquals(expected, result);
     }
+
+    @Test
+    public void test_07_line_terminators() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "first[2],second[3],third[4]")
+                .setLineNumber(true));
+
+        ExecutionContext context = smooks.createExecutionContext();
+        String result = SmooksUtil.filterAndSerialize(context, new ByteArrayInputStream("aabbbcccc\r\nddeeeffff\rgghhhiiii\n\njjkkkllll".getBytes(StandardCharsets.UTF_8)), smooks);
+
+        String expected = "<set><record number=\"1\"><first>aa</first><second>bbb</second><third>cccc</third></record><record number=\"2\"><first>dd</first><second>eee</second><third>ffff</third></record><record number=\"3\"><first>gg</first><second>hhh</second><third>iiii</third></record><record number=\"5\"><first>jj</first><second>kkk</second><third>llll</third></record></set>";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void test_07_long_lines() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "first[10000]?trim,second[10000]?trim"));
+
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            message.append(String.format("%-10000s%-10000s%n", "a" + i, "b" + i));
+        }
+
+        ExecutionContext context = smooks.createExecutionContext();
+        String result = SmooksUtil.filterAndSerialize(context, new ByteArrayInputStream(message.toString().getBytes(StandardCharsets.UTF_8)), smooks);
+
+        String expected = "<set><record><first>a0</first><second>b0</second></record><record><first>a1</first><second>b1</second></record><record><first>a2</first><second>b2</second></record><record><first>a3</first><second>b3</second></record><record><first>a4</first><second>b4</second></record></set>";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void test_08_xml_memory_mapped() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("/smooks-config-08.xml"));
+        test_08_memory_mapped(smooks);
+    }
+
+    @Test
+    public void test_08_programmatic_memory_mapped() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]")
+                .setEncoding(StandardCharsets.ISO_8859_1)
+                .setMemoryMapped(true)
+                .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.LIST)));
+
+        test_08_memory_mapped(smooks);
+    }
+
+    private void test_08_memory_mapped(Smooks smooks) throws Exception {
+        JavaResult result = new JavaResult();
+        try (FileInputStream fileInputStream = new FileInputStream(new File(getClass().getResource("/input-message-08.txt").toURI()))) {
+            smooks.filterSource(new StreamSource(fileInputStream), result);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> people = (List<Map<String, String>>) result.getBean("people");
+
+        assertEquals(2, people.size());
+        assertEquals("Maurice", people.get(0).get("firstname"));
+        assertEquals("Zeijen", people.get(0).get("lastname"));
+        assertEquals("J\u00fcrgen", people.get(1).get("firstname"));
+        assertEquals("M\u00fcller", people.get(1).get("lastname"));
+        assertEquals("045", people.get(1).get("age"));
+        assertEquals("DEU", people.get(1).get("country"));
+    }
+
+    @Test
+    public void test_08_memory_mapped_ebcdic() throws Exception {
+        Charset ebcdic = Charset.forName("IBM037");
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write("aabbbcccc\nddeeeffff\ngghhh\n".getBytes(ebcdic));
+        }
+
+        Smooks smooks = new Smooks();
+        ParameterAccessor.setParameter(Filter.CLOSE_EMPTY_ELEMENTS, "true", smooks);
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "first[2],second[3],third[4]")
+                .setEncoding(ebcdic)
+                .setMemoryMapped(true)
+                .setStrict(false)
+                .setLineNumber(true));
+
+        String result;
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), fileInputStream, smooks);
+        }
+
+        String expected = "<set><record number=\"1\"><first>aa</first><second>bbb</second><third>cccc</third></record><record number=\"2\"><first>dd</first><second>eee</second><third>ffff</third></record><record number=\"3\" truncated=\"true\"><first>gg</first><second>hhh</second><third truncated=\"true\"/></record></set>";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void test_09_xml_parallel() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("/smooks-config-09.xml"));
+        test_09_parallel(smooks);
+    }
+
+    @Test
+    public void test_09_programmatic_parallel() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "first[2],second[3],third[4]")
+                .setSkipLines(2)
+                .setLineNumber(true)
+                .setParallelism(4));
+
+        test_09_parallel(smooks);
+    }
+
+    private void test_09_parallel(Smooks smooks) throws Exception {
+        String result;
+        try (FileInputStream fileInputStream = new FileInputStream(new File(getClass().getResource("/input-message-02.txt").toURI()))) {
+            result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), fileInputStream, smooks);
+        }
+
+        String expected = "<set><record number=\"3\"><first>aa</first><second>bbb</second><third>cccc</third></record><record number=\"4\"><first>dd</first><second>eee</second><third>ffff</third></record></set>";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void test_10_xml_direct_list_binding() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("/smooks-config-10.xml"));
+
+        JavaResult result = new JavaResult();
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), result);
+
+        @SuppressWarnings("unchecked")
+        List<Person> people = (List<Person>) result.getBean("people");
+        assertPeople(people.get(0), people.get(1));
+    }
+
+    @Test
+    public void test_10_programmatic_direct_list_binding() throws Exception {
+        JavaResult result = filterDirect(FixedLengthBindingType.LIST, null);
+
+        @SuppressWarnings("unchecked")
+        List<Person> people = (List<Person>) result.getBean("people");
+        assertEquals(2, people.size());
+        assertPeople(people.get(0), people.get(1));
+    }
+
+    @Test
+    public void test_10_programmatic_direct_map_binding() throws Exception {
+        JavaResult result = filterDirect(FixedLengthBindingType.MAP, "age");
+
+        @SuppressWarnings("unchecked")
+        Map<Integer, Person> people = (Map<Integer, Person>) result.getBean("people");
+        assertEquals(2, people.size());
+        assertPeople(people.get(26), people.get(22));
+    }
+
+    @Test
+    public void test_10_programmatic_direct_single_binding() throws Exception {
+        JavaResult result = filterDirect(FixedLengthBindingType.SINGLE, null);
+
+        Person person = (Person) result.getBean("people");
+        assertEquals("Sanne", person.getFirstname());
+        assertEquals(22, person.getAge());
+    }
+
+    @Test
+    public void test_11_programmatic_function_cache() throws Exception {
+        for (boolean directBinding : new boolean[]{false, true}) {
+            Smooks smooks = new Smooks();
+
+            smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                    "firstname[10]?trim.upper_case,lastname[10]?right_trim,$ignore$[2],gender[1],age[3],country[3]?lower_case")
+                    .setFunctionCacheSize(16)
+                    .setDirectBinding(directBinding)
+                    .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.LIST)));
+
+            JavaResult result = new JavaResult();
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), result);
+
+            @SuppressWarnings("unchecked")
+            List<Map<String, String>> people = (List<Map<String, String>>) result.getBean("people");
+
+            assertEquals(2, people.size());
+            assertEquals("MAURICE", people.get(0).get("firstname"));
+            assertEquals("Zeijen", people.get(0).get("lastname"));
+            assertEquals("nld", people.get(0).get("country"));
+            assertEquals("SANNE", people.get(1).get("firstname"));
+            assertEquals("nld", people.get(1).get("country"));
+        }
+    }
+
+    @Test
+    public void test_12_programmatic_typed_fields() throws Exception {
+        for (boolean directBinding : new boolean[]{false, true}) {
+            Smooks smooks = new Smooks();
+
+            smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                    "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3]:decimal(1),country[3]")
+                    .setDirectBinding(directBinding)
+                    .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.LIST)));
+
+            JavaResult result = new JavaResult();
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), result);
+
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> people = (List<Map<String, Object>>) result.getBean("people");
+
+            // Direct bindings bind the decoded values, field events carry the canonical text...
+            assertEquals(2, people.size());
+            assertEquals(directBinding ? new BigDecimal("2.6") : "2.6", people.get(0).get("age"));
+            assertEquals(directBinding ? new BigDecimal("2.2") : "2.2", people.get(1).get("age"));
+        }
+    }
+
+    @Test
+    public void test_13_programmatic_metrics() throws Exception {
+        for (boolean directBinding : new boolean[]{false, true}) {
+            Smooks smooks = new Smooks();
+
+            smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                    "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3]:int,country[3]")
+                    .setMetricsListener(CumulativeFixedLengthMetrics.class)
+                    .setDirectBinding(directBinding)
+                    .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.LIST)));
+
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), new JavaResult());
+            smooks.filterSource(new StreamSource(new ByteArrayInputStream("Maurice   Zeijen    12M026NLD\nshort".getBytes(StandardCharsets.UTF_8))), new JavaResult());
+
+            CumulativeFixedLengthMetrics metrics = smooks.getApplicationContext().getRegistry().lookup(CumulativeFixedLengthMetrics.class.getName());
+
+            assertEquals(2, metrics.getExecutions());
+            assertEquals(0, metrics.getFailedExecutions());
+            assertEquals(3, metrics.getRecords());
+            assertEquals(1, metrics.getSkippedRecords());
+            assertEquals(0, metrics.getTruncatedRecords());
+            assertEquals(29 * 3 + 5, metrics.getCharacters());
+            assertTrue(metrics.getElapsedNanos() > 0);
+            assertEquals(directBinding, metrics.getBindingNanos() > 0);
+            assertTrue(metrics.getContentHandlerNanos() > 0);
+        }
+    }
+
+    @Test
+    public void test_13_programmatic_registered_metrics_listener() throws Exception {
+        List<FixedLengthMetrics> executions = new ArrayList<>();
+        Smooks smooks = new Smooks();
+
+        smooks.getApplicationContext().getRegistry().registerObject("metrics", (FixedLengthMetricsListener) executions::add);
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]")
+                .setStrict(false)
+                .setMetricsListener("metrics"));
+
+        smooks.filterSource(new StreamSource(new ByteArrayInputStream("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F022".getBytes(StandardCharsets.UTF_8))), new JavaResult());
+
+        assertEquals(1, executions.size());
+        assertEquals(2, executions.get(0).getRecords());
+        assertEquals(1, executions.get(0).getTruncatedRecords());
+        assertEquals(0, executions.get(0).getSkippedRecords());
+        assertFalse(executions.get(0).isFailed());
+    }
+
+    @Test
+    public void test_13_programmatic_metrics_listener_without_default_constructor() {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("firstname[10]?trim,lastname[10]?trim")
+                .setMetricsListener(NoDefaultConstructorMetricsListener.class));
+
+        try {
+            smooks.filterSource(new StreamSource(new StringReader("Maurice   Zeijen    ")));
+            fail("Expected SmooksConfigException");
+        } catch (SmooksConfigException e) {
+            // Smooks wraps the exceptions of the @PostConstruct methods...
+            Throwable cause = e;
+            while (!(cause.getCause() instanceof NoSuchMethodException)) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause instanceof SmooksConfigException);
+            assertTrue(cause.getMessage().contains(NoDefaultConstructorMetricsListener.class.getName()));
+        }
+    }
+
+    @Test
+    public void test_14_xml_record_types() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("/smooks-config-14.xml"));
+        test_14(smooks);
+    }
+
+    @Test
+    public void test_14_programmatic_record_types() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("type[1],account[10],amount[12]:decimal(2)")
+                .setDiscriminator(0, 1)
+                .addRecordType("H", "header", "type[1],date[8]:date(yyyyMMdd)")
+                .addRecordType("T", "trailer", "type[1],count[6]:int"));
+
+        test_14(smooks);
+    }
+
+    private void test_14(Smooks smooks) {
+        ExecutionContext context = smooks.createExecutionContext();
+        String result = SmooksUtil.filterAndSerialize(context, getClass().getResourceAsStream("/input-message-14.txt"), smooks);
+
+        String expected = "<set><header><type>H</type><date>2024-01-31</date></header>" +
+                "<record><type>D</type><account>acc0000001</account><amount>123.45</amount></record>" +
+                "<record><type>D</type><account>acc0000002</account><amount>1.00</amount></record>" +
+                "<trailer><type>T</type><count>2</count></trailer></set>";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    public void test_14_programmatic_record_types_direct_binding() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("type[1],account[10],amount[12]:decimal(2)")
+                .addRecordType("H", "header", "type[1],date[8]")
+                .addRecordType("T", "trailer", "type[1],count[6]:int")
+                .setDirectBinding(true)
+                .setBinding(new FixedLengthBinding("details", HashMap.class, FixedLengthBindingType.LIST)));
+
+        ExecutionContext context = smooks.createExecutionContext();
+        String result = SmooksUtil.filterAndSerialize(context, getClass().getResourceAsStream("/input-message-14.txt"), smooks);
+
+        // Only the records of the default layout are bound, the other record types still generate events...
+        assertEquals("<set><header><type>H</type><date>20240131</date></header><trailer><type>T</type><count>2</count></trailer></set>", result);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> details = (List<Map<String, Object>>) context.getBeanContext().getBean("details");
+        assertEquals(2, details.size());
+        assertEquals("acc0000002", details.get(1).get("account"));
+        assertEquals(new BigDecimal("1.00"), details.get(1).get("amount"));
+    }
+
+    @Test
+    public void test_15_programmatic_record_range() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            content.append(String.format("%02d%03d\r\n", i, i * 7));
+        }
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        File indexFile = new File(file.getPath() + ".idx");
+        indexFile.deleteOnExit();
+
+        String expected = "<set><record number=\"4\"><first>04</first><second>028</second></record>" +
+                "<record number=\"5\"><first>05</first><second>035</second></record>" +
+                "<record number=\"6\"><first>06</first><second>042</second></record></set>";
+
+        for (boolean index : new boolean[]{false, true}) {
+            for (boolean memoryMapped : new boolean[]{false, true}) {
+                FixedLengthReaderConfigurator readerConfigurator = new FixedLengthReaderConfigurator("first[2],second[3]")
+                        .setLineNumber(true)
+                        .setMemoryMapped(memoryMapped)
+                        .setEncoding(StandardCharsets.ISO_8859_1)
+                        .setFirstRecord(4)
+                        .setLastRecord(6);
+                if (index) {
+                    readerConfigurator.setRecordIndex(indexFile.getPath()).setRecordIndexInterval(3);
+                }
+                Smooks smooks = new Smooks();
+                smooks.setReaderConfig(readerConfigurator);
+
+                try (FileInputStream fileInputStream = new FileInputStream(file)) {
+                    ExecutionContext context = smooks.createExecutionContext();
+                    assertEquals(expected, SmooksUtil.filterAndSerialize(context, fileInputStream, smooks));
+                }
+            }
+        }
+        assertEquals(10, FixedLengthRecordIndex.load(indexFile.toPath(), StandardCharsets.ISO_8859_1).getRecordCount());
+    }
+
+    @Test
+    public void test_16_xml_fixed_framing() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("/smooks-config-16.xml"));
+        test_16_fixed_framing(smooks);
+    }
+
+    @Test
+    public void test_16_programmatic_fixed_framing() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("first[2],second[3],third[4]")
+                .setFraming(FixedLengthRecordFraming.FIXED)
+                .setEncoding(StandardCharsets.ISO_8859_1)
+                .setSkipLines(1)
+                .setLineNumber(true)
+                .setStrict(false));
+
+        test_16_fixed_framing(smooks);
+    }
+
+    private void test_16_fixed_framing(Smooks smooks) throws Exception {
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write("HDR000000aabbbccccddeeeffffgg".getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        String expected = "<set><record number=\"2\"><first>aa</first><second>bbb</second><third>cccc</third></record>" +
+                "<record number=\"3\"><first>dd</first><second>eee</second><third>ffff</third></record>" +
+                "<record number=\"4\" truncated=\"true\"><first>gg</first><second truncated=\"true\"/><third truncated=\"true\"/></record></set>";
+
+        // The leading record is seeked over in a file and skipped in other streams...
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            assertEquals(expected, SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), fileInputStream, smooks));
+        }
+        assertEquals(expected, SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(Files.readAllBytes(file.toPath())), smooks));
+    }
+
+    @Test
+    public void test_17_programmatic_length_prefixed_framing() throws Exception {
+        Charset ebcdic = Charset.forName("Cp037");
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("type[1],amount[5]:int")
+                .setFraming(FixedLengthRecordFraming.LENGTH_PREFIXED)
+                .setEncoding(ebcdic)
+                .addRecordType("H", "header", "type[1],name[10]?trim"));
+
+        byte[] content = LengthPrefixedRecordReaderTest.rdw(ebcdic, "HSMOOKS    ", "D0001C", "D0002}");
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(content), smooks);
+
+        assertEquals("<set><header><type>H</type><name>SMOOKS</name></header>" +
+                "<record><type>D</type><amount>13</amount></record>" +
+                "<record><type>D</type><amount>-20</amount></record></set>", result);
+    }
+
+    @Test
+    public void test_18_programmatic_fields_as_attributes() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3]:int,country[3]")
+                .setFieldsAsAttributes(true)
+                .setLineNumber(true)
+                .setStrict(false));
+
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(),
+                new ByteArrayInputStream("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F02".getBytes(StandardCharsets.UTF_8)), smooks);
+
+        // The serializer orders the attributes by name...
+        assertEquals("<set><record age=\"26\" country=\"NLD\" firstname=\"Maurice\" gender=\"M\" lastname=\"Zeijen\" number=\"1\"/>" +
+                "<record firstname=\"Sanne\" gender=\"F\" lastname=\"Fries\" number=\"2\" truncated=\"true\"/></set>", result);
+    }
+
+    @Test
+    public void test_18_programmatic_fields_as_attributes_binding() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]")
+                .setFieldsAsAttributes(true)
+                .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.LIST)));
+
+        JavaResult result = new JavaResult();
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), result);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> people = (List<Map<String, String>>) result.getBean("people");
+        assertEquals(2, people.size());
+        assertEquals("Maurice", people.get(0).get("firstname"));
+        assertEquals("026", people.get(0).get("age"));
+        assertEquals("Fries", people.get(1).get("lastname"));
+        assertEquals("NLD", people.get(1).get("country"));
+    }
+
+    @Test
+    public void test_19_programmatic_skip_unused_fields() throws Exception {
+        Smooks smooks = new Smooks();
+
+        // The lastname isn't an int, so decoding it fails when it's not skipped...
+        smooks.setFilterSettings(FilterSettings.newSaxNgSettings().setDefaultSerializationOn(false));
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("firstname[10]?trim,lastname[10]:int,$ignore$[2],gender[1],age[3]:int,country[3]")
+                .setSkipUnusedFields(true));
+
+        List<String> values = new ArrayList<>();
+        smooks.addVisitor(new TextCollector(values), "record/gender");
+        smooks.addVisitor(new TextCollector(values), "age");
+
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")));
+
+        assertEquals(Arrays.asList("M", "26", "F", "22"), values);
+    }
+
+    @Test
+    public void test_19_programmatic_skip_unused_fields_binding() throws Exception {
+        for (boolean fieldsAsAttributes : new boolean[]{false, true}) {
+            Smooks smooks = new Smooks();
+
+            smooks.setReaderConfig(new FixedLengthReaderConfigurator("firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]")
+                    .setFieldsAsAttributes(fieldsAsAttributes)
+                    .setSkipUnusedFields(true)
+                    .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.LIST)));
+
+            JavaResult result = new JavaResult();
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), result);
+
+            // Every bound field is consumed...
+            @SuppressWarnings("unchecked")
+            List<Map<String, String>> people = (List<Map<String, String>>) result.getBean("people");
+            assertEquals(2, people.size());
+            assertEquals("Zeijen", people.get(0).get("lastname"));
+            assertEquals("M", people.get(0).get("gender"));
+            assertEquals("Sanne", people.get(1).get("firstname"));
+            assertEquals("022", people.get(1).get("age"));
+        }
+    }
+
+    @Test
+    public void test_19_programmatic_skip_unused_fields_serialized() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]")
+                .setSkipUnusedFields(true));
+
+        // The default serialization consumes all the fields...
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(),
+                new ByteArrayInputStream("Maurice   Zeijen    12M026NLD".getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<set><record><firstname>Maurice</firstname><lastname>Zeijen</lastname><gender>M</gender><age>026</age><country>NLD</country></record></set>", result);
+    }
+
+    @Test
+    public void test_20_xml_columnar_binding() throws Exception {
+        test_20_columnar_binding(new Smooks(getClass().getResourceAsStream("/smooks-config-20.xml")));
+    }
+
+    @Test
+    public void test_20_programmatic_columnar_binding() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3]:int,country[3]")
+                .setBinding(FixedLengthBinding.columnar("people")));
+
+        test_20_columnar_binding(smooks);
+    }
+
+    private void test_20_columnar_binding(Smooks smooks) {
+        JavaResult result = new JavaResult();
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), result);
+
+        FixedLengthColumns people = (FixedLengthColumns) result.getBean("people");
+        assertEquals(2, people.getRowCount());
+        assertEquals("[firstname, lastname, gender, age, country]", people.getColumnNames().toString());
+        assertEquals("Zeijen", people.getColumn("lastname", FixedLengthColumn.StringColumn.class).getString(0));
+        assertEquals("Sanne", people.getColumn("firstname").getValue(1));
+        assertArrayEquals(new int[]{26, 22}, people.getColumn("age", FixedLengthColumn.IntColumn.class).getValues());
+
+        // Both records share the country dictionary entry...
+        FixedLengthColumn.StringColumn country = people.getColumn("country", FixedLengthColumn.StringColumn.class);
+        assertArrayEquals(new int[]{0, 0}, country.getCodes());
+        assertArrayEquals(new String[]{"NLD"}, country.getDictionary());
+    }
+
+    @Test
+    public void test_21_xml_long_key_map_binding() throws Exception {
+        test_21_long_key_map_binding(new Smooks(getClass().getResourceAsStream("/smooks-config-21.xml")));
+    }
+
+    @Test
+    public void test_21_programmatic_long_key_map_binding() throws Exception {
+        for (boolean directBinding : new boolean[]{false, true}) {
+            Smooks smooks = new Smooks();
+
+            smooks.setReaderConfig(new FixedLengthReaderConfigurator("id[6],name[7]?trim")
+                    .setDirectBinding(directBinding)
+                    .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.MAP).setKeyField("id").setLongKeys(true).setInitialCapacity(1000)));
+
+            test_21_long_key_map_binding(smooks);
+        }
+    }
+
+    private void test_21_long_key_map_binding(Smooks smooks) {
+        JavaResult result = new JavaResult();
+        smooks.filterSource(new StreamSource(new ByteArrayInputStream("000042Maurice\n000007Sanne  \n000042Tom    ".getBytes(StandardCharsets.UTF_8))), result);
+
+        @SuppressWarnings("unchecked")
+        FixedLengthLongKeyMap<Map<String, String>> people = (FixedLengthLongKeyMap<Map<String, String>>) result.getBean("people");
+        assertEquals(2, people.size());
+        assertEquals("[42, 7]", people.keySet().toString());
+        assertEquals("Tom", people.get(42L).get("name"));
+        assertEquals("Sanne", people.get(7L).get("name"));
+    }
+
+    @Test
+    public void test_22_xml_pipelined() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("/smooks-config-22.xml"));
+        test_22_pipelined(smooks);
+    }
+
+    @Test
+    public void test_22_programmatic_pipelined() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "first[2],second[3],third[4]")
+                .setSkipLines(2)
+                .setLineNumber(true)
+                .setPipelined(true));
+
+        test_22_pipelined(smooks);
+    }
+
+    private void test_22_pipelined(Smooks smooks) throws Exception {
+        String expected = "<set><record number=\"3\"><first>aa</first><second>bbb</second><third>cccc</third></record><record number=\"4\"><first>dd</first><second>eee</second><third>ffff</third></record></set>";
+
+        // A byte stream is decoded by the pipeline, a character stream is only framed...
+        assertEquals(expected, SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/input-message-02.txt"), smooks));
+
+        StringResult result = new StringResult();
+        smooks.filterSource(new StreamSource(new StringReader(new String(Files.readAllBytes(new File(getClass().getResource("/input-message-02.txt").toURI()).toPath()), StandardCharsets.UTF_8))), result);
+        assertEquals(expected, result.getResult());
+    }
+
+    @Test
+    public void test_22_programmatic_pipelined_direct_binding() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            input.append(String.format("%06d%-7s", i, "n" + (i % 100))).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("id[6]?trim,name[7]?trim")
+                .setDirectBinding(true)
+                .setPipelined(true)
+                .setPipelineDepth(2)
+                .setBinding(new FixedLengthBinding("people", HashMap.class, FixedLengthBindingType.LIST)));
+
+        JavaResult result = new JavaResult();
+        smooks.filterSource(new StreamSource(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))), result);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> people = (List<Map<String, String>>) result.getBean("people");
+        assertEquals(20000, people.size());
+        for (int i = 0; i < people.size(); i++) {
+            assertEquals(String.format("%06d", i), people.get(i).get("id"));
+            assertEquals("n" + (i % 100), people.get(i).get("name"));
+        }
+    }
+
+    @Test(expected = SmooksConfigException.class)
+    public void test_22_programmatic_pipelined_parallel() {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator("first[2],second[3],third[4]")
+                .setPipelined(true)
+                .setParallelism(2));
+
+        smooks.filterSource(new StreamSource(new StringReader("aabbbcccc")));
+    }
+
+    @Test
+    public void test_23_xml_compiled_layout() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("/smooks-config-23.xml"));
+        test_14(smooks);
+    }
+
+    @Test
+    public void test_23_programmatic_compiled_layout() throws Exception {
+        String input = "Maurice   Zeijen    XXM026NLD\nSanne     Fries     XXF02\n\nTom       Fries     XXM003NLD   \n";
+
+        for (boolean indent : new boolean[]{false, true}) {
+            for (boolean strict : new boolean[]{false, true}) {
+                String expected = filterCompiledLayout(input, indent, strict, false);
+
+                assertEquals(expected, filterCompiledLayout(input, indent, strict, true));
+                assertEquals(!strict, expected.contains("truncated=\"true\""));
+            }
+        }
+    }
+
+    private String filterCompiledLayout(String input, boolean indent, boolean strict, boolean compiledLayout) {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "firstname[10]?trim.upper_case,lastname[10]?trim,$ignore$[2],gender[1],age[3]:int,country[3]")
+                .setIndent(indent)
+                .setStrict(strict)
+                .setLineNumber(true)
+                .setCompiledLayout(compiledLayout));
+
+        return SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), smooks);
+    }
+
+    private JavaResult filterDirect(FixedLengthBindingType bindingType, String keyField) {
+        Smooks smooks = new Smooks();
+
+        smooks.setReaderConfig(new FixedLengthReaderConfigurator(
+                "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]")
+                .setDirectBinding(true)
+                .setBinding(new FixedLengthBinding("people", Person.class, bindingType).setKeyField(keyField)));
+
+        JavaResult result = new JavaResult();
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("/input-message-01.txt")), result);
+
+        return result;
+    }
+
+    private void assertPeople(Person maurice, Person sanne) {
+        assertEquals("Maurice", maurice.getFirstname());
+        assertEquals("Zeijen", maurice.getLastname());
+        assertEquals(Person.Gender.M, maurice.getGender());
+        assertEquals(26, maurice.getAge());
+        assertEquals("NLD", maurice.getCountry());
+
+        assertEquals("Sanne", sanne.getFirstname());
+        assertEquals("Fries", sanne.getLastname());
+        assertEquals(Person.Gender.F, sanne.getGender());
+        assertEquals(22, sanne.getAge());
+        assertEquals("NLD", sanne.getCountry());
+    }
+
+    public static class NoDefaultConstructorMetricsListener implements FixedLengthMetricsListener {
+
+        public NoDefaultConstructorMetricsListener(String name) {
+        }
+
+        @Override
+        public void onParsed(FixedLengthMetrics metrics) {
+        }
+    }
+
+    private static class TextCollector implements AfterVisitor, ChildrenVisitor {
+
+        private final List<String> values;
+
+        private TextCollector(List<String> values) {
+            this.values = values;
+        }
+
+        @Override
+        public void visitChildText(CharacterData characterData, ExecutionContext executionContext) {
+            values.add(characterData.getData());
+        }
+
+        @Override
+        public void visitChildElement(Element childElement, ExecutionContext executionContext) {
+        }
+
+        @Override
+        public void visitAfter(Element element, ExecutionContext executionContext) {
+        }
+    }
 }
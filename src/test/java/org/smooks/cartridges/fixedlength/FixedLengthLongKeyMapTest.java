@@ -0,0 +1,153 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FixedLengthLongKeyMapTest {
+
+    @Test
+    public void test_put_get_remove() {
+        FixedLengthLongKeyMap<String> map = new FixedLengthLongKeyMap<>();
+
+        assertNull(map.put(42L, "a"));
+        assertNull(map.put(-1L, "b"));
+        assertNull(map.put(Long.MIN_VALUE, "c"));
+        assertEquals("a", map.put(42L, "A"));
+
+        assertEquals(3, map.size());
+        assertEquals("A", map.get(42L));
+        assertEquals("A", map.get((Object) 42L));
+        assertNull(map.get((Object) 42));
+        assertTrue(map.containsKey(Long.MIN_VALUE));
+        assertFalse(map.containsKey(7L));
+
+        assertEquals("b", map.remove(-1L));
+        assertNull(map.remove(-1L));
+        assertEquals("{42=A, " + Long.MIN_VALUE + "=c}", map.toString());
+    }
+
+    @Test
+    public void test_matches_linked_hash_map() {
+        FixedLengthLongKeyMap<Long> map = new FixedLengthLongKeyMap<>(0);
+        Map<Long, Long> expected = new LinkedHashMap<>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (Long) (long) i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+
+        List<Long> keys = new ArrayList<>();
+        map.forEachEntry((key, value) -> keys.add(key));
+        assertEquals(new ArrayList<>(expected.keySet()), keys);
+    }
+
+    @Test
+    public void test_iterator_remove() {
+        FixedLengthLongKeyMap<String> map = new FixedLengthLongKeyMap<>();
+        for (long key = 0; key < 100; key++) {
+            map.put(key, Long.toString(key));
+        }
+
+        Iterator<Map.Entry<Long, String>> entries = map.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Long, String> entry = entries.next();
+            if (entry.getKey() % 2 == 0) {
+                entries.remove();
+            } else {
+                entry.setValue("odd");
+            }
+        }
+
+        assertEquals(50, map.size());
+        assertFalse(map.containsKey(10L));
+        assertEquals("odd", map.get(11L));
+    }
+
+    @Test
+    public void test_capacity_bounds() {
+        for (int expectedSize : new int[]{-1, FixedLengthLongKeyMap.MAX_CAPACITY + 1, Integer.MAX_VALUE}) {
+            try {
+                new FixedLengthLongKeyMap<>(expectedSize);
+                fail("Expected IllegalArgumentException for " + expectedSize);
+            } catch (IllegalArgumentException e) {
+                // Expected...
+            }
+        }
+    }
+
+    @Test
+    public void test_to_key() {
+        assertEquals(42L, FixedLengthLongKeyMap.toKey(" 000042 "));
+        assertEquals(42L, FixedLengthLongKeyMap.toKey(42));
+        assertEquals(42L, FixedLengthLongKeyMap.toKey(new BigDecimal("42.00")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_to_key_invalid() {
+        FixedLengthLongKeyMap.toKey("A42");
+    }
+}
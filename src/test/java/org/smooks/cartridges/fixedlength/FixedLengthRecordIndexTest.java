@@ -0,0 +1,217 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixedLengthRecordIndexTest {
+
+    private static final String CONTENT = "r1\r\nr2\rr3\n\nr5\r\rr7\r\nr8\nr9";
+
+    @Test
+    public void test_find_offset() throws Exception {
+        File file = createFile(CONTENT);
+
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FileChannel channel = fileInputStream.getChannel();
+            for (int interval : new int[]{1, 2, 3, 100}) {
+                FixedLengthRecordIndex index = FixedLengthRecordIndex.build(channel, StandardCharsets.UTF_8, interval);
+
+                assertEquals(9, index.getRecordCount());
+                for (int record = 1; record <= 10; record++) {
+                    assertEquals("interval " + interval + ", record " + record, firstRecord(skip(CONTENT, record - 1)), firstRecordAt(channel, index.findOffset(channel, record)));
+                }
+                assertEquals(0, channel.position());
+            }
+        }
+    }
+
+    @Test
+    public void test_trailing_terminator() throws Exception {
+        File file = createFile("r1\r\nr2\r\n");
+
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FileChannel channel = fileInputStream.getChannel();
+            FixedLengthRecordIndex index = FixedLengthRecordIndex.build(channel, StandardCharsets.UTF_8, 1);
+
+            assertEquals(2, index.getRecordCount());
+            assertEquals(4, index.findOffset(channel, 2));
+            assertEquals(8, index.findOffset(channel, 3));
+        }
+    }
+
+    @Test
+    public void test_save_load() throws Exception {
+        File file = createFile(CONTENT);
+        Path indexFile = Files.createTempFile("fixed-length-", ".idx");
+        indexFile.toFile().deleteOnExit();
+
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FileChannel channel = fileInputStream.getChannel();
+            FixedLengthRecordIndex.build(channel, StandardCharsets.UTF_8, 2).save(indexFile);
+
+            FixedLengthRecordIndex index = FixedLengthRecordIndex.load(indexFile, StandardCharsets.UTF_8);
+            assertTrue(index.isCurrent(channel));
+            assertEquals(2, index.getInterval());
+            assertEquals(9, index.getRecordCount());
+            assertEquals("r7", firstRecordAt(channel, index.findOffset(channel, 7)));
+        }
+    }
+
+    @Test
+    public void test_load_or_build_rebuilds_stale_index() throws Exception {
+        File file = createFile(CONTENT);
+        Path indexFile = Files.createTempFile("fixed-length-", ".idx");
+        indexFile.toFile().deleteOnExit();
+
+        // A foreign file is replaced by a new index...
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FixedLengthRecordIndex index = FixedLengthRecordIndex.loadOrBuild(fileInputStream.getChannel(), indexFile, StandardCharsets.UTF_8, 4);
+            assertEquals(9, index.getRecordCount());
+        }
+
+        // A changed file invalidates the index...
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write("x1\nx2\nx3".getBytes(StandardCharsets.UTF_8));
+        }
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FileChannel channel = fileInputStream.getChannel();
+            assertFalse(FixedLengthRecordIndex.load(indexFile, StandardCharsets.UTF_8).isCurrent(channel));
+
+            FixedLengthRecordIndex index = FixedLengthRecordIndex.loadOrBuild(channel, indexFile, StandardCharsets.UTF_8, 4);
+            assertEquals(3, index.getRecordCount());
+            assertEquals("x3", firstRecordAt(channel, index.findOffset(channel, 3)));
+            assertTrue(FixedLengthRecordIndex.load(indexFile, StandardCharsets.UTF_8).isCurrent(channel));
+        }
+    }
+
+    @Test
+    public void test_verify_detects_same_size_edit() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 4000; i++) {
+            content.append(String.format("%04d\n", i));
+        }
+        File file = createFile(content.toString());
+        Path indexFile = Files.createTempFile("fixed-length-", ".idx");
+        indexFile.toFile().deleteOnExit();
+
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FixedLengthRecordIndex.build(fileInputStream.getChannel(), StandardCharsets.UTF_8, 1).save(indexFile);
+        }
+
+        // Move a line terminator in the middle of the file, keeping the size and the first and last 4 KB...
+        content.replace(10000, 10010, "200\n20001\n");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FileChannel channel = fileInputStream.getChannel();
+            FixedLengthRecordIndex stale = FixedLengthRecordIndex.load(indexFile, StandardCharsets.UTF_8);
+            assertTrue(stale.isCurrent(channel));
+            assertFalse(stale.verify(channel));
+            assertEquals("0001", firstRecordAt(channel, stale.findOffset(channel, 2002)));
+
+            FixedLengthRecordIndex index = FixedLengthRecordIndex.loadOrBuild(channel, indexFile, StandardCharsets.UTF_8, 1, true);
+            assertTrue(index.verify(channel));
+            assertEquals("20001", firstRecordAt(channel, index.findOffset(channel, 2002)));
+            assertTrue(FixedLengthRecordIndex.load(indexFile, StandardCharsets.UTF_8).verify(channel));
+            assertEquals(0, channel.position());
+        }
+    }
+
+    private String skip(String content, int records) throws IOException {
+        LineRecordReader recordReader = new LineRecordReader(new StringReader(content));
+        StringBuilder rest = new StringBuilder();
+        int record = 0;
+        while (recordReader.nextRecord()) {
+            if (record++ >= records) {
+                rest.append(new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength())).append('\n');
+            }
+        }
+        return rest.toString();
+    }
+
+    private String firstRecord(String rest) {
+        return (rest.isEmpty() ? null : rest.substring(0, rest.indexOf('\n')));
+    }
+
+    private String firstRecordAt(FileChannel channel, long offset) throws IOException {
+        long position = channel.position();
+        try {
+            channel.position(offset);
+            LineRecordReader recordReader = new LineRecordReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            if (!recordReader.nextRecord()) {
+                return null;
+            }
+            return new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength());
+        } finally {
+            channel.position(position);
+        }
+    }
+
+    private File createFile(String content) throws IOException {
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
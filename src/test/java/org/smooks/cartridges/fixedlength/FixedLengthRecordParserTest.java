@@ -0,0 +1,216 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.Registry;
+import org.smooks.api.SmooksConfigException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class FixedLengthRecordParserTest {
+
+    private static final String FIELDS = "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]";
+    private static final Registry REGISTRY = new Smooks().getApplicationContext().getRegistry();
+
+    @Test
+    public void test_parse() {
+        FixedLengthRecordParser<Person> recordParser = new FixedLengthRecordParser<>(FIELDS, Person.class, REGISTRY);
+        List<Person> people = new ArrayList<>();
+
+        recordParser.parse(new StringReader("Maurice   Zeijen    12M026NLD\nshort\nSanne     Fries     34F022NLD"), people::add);
+
+        assertEquals(2, people.size());
+        assertEquals("Zeijen", people.get(0).getLastname());
+        assertEquals(22, people.get(1).getAge());
+    }
+
+    @Test
+    public void test_parse_typed_fields() {
+        FixedLengthRecordParser<Person> recordParser = new FixedLengthRecordParser<>(
+                "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3]:int,country[3]", Person.class, REGISTRY);
+        List<Person> people = new ArrayList<>();
+
+        recordParser.parse(new StringReader("Maurice   Zeijen    12M02ONLD\nSanne     Fries     34F   NLD"), people::add);
+
+        assertEquals(-26, people.get(0).getAge());
+        // Blank typed fields are not bound...
+        assertEquals(0, people.get(1).getAge());
+    }
+
+    @Test
+    public void test_parse_child_class_loader_bean() throws Exception {
+        // The cartridge's class loader can't see this Person class...
+        Class<?> personClass = new ChildFirstClassLoader(Person.class).loadClass(Person.class.getName());
+        assertNotSame(Person.class, personClass);
+        assertSame(personClass, RecordBinder.lambdaLookup(personClass, personClass).lookupClass());
+
+        FixedLengthRecordParser<?> recordParser = new FixedLengthRecordParser<>(FIELDS, personClass, REGISTRY);
+        List<Object> people = new ArrayList<>();
+        recordParser.parse(new StringReader("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F022NLD"), people::add);
+
+        assertEquals(2, people.size());
+        assertEquals("Zeijen", personClass.getMethod("getLastname").invoke(people.get(0)));
+        assertEquals(22, personClass.getMethod("getAge").invoke(people.get(1)));
+    }
+
+    @Test
+    public void test_pooled_readers_shared() throws Exception {
+        new FixedLengthRecordParser<>(FIELDS, Person.class, REGISTRY).parse(new StringReader("Maurice   Zeijen    12M026NLD"), person -> {
+        });
+        int pooledReaders = FixedLengthRecordParser.getPooledReaderCount();
+
+        // Short lived parsers on short lived threads reuse the pooled readers, rather than pinning new ones...
+        for (int i = 0; i < 20; i++) {
+            Thread thread = new Thread(() -> new FixedLengthRecordParser<>(FIELDS, Person.class, REGISTRY).parse(new StringReader("Sanne     Fries     34F022NLD"), person -> {
+            }));
+            thread.start();
+            thread.join();
+        }
+
+        assertEquals(pooledReaders, FixedLengthRecordParser.getPooledReaderCount());
+    }
+
+    @Test
+    public void test_nested_parse_on_same_thread() {
+        FixedLengthRecordParser<Person> recordParser = new FixedLengthRecordParser<>(FIELDS, Person.class, REGISTRY);
+        List<String> names = new ArrayList<>();
+
+        recordParser.parse(new StringReader("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F022NLD"), outer -> {
+            names.add(outer.getFirstname());
+            recordParser.parse(new StringReader("John      Doe       56M043USA"), inner -> names.add(inner.getFirstname()));
+        });
+
+        assertEquals("[Maurice, John, Sanne, John]", names.toString());
+    }
+
+    @Test
+    public void test_concurrent_parse() throws Exception {
+        FixedLengthRecordParser<Person> recordParser = new FixedLengthRecordParser<>(FIELDS, Person.class, REGISTRY);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String firstname = "first" + i;
+                futures.add(executorService.submit(() -> {
+                    List<Person> people = new ArrayList<>();
+                    recordParser.parse(new StringReader(String.format("%-10s%-10s12M026NLD\n%-10sFries     34F022NLD", firstname, "last", firstname)), people::add);
+                    return people.get(0).getFirstname() + "," + people.get(1).getFirstname() + "," + people.size();
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals("first" + i + ",first" + i + ",2", futures.get(i).get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void test_key_extractor() {
+        FixedLengthRecordParser<Person> recordParser = new FixedLengthRecordParser<>(FIELDS, Person.class, REGISTRY);
+        Function<Person, Object> keyExtractor = recordParser.createKeyExtractor("age");
+        List<Object> keys = new ArrayList<>();
+
+        recordParser.parse(new StringReader("Maurice   Zeijen    12M026NLD"), person -> keys.add(keyExtractor.apply(person)));
+
+        assertEquals(26, keys.get(0));
+    }
+
+    @Test(expected = SmooksConfigException.class)
+    public void test_invalid_key_field() {
+        new FixedLengthRecordParser<>(FIELDS, Person.class, REGISTRY).createKeyExtractor("unknown");
+    }
+
+    /**
+     * Loads a single class itself, rather than delegating it to the parent class loader.
+     */
+    private static final class ChildFirstClassLoader extends ClassLoader {
+
+        private final Class<?> childClass;
+
+        private ChildFirstClassLoader(Class<?> childClass) {
+            super(childClass.getClassLoader());
+            this.childClass = childClass;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(childClass.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass == null) {
+                    try (InputStream classStream = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[4096];
+                        int read;
+                        while ((read = classStream.read(buffer)) != -1) {
+                            bytes.write(buffer, 0, read);
+                        }
+                        loadedClass = defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return loadedClass;
+            }
+        }
+    }
+}
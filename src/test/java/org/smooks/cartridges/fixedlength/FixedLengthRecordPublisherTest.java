@@ -0,0 +1,244 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.Registry;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FixedLengthRecordPublisherTest {
+
+    private static final Registry REGISTRY = new Smooks().getApplicationContext().getRegistry();
+    private static final FixedLengthRecordParser<HashMap> RECORD_PARSER = new FixedLengthRecordParser<>("id[5]", HashMap.class, REGISTRY);
+
+    @Test
+    public void test_backpressure() {
+        CloseTrackingReader reader = new CloseTrackingReader(records(10));
+        RecordingSubscriber subscriber = new RecordingSubscriber((subscription, count) -> {
+        });
+
+        RECORD_PARSER.publisher(reader).subscribe(subscriber);
+        assertEquals(0, subscriber.records.size());
+
+        subscriber.subscription.request(3);
+        assertEquals("[00000, 00001, 00002]", subscriber.records.toString());
+        assertFalse(reader.closed);
+
+        subscriber.subscription.request(100);
+        assertEquals(10, subscriber.records.size());
+        assertTrue(subscriber.completed);
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void test_cancel() {
+        CloseTrackingReader reader = new CloseTrackingReader(records(10));
+        RecordingSubscriber subscriber = new RecordingSubscriber((subscription, count) -> {
+            if (count == 2) {
+                subscription.cancel();
+            }
+        });
+
+        RECORD_PARSER.publisher(reader).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(2, subscriber.records.size());
+        assertFalse(subscriber.completed);
+        assertNull(subscriber.error);
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void test_reentrant_requests() {
+        // Requesting one record per delivered record mustn't recurse...
+        RecordingSubscriber subscriber = new RecordingSubscriber((subscription, count) -> subscription.request(1));
+
+        RECORD_PARSER.publisher(new StringReader(records(100000))).subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        assertEquals(100000, subscriber.records.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void test_empty_stream() {
+        RecordingSubscriber subscriber = new RecordingSubscriber((subscription, count) -> {
+        });
+
+        RECORD_PARSER.publisher(new StringReader("")).subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void test_invalid_request() {
+        CloseTrackingReader reader = new CloseTrackingReader(records(10));
+        RecordingSubscriber subscriber = new RecordingSubscriber((subscription, count) -> {
+        });
+
+        RECORD_PARSER.publisher(reader).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void test_single_subscriber() {
+        FixedLengthRecordPublisher<HashMap> publisher = RECORD_PARSER.publisher(new StringReader(records(10)));
+        RecordingSubscriber first = new RecordingSubscriber((subscription, count) -> {
+        });
+        RecordingSubscriber second = new RecordingSubscriber((subscription, count) -> {
+        });
+
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+
+        assertNull(first.error);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void test_executor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch completed = new CountDownLatch(1);
+            List<String> threads = new ArrayList<>();
+            RecordingSubscriber subscriber = new RecordingSubscriber((subscription, count) -> {
+                threads.add(Thread.currentThread().getName());
+                if (count % 10 == 0) {
+                    subscription.request(10);
+                }
+            }) {
+                @Override
+                public void onComplete() {
+                    super.onComplete();
+                    completed.countDown();
+                }
+            };
+
+            RECORD_PARSER.publisher(new StringReader(records(1000)), executor).subscribe(subscriber);
+            subscriber.subscription.request(10);
+
+            assertTrue(completed.await(10, TimeUnit.SECONDS));
+            assertEquals(1000, subscriber.records.size());
+            assertFalse(threads.contains(Thread.currentThread().getName()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String records(int count) {
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            records.append(String.format("%05d", i)).append('\n');
+        }
+        return records.toString();
+    }
+
+    private static class RecordingSubscriber implements FixedLengthRecordPublisher.Subscriber<HashMap> {
+
+        private final BiConsumer<FixedLengthRecordPublisher.Subscription, Integer> onRecord;
+        private final List<Object> records = new ArrayList<>();
+        private FixedLengthRecordPublisher.Subscription subscription;
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        private RecordingSubscriber(BiConsumer<FixedLengthRecordPublisher.Subscription, Integer> onRecord) {
+            this.onRecord = onRecord;
+        }
+
+        @Override
+        public void onSubscribe(FixedLengthRecordPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(HashMap record) {
+            records.add(((Map<?, ?>) record).get("id"));
+            onRecord.accept(subscription, records.size());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static class CloseTrackingReader extends StringReader {
+
+        private boolean closed;
+
+        private CloseTrackingReader(String s) {
+            super(s);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+}
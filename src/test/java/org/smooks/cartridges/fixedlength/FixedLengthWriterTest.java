@@ -0,0 +1,156 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FixedLengthWriterTest {
+
+    private static final String FIELDS = "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]";
+
+    @Test
+    public void test_bean_round_trip() throws Exception {
+        StringWriter output = new StringWriter();
+        try (FixedLengthWriter<Person> writer = new FixedLengthWriter<>(FIELDS, Person.class, output)) {
+            writer.write(person("Maurice", "Zeijen", Person.Gender.M, 26));
+            writer.write(person("Sanne", "Fries", Person.Gender.F, 22));
+        }
+        assertEquals("Maurice   Zeijen      M26 NLD\nSanne     Fries       F22 NLD\n", output.toString());
+
+        FixedLengthRecordParser<Person> parser = new FixedLengthRecordParser<>(FIELDS, Person.class, new Smooks().getApplicationContext().getRegistry());
+        List<Person> people = new ArrayList<>();
+        parser.parse(new StringReader(output.toString()), people::add);
+        assertEquals(2, people.size());
+        assertEquals("Sanne", people.get(1).getFirstname());
+        assertEquals(Person.Gender.F, people.get(1).getGender());
+        assertEquals(22, people.get(1).getAge());
+    }
+
+    @Test
+    public void test_map_typed_fields() throws Exception {
+        Map<String, Object> record = new HashMap<>();
+        record.put("id", 42);
+        record.put("amount", new BigDecimal("-123.4"));
+        record.put("date", LocalDate.of(2024, 1, 31));
+        record.put("code", "abcdefgh");
+
+        StringWriter output = new StringWriter();
+        try (FixedLengthWriter<Map> writer = new FixedLengthWriter<>("id[6]:int,amount[10]:decimal(2),date[10]:date(yyyy-MM-dd),code[4]?upper_case,blank[3]:long", Map.class, output)) {
+            writer.setRecordSeparator("");
+            writer.write(record);
+            record.put("id", "7");
+            record.put("amount", 12L);
+            record.put("date", null);
+            record.put("code", null);
+            record.put("blank", -5);
+            writer.write(record);
+        }
+        assertEquals("000042-000012340" + "2024-01-31ABCD   " + "0000070000001200" + "              -05", output.toString());
+
+        // The encoded values decode to the written values...
+        FieldType amount = FieldType.parse("decimal(2)");
+        assertEquals(new BigDecimal("-123.40"), amount.decode("-000012340".toCharArray(), 0, 10));
+    }
+
+    @Test
+    public void test_typed_value_does_not_fit() {
+        Map<String, Object> record = new HashMap<>();
+        FixedLengthWriter<Map> writer = new FixedLengthWriter<>("id[3]:int,amount[6]:decimal(2)", Map.class, new StringWriter());
+
+        for (Object[] invalid : new Object[][]{{1000, null}, {-100, null}, {1, new BigDecimal("1.234")}, {1, "x"}, {1, new Object()}}) {
+            record.put("id", invalid[0]);
+            record.put("amount", invalid[1]);
+            try {
+                writer.write(record);
+                fail("Expected SmooksException for " + Arrays.toString(invalid));
+            } catch (SmooksException e) {
+                // Expected...
+            }
+        }
+    }
+
+    @Test
+    public void test_output_stream_blocks() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Map<String, Object> record = new LinkedHashMap<>();
+        StringBuilder expected = new StringBuilder();
+
+        try (FixedLengthWriter<Map> writer = new FixedLengthWriter<>("id[8]:long,name[5]", Map.class, output, StandardCharsets.UTF_8).setRecordSeparator("\r\n")) {
+            for (int i = 0; i < 20000; i++) {
+                record.put("id", (long) i);
+                record.put("name", "é" + (i % 10));
+                writer.write(record);
+                expected.append(String.format("%08d%-5s\r\n", i, "é" + (i % 10)));
+            }
+        }
+        assertEquals(expected.toString(), new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private Person person(String firstname, String lastname, Person.Gender gender, int age) {
+        Person person = new Person();
+        person.setFirstname(firstname);
+        person.setLastname(lastname);
+        person.setGender(gender);
+        person.setAge(age);
+        person.setCountry("NLD");
+        return person;
+    }
+}
@@ -0,0 +1,95 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FixedRecordReaderTest {
+
+    @Test
+    public void test_records() throws Exception {
+        assertEquals("[aabbb, ccddd, ee]", readRecords(new StringReader("aabbbccdddee"), 5).toString());
+        assertEquals("[aabbb, ccddd]", readRecords(new StringReader("aabbbccddd"), 5).toString());
+        assertEquals("[]", readRecords(new StringReader(""), 5).toString());
+    }
+
+    @Test
+    public void test_short_reads() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append(String.format("%07d", i));
+        }
+        // Deliver at most 3 characters per read, so records are assembled from several reads...
+        Reader trickle = new StringReader(content.toString()) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+
+        List<String> records = readRecords(trickle, 7);
+        assertEquals(5000, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(String.format("%07d", i), records.get(i));
+        }
+    }
+
+    private List<String> readRecords(Reader reader, int recordLength) throws IOException {
+        List<String> records = new ArrayList<>();
+        FixedRecordReader recordReader = new FixedRecordReader(reader, recordLength);
+
+        while (recordReader.nextRecord()) {
+            records.add(new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+        }
+
+        return records;
+    }
+}
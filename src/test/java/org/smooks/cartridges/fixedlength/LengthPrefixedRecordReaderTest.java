@@ -0,0 +1,125 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.api.SmooksException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LengthPrefixedRecordReaderTest {
+
+    private static final Charset EBCDIC = Charset.forName("Cp037");
+
+    @Test
+    public void test_records() throws Exception {
+        byte[] content = rdw(EBCDIC, "HEADER", "", "detail 1", "trailer");
+
+        assertEquals("[HEADER, , detail 1, trailer]", readRecords(content, EBCDIC).toString());
+    }
+
+    @Test
+    public void test_multi_byte_encoding() throws Exception {
+        byte[] content = rdw(StandardCharsets.UTF_8, "café", "über");
+
+        assertEquals("[café, über]", readRecords(content, StandardCharsets.UTF_8).toString());
+    }
+
+    @Test
+    public void test_large_record() throws Exception {
+        char[] large = new char[65000];
+        Arrays.fill(large, 'x');
+        byte[] content = rdw(StandardCharsets.ISO_8859_1, "a", new String(large), "b");
+
+        List<String> records = readRecords(content, StandardCharsets.ISO_8859_1);
+        assertEquals(3, records.size());
+        assertEquals(large.length, records.get(1).length());
+        assertEquals("b", records.get(2));
+    }
+
+    @Test(expected = SmooksException.class)
+    public void test_truncated_record() throws Exception {
+        byte[] content = rdw(StandardCharsets.ISO_8859_1, "abcdef");
+
+        readRecords(Arrays.copyOf(content, content.length - 1), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test(expected = SmooksException.class)
+    public void test_invalid_rdw() throws Exception {
+        readRecords(new byte[]{0, 2, 0, 0}, StandardCharsets.ISO_8859_1);
+    }
+
+    static byte[] rdw(Charset encoding, String... records) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (String record : records) {
+            byte[] bytes = record.getBytes(encoding);
+            int length = bytes.length + LengthPrefixedRecordReader.RDW_LENGTH;
+            content.write(length >> 8);
+            content.write(length);
+            content.write(0);
+            content.write(0);
+            content.write(bytes);
+        }
+        return content.toByteArray();
+    }
+
+    private List<String> readRecords(byte[] content, Charset encoding) throws IOException {
+        List<String> records = new ArrayList<>();
+        LengthPrefixedRecordReader recordReader = new LengthPrefixedRecordReader(new ByteArrayInputStream(content), encoding);
+
+        while (recordReader.nextRecord()) {
+            records.add(new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+        }
+
+        return records;
+    }
+}
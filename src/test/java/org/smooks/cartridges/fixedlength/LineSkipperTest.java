@@ -0,0 +1,118 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineSkipperTest {
+
+    private static final String CONTENT = "r1\r\nr2\rr3\n\nr5\r\rr7\r\nr8\nr9";
+    private static final String[] RESTS = {CONTENT, "r2\rr3\n\nr5\r\rr7\r\nr8\nr9", "r3\n\nr5\r\rr7\r\nr8\nr9", "\nr5\r\rr7\r\nr8\nr9",
+            "r5\r\rr7\r\nr8\nr9", "\rr7\r\nr8\nr9", "r7\r\nr8\nr9", "r8\nr9", "r9", "", ""};
+
+    @Test
+    public void test_skip_channel() throws Exception {
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            FileChannel channel = fileInputStream.getChannel();
+            for (int count = 0; count < RESTS.length; count++) {
+                long position = LineSkipper.skip(channel, 0, channel.size(), count, (byte) '\n', (byte) '\r');
+                assertEquals(RESTS[count], CONTENT.substring((int) position));
+            }
+        }
+    }
+
+    @Test
+    public void test_skip_stream() throws Exception {
+        for (int count = 0; count < RESTS.length; count++) {
+            PushbackInputStream stream = new PushbackInputStream(new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)), LineSkipper.SCAN_WINDOW_SIZE);
+
+            assertEquals(Math.min(count, 9), LineSkipper.skip(stream, count, (byte) '\n', (byte) '\r'));
+            assertEquals(RESTS[count], readFully(stream));
+        }
+    }
+
+    @Test
+    public void test_skip_stream_crlf_across_reads() throws Exception {
+        // Deliver one byte per read, so the "\r\n" terminator is split over two reads...
+        InputStream trickle = new ByteArrayInputStream("a\r\nb\r\nc".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        PushbackInputStream stream = new PushbackInputStream(trickle, LineSkipper.SCAN_WINDOW_SIZE);
+
+        assertEquals(2, LineSkipper.skip(stream, 2, (byte) '\n', (byte) '\r'));
+        assertEquals("c", readFully(stream));
+    }
+
+    private String readFully(InputStream stream) throws IOException {
+        byte[] bytes = new byte[1024];
+        int length = 0;
+        int read;
+        while ((read = stream.read(bytes, length, bytes.length - length)) > 0) {
+            length += read;
+        }
+        return new String(Arrays.copyOf(bytes, length), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.api.SmooksConfigException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedRecordReaderTest {
+
+    @Test
+    public void test_records_span_regions() throws Exception {
+        File file = createFile("aabbbcccc\r\nddeeeffff\rgg\n\nhhiiijjjjkkkllll");
+
+        // Use regions smaller than the records so records are remapped and the region grows...
+        assertEquals(readRecords(file, 4), readRecords(file, 1024));
+        assertEquals("[aabbbcccc, ddeeeffff, gg, , hhiiijjjjkkkllll]", readRecords(file, 4).toString());
+        assertEquals("[aabbbcccc, ddeeeffff, gg, , hhiiijjjjkkkllll]", readRecords(file, 11).toString());
+    }
+
+    @Test
+    public void test_partial_decode() throws Exception {
+        File file = createFile("aabbbcccc\n");
+
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            MappedRecordReader recordReader = new MappedRecordReader(fileInputStream.getChannel(), StandardCharsets.ISO_8859_1);
+
+            recordReader.nextRecord();
+            recordReader.decode(2, 3);
+            assertEquals("bbb", new String(recordReader.getBuffer(), recordReader.getRecordOffset() + 2, 3));
+        }
+    }
+
+    @Test(expected = SmooksConfigException.class)
+    public void test_multi_byte_encoding() {
+        MappedRecordReader.assertSingleByteEncoding(StandardCharsets.UTF_8);
+    }
+
+    private List<String> readRecords(File file, int regionSize) throws IOException {
+        List<String> records = new ArrayList<>();
+
+        try (FileInputStream fileInputStream = new FileInputStream(file)) {
+            MappedRecordReader recordReader = new MappedRecordReader(fileInputStream.getChannel(), StandardCharsets.ISO_8859_1, regionSize);
+            while (recordReader.nextRecord()) {
+                recordReader.decode(0, recordReader.getRecordLength());
+                records.add(new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+            }
+        }
+
+        return records;
+    }
+
+    private File createFile(String content) throws IOException {
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,271 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.ChildrenVisitor;
+import org.smooks.io.payload.JavaResult;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelRecordReaderTest {
+
+    private static final String CONTENT = "aabbbcccc\r\nddeeeffff\rgg\n\nhhiiijéjjjkkkllll\r\n\r\nmm\nnnooo";
+
+    @Test
+    public void test_chunks_are_record_aligned() throws Exception {
+        File file = createFile(CONTENT);
+
+        for (int chunkSize = 1; chunkSize < CONTENT.length() + 2; chunkSize++) {
+            try (FileInputStream fileInputStream = new FileInputStream(file)) {
+                List<FileChunk> chunks = FileChunk.split(fileInputStream.getChannel(), StandardCharsets.UTF_8, chunkSize);
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                long position = 0;
+                for (FileChunk chunk : chunks) {
+                    assertEquals(position, chunk.getPosition());
+                    position += chunk.getLength();
+                    try (InputStream chunkStream = chunk.openStream(fileInputStream.getChannel())) {
+                        int b;
+                        while ((b = chunkStream.read()) != -1) {
+                            bytes.write(b);
+                        }
+                    }
+                }
+                assertEquals(file.length(), position);
+                assertEquals(CONTENT, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void test_chunk_line_counts() throws Exception {
+        File file = createFile(CONTENT);
+        int lines = readRecords(new LineRecordReader(new StringReader(CONTENT))).size();
+
+        for (int chunkSize = 1; chunkSize < CONTENT.length() + 2; chunkSize++) {
+            try (FileInputStream fileInputStream = new FileInputStream(file)) {
+                long count = 0;
+                for (FileChunk chunk : FileChunk.split(fileInputStream.getChannel(), StandardCharsets.UTF_8, chunkSize)) {
+                    count += LineSkipper.count(fileInputStream.getChannel(), chunk.getPosition(), chunk.getPosition() + chunk.getLength(), (byte) '\n', (byte) '\r');
+                }
+                assertEquals("chunkSize " + chunkSize, lines, count);
+            }
+        }
+    }
+
+    @Test
+    public void test_records_in_order() throws Exception {
+        File file = createFile(CONTENT);
+        List<String> expected = readRecords(new LineRecordReader(new StringReader(CONTENT)));
+
+        for (int chunkSize = 1; chunkSize < CONTENT.length() + 2; chunkSize++) {
+            try (FileInputStream fileInputStream = new FileInputStream(file)) {
+                ParallelRecordReader recordReader = new ParallelRecordReader(fileInputStream.getChannel(), StandardCharsets.UTF_8, 3, chunkSize);
+                try {
+                    assertEquals("chunkSize " + chunkSize, expected, readRecords(recordReader));
+                } finally {
+                    recordReader.close();
+                }
+            }
+        }
+        assertTrue(expected.contains("hhiiijéjjjkkkllll"));
+    }
+
+    @Test(expected = SmooksConfigException.class)
+    public void test_unsplittable_encoding() {
+        FileChunk.assertSplittableEncoding(StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void test_shared_pools() {
+        assertSame(ParallelRecordReader.getPool(3), ParallelRecordReader.getPool(3));
+        assertSame(ForkJoinPool.commonPool(), ParallelRecordReader.getPool(ForkJoinPool.getCommonPoolParallelism()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_file_filter_encoding() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append(String.format("%-10s%05dé\n", "name" + i, i));
+        }
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        FixedLengthReaderConfigurator readerConfigurator = new FixedLengthReaderConfigurator("name[10]?trim,id[5],accent[1]")
+                .setEncoding(StandardCharsets.ISO_8859_1)
+                .setDirectBinding(true)
+                .setBinding(new FixedLengthBinding("records", HashMap.class, FixedLengthBindingType.LIST));
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(readerConfigurator);
+
+        List<JavaResult> javaResults = new ParallelFileFilter(smooks, readerConfigurator, 4).filter(file);
+
+        List<Map<String, String>> records = new ArrayList<>();
+        for (JavaResult javaResult : javaResults) {
+            records.addAll((List<Map<String, String>>) javaResult.getBean("records"));
+        }
+        assertTrue(javaResults.size() > 1);
+        assertEquals(10000, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("name" + i, records.get(i).get("name"));
+            assertEquals("é", records.get(i).get("accent"));
+        }
+    }
+
+    @Test
+    public void test_file_filter_line_numbers() throws Exception {
+        StringBuilder content = new StringBuilder("HEADER\nskipped\n\n");
+        for (int line = 4; line <= 30000; line++) {
+            // Lines of different widths...
+            content.append(String.format("%06d", line)).append("          ", 0, line % 11).append(line % 3 == 0 ? "\r\n" : "\n");
+        }
+        File file = createFile(content.toString());
+
+        FixedLengthReaderConfigurator readerConfigurator = new FixedLengthReaderConfigurator("id[6]")
+                .setSkipLines(3)
+                .setLastRecord(25000)
+                .setLineNumber(true);
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(readerConfigurator);
+        List<String> numberedIds = Collections.synchronizedList(new ArrayList<>());
+        smooks.addVisitor(new NumberedTextCollector(numberedIds), "record/id");
+
+        List<JavaResult> javaResults = new ParallelFileFilter(smooks, readerConfigurator, 4).filter(file);
+
+        assertTrue(javaResults.size() > 1);
+        assertEquals(25000 - 3, numberedIds.size());
+        // Every record has its line number in the file, the skipped lines and the lines after lastRecord excluded...
+        Set<Long> numbers = new HashSet<>();
+        for (String numberedId : numberedIds) {
+            String[] numberAndId = numberedId.split("=");
+            assertEquals(numberedId, Long.parseLong(numberAndId[0]), Long.parseLong(numberAndId[1]));
+            numbers.add(Long.parseLong(numberAndId[0]));
+        }
+        assertEquals(25000 - 3, numbers.size());
+        assertEquals(4L, (long) Collections.min(numbers));
+        assertEquals(25000L, (long) Collections.max(numbers));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_file_filter_unsplittable_framing() {
+        FixedLengthReaderConfigurator readerConfigurator = new FixedLengthReaderConfigurator("name[10]").setFraming(FixedLengthRecordFraming.FIXED);
+        new ParallelFileFilter(new Smooks(), readerConfigurator, 2);
+    }
+
+    @Test(expected = SmooksConfigException.class)
+    public void test_file_filter_unsplittable_encoding() {
+        FixedLengthReaderConfigurator readerConfigurator = new FixedLengthReaderConfigurator("name[10]").setEncoding(StandardCharsets.UTF_16);
+        new ParallelFileFilter(new Smooks(), readerConfigurator, 2);
+    }
+
+    private static class NumberedTextCollector implements AfterVisitor, ChildrenVisitor {
+
+        private final List<String> values;
+
+        private NumberedTextCollector(List<String> values) {
+            this.values = values;
+        }
+
+        @Override
+        public void visitChildText(CharacterData characterData, ExecutionContext executionContext) {
+            Element record = (Element) characterData.getParentNode().getParentNode();
+            values.add(record.getAttribute("number") + "=" + characterData.getData());
+        }
+
+        @Override
+        public void visitChildElement(Element childElement, ExecutionContext executionContext) {
+        }
+
+        @Override
+        public void visitAfter(Element element, ExecutionContext executionContext) {
+        }
+    }
+
+    private List<String> readRecords(RecordReader recordReader) throws IOException {
+        List<String> records = new ArrayList<>();
+        while (recordReader.nextRecord()) {
+            records.add(new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+        }
+        return records;
+    }
+
+    private File createFile(String content) throws IOException {
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
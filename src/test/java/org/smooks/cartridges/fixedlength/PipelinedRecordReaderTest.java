@@ -0,0 +1,212 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedRecordReaderTest {
+
+    private static final String CONTENT = "aabbbcccc\r\nddeeeffff\rgg\n\nhhiiijéjjjkkkllll\r\n\r\nmm\nnnooo";
+
+    @Test
+    public void test_line_records_in_order() throws Exception {
+        List<String> expected = readRecords(new LineRecordReader(new StringReader(CONTENT)));
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+
+        for (int blockSize = 1; blockSize < bytes.length + 2; blockSize++) {
+            for (int depth = 1; depth < 3; depth++) {
+                assertEquals("blockSize " + blockSize, expected, readRecords(new PipelinedRecordReader(new ByteArrayInputStream(bytes), null, StandardCharsets.UTF_8, FixedLengthRecordFraming.LINE, 0, depth, blockSize)));
+                assertEquals("blockSize " + blockSize, expected, readRecords(new PipelinedRecordReader(null, new StringReader(CONTENT), StandardCharsets.UTF_8, FixedLengthRecordFraming.LINE, 0, depth, blockSize)));
+            }
+        }
+        assertTrue(expected.contains("hhiiijéjjjkkkllll"));
+    }
+
+    @Test
+    public void test_fixed_records_in_order() throws Exception {
+        String content = "aabbbéccccddeeeffffgg";
+        List<String> expected = readRecords(new FixedRecordReader(new StringReader(content), 9));
+
+        for (int blockSize = 1; blockSize < content.length() + 4; blockSize++) {
+            assertEquals("blockSize " + blockSize, expected, readRecords(new PipelinedRecordReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), null, StandardCharsets.UTF_8, FixedLengthRecordFraming.FIXED, 9, 2, blockSize)));
+        }
+        assertEquals("[aabbbéccc, cddeeefff, fgg]", expected.toString());
+    }
+
+    @Test
+    public void test_empty_stream() throws Exception {
+        PipelinedRecordReader recordReader = new PipelinedRecordReader(new ByteArrayInputStream(new byte[0]), null, StandardCharsets.UTF_8, FixedLengthRecordFraming.LINE, 0, 2);
+
+        assertFalse(recordReader.nextRecord());
+        assertFalse(recordReader.nextRecord());
+    }
+
+    @Test
+    public void test_failure_after_preceding_records() throws Exception {
+        InputStream failingStream = new InputStream() {
+            private final InputStream records = new ByteArrayInputStream("aa\nbb\n".getBytes(StandardCharsets.UTF_8));
+
+            @Override
+            public int read() throws IOException {
+                int b = records.read();
+                if (b == -1) {
+                    throw new IOException("Disk on fire");
+                }
+                return b;
+            }
+        };
+        PipelinedRecordReader recordReader = new PipelinedRecordReader(failingStream, null, StandardCharsets.UTF_8, FixedLengthRecordFraming.LINE, 0, 2, 3);
+
+        List<String> records = new ArrayList<>();
+        try {
+            while (recordReader.nextRecord()) {
+                records.add(new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+            }
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertEquals("Disk on fire", e.getMessage());
+        }
+        assertEquals("[aa, bb]", records.toString());
+    }
+
+    @Test
+    public void test_close_before_end() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append("record").append(i).append('\n');
+        }
+        PipelinedRecordReader recordReader = new PipelinedRecordReader(null, new StringReader(content.toString()), StandardCharsets.UTF_8, FixedLengthRecordFraming.LINE, 0, 1, 16);
+
+        assertTrue(recordReader.nextRecord());
+        assertEquals("record0", new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+        recordReader.close();
+    }
+
+    @Test
+    public void test_close_stops_blocked_reader_stage() throws Exception {
+        CountDownLatch closed = new CountDownLatch(1);
+        CountDownLatch returned = new CountDownLatch(1);
+        InputStream blockingStream = new InputStream() {
+            private boolean first = true;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (first) {
+                    first = false;
+                    b[off] = 'a';
+                    b[off + 1] = '\n';
+                    return 2;
+                }
+                // Block until the stream is closed, ignoring interrupts like a blocking socket read...
+                while (closed.getCount() > 0) {
+                    try {
+                        closed.await();
+                    } catch (InterruptedException e) {
+                        // Keep blocking...
+                    }
+                }
+                returned.countDown();
+                throw new IOException("Stream closed");
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        PipelinedRecordReader recordReader = new PipelinedRecordReader(blockingStream, null, StandardCharsets.UTF_8, FixedLengthRecordFraming.LINE, 0, 1, 2);
+
+        assertTrue(recordReader.nextRecord());
+        assertEquals("a", new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+        recordReader.close();
+
+        assertEquals(0, closed.getCount());
+        assertEquals(0, returned.getCount());
+    }
+
+    @Test
+    public void test_close_after_end_leaves_stream_open() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream stream = new ByteArrayInputStream("aa\nbb".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        assertEquals("[aa, bb]", readRecords(new PipelinedRecordReader(stream, null, StandardCharsets.UTF_8, FixedLengthRecordFraming.LINE, 0, 1)).toString());
+        assertFalse(closed.get());
+    }
+
+    private List<String> readRecords(RecordReader recordReader) throws IOException {
+        List<String> records = new ArrayList<>();
+        try {
+            while (recordReader.nextRecord()) {
+                records.add(new String(recordReader.getBuffer(), recordReader.getRecordOffset(), recordReader.getRecordLength()));
+            }
+        } finally {
+            recordReader.close();
+        }
+        return records;
+    }
+}
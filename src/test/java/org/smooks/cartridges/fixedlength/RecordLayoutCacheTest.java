@@ -0,0 +1,92 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.api.SmooksConfigException;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class RecordLayoutCacheTest {
+
+    @Test
+    public void test_shared_layouts() {
+        RecordLayout layout = RecordLayoutCache.getRecordLayout(new String[]{"firstname[10]?trim", " lastname[10] ", "amount[12]:decimal(2)"}, 0);
+
+        // Equivalent definitions share the layout, other options don't...
+        assertSame(layout, RecordLayoutCache.getRecordLayout("firstname[10]?trim,lastname[10],amount[12]:decimal(2)", 0));
+        assertNotSame(layout, RecordLayoutCache.getRecordLayout("firstname[10]?trim,lastname[10],amount[12]:decimal(2)", 10));
+        assertNotSame(layout, RecordLayoutCache.getRecordLayout("firstname[10]?trim,lastname[11],amount[12]:decimal(2)", 0));
+
+        // Layouts with function result caches aren't shared at all...
+        assertNotSame(RecordLayoutCache.getRecordLayout("firstname[10]?trim", 10), RecordLayoutCache.getRecordLayout("firstname[10]?trim", 10));
+
+        // And so do their compiled layouts...
+        assertSame(layout.getCompiledLayout(true, "truncated"), layout.getCompiledLayout(true, "truncated"));
+        assertNotSame(layout.getCompiledLayout(true, "truncated"), layout.getCompiledLayout(false, "truncated"));
+        assertNotSame(layout.getCompiledLayout(true, "truncated"), layout.getCompiledLayout(true, "short"));
+    }
+
+    @Test
+    public void test_shared_selectors() {
+        RecordTypeSelector selector = RecordLayoutCache.getRecordTypeSelector("H:header:type[1],date[8];T:trailer:type[1]", 0, 1, 0);
+
+        assertSame(selector, RecordLayoutCache.getRecordTypeSelector("H:header:type[1],date[8];T:trailer:type[1]", 0, 1, 0));
+        assertNotSame(selector, RecordLayoutCache.getRecordTypeSelector("H:header:type[1],date[8];T:trailer:type[1]", 1, 1, 0));
+        assertNotSame(RecordLayoutCache.getRecordTypeSelector("H:header:type[1]", 0, 1, 10), RecordLayoutCache.getRecordTypeSelector("H:header:type[1]", 0, 1, 10));
+    }
+
+    @Test
+    public void test_invalid_definitions_not_cached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                RecordLayoutCache.getRecordLayout("firstname[10]:int?trim", 0);
+                fail("Expected SmooksConfigException");
+            } catch (SmooksConfigException e) {
+                // Expected...
+            }
+        }
+    }
+}
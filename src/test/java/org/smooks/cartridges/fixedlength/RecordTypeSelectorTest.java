@@ -0,0 +1,126 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength;
+
+import org.junit.Test;
+import org.smooks.api.SmooksConfigException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RecordTypeSelectorTest {
+
+    @Test
+    public void test_fixed_discriminator() throws IOException {
+        RecordTypeSelector selector = RecordTypeSelector.parse("01:header:type[2],date[8]; 02:detail:type[2],name[10]; 99:trailer:type[2],count[4]", 3, 2, 0);
+
+        assertEquals("[header, detail, trailer, null, null]", select(selector, "ABC01\nABC02\nABC99\nABC03\nAB"));
+        assertEquals(2, selector.select(reader("xxx02")).getRecordLayout().getFields().length);
+    }
+
+    @Test
+    public void test_prefix_discriminator() throws IOException {
+        RecordTypeSelector selector = RecordTypeSelector.parse("H:header:type[1];HX:extendedHeader:type[2];T:trailer:type[1]", 0, 0, 0);
+
+        // The longest matching prefix wins...
+        assertEquals("[header, extendedHeader, trailer, null, null]", select(selector, "H01\nHX1\nT\nD\n\n"));
+    }
+
+    @Test
+    public void test_many_discriminators() throws IOException {
+        StringBuilder recordTypes = new StringBuilder();
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            recordTypes.append(String.format("%03d:type%d:code[3];", i, i));
+            records.append(String.format("%03dxyz\n", 99 - i));
+        }
+        RecordTypeSelector selector = RecordTypeSelector.parse(recordTypes.toString(), 0, 3, 0);
+
+        String selected = select(selector, records.toString());
+        assertEquals("type99", selected.substring(1, selected.indexOf(',')));
+        assertEquals("type0]", selected.substring(selected.lastIndexOf(' ') + 1));
+    }
+
+    @Test
+    public void test_invalid_definitions() {
+        assertInvalid("H:header", 0, 0);
+        assertInvalid(":header:type[1]", 0, 0);
+        assertInvalid("H::type[1]", 0, 0);
+        assertInvalid("HX:header:type[2]", 0, 1);
+        assertInvalid("H:header:type[1];H:other:type[1]", 0, 0);
+        assertInvalid(" ; ", 0, 0);
+        assertInvalid("H:header:type[1]", -1, 0);
+    }
+
+    private String select(RecordTypeSelector selector, String records) throws IOException {
+        List<String> recordElementNames = new ArrayList<>();
+        LineRecordReader recordReader = new LineRecordReader(new StringReader(records));
+
+        while (recordReader.nextRecord()) {
+            RecordTypeSelector.RecordType recordType = selector.select(recordReader);
+            recordElementNames.add(recordType != null ? recordType.getRecordElementName() : null);
+        }
+
+        return recordElementNames.toString();
+    }
+
+    private RecordReader reader(String record) throws IOException {
+        LineRecordReader recordReader = new LineRecordReader(new StringReader(record));
+        recordReader.nextRecord();
+        return recordReader;
+    }
+
+    private void assertInvalid(String recordTypes, int discriminatorOffset, int discriminatorLength) {
+        try {
+            RecordTypeSelector.parse(recordTypes, discriminatorOffset, discriminatorLength, 0);
+            fail("Expected SmooksConfigException for '" + recordTypes + "'.");
+        } catch (SmooksConfigException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-fixed-length-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.fixedlength.prog;
+
+import org.junit.Test;
+import org.smooks.cartridges.fixedlength.FixedLengthLongKeyMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixedLengthBinderTest {
+
+    private static final String FIELDS = "firstname[10]?trim,lastname[10]?trim,$ignore$[2],gender[1],age[3],country[3]";
+
+    @Test
+    public void test_list_bind() {
+        FixedLengthListBinder binder = new FixedLengthListBinder(FIELDS, HashMap.class);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> people = binder.bind(new StringReader("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F022NLD"));
+
+        assertEquals(2, people.size());
+        assertEquals("Maurice", people.get(0).get("firstname"));
+        assertEquals("Fries", people.get(1).get("lastname"));
+    }
+
+    @Test
+    public void test_parallel_list_bind() throws Exception {
+        File file = createFile(20000);
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> sequential = new FixedLengthListBinder(FIELDS, HashMap.class).bind(file);
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> parallel = new FixedLengthListBinder(FIELDS, HashMap.class).setParallelism(4).bind(file);
+
+        assertEquals(20000, parallel.size());
+        assertEquals(sequential, parallel);
+        for (int i = 0; i < parallel.size(); i++) {
+            assertEquals("first" + i, parallel.get(i).get("firstname"));
+        }
+    }
+
+    @Test
+    public void test_parallel_map_bind() throws Exception {
+        File file = createFile(20000);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, String>> sequential = new FixedLengthMapBinder(FIELDS, HashMap.class, "firstname").bind(file);
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, String>> parallel = new FixedLengthMapBinder(FIELDS, HashMap.class, "firstname").setParallelism(4).bind(file);
+
+        assertEquals(20000, parallel.size());
+        assertEquals(sequential, parallel);
+        assertEquals(sequential.keySet().toString(), parallel.keySet().toString());
+    }
+
+    @Test
+    public void test_long_key_map_bind() {
+        FixedLengthMapBinder binder = new FixedLengthMapBinder("id[6],name[7]?trim", HashMap.class, "id").setLongKeys(true).setInitialCapacity(2);
+
+        @SuppressWarnings("unchecked")
+        Map<Long, Map<String, String>> people = binder.bind(new StringReader("000042Maurice\n000007Sanne  "));
+
+        assertTrue(people instanceof FixedLengthLongKeyMap);
+        assertEquals("[42, 7]", people.keySet().toString());
+        assertEquals("Sanne", ((FixedLengthLongKeyMap<Map<String, String>>) people).get(7L).get("name"));
+    }
+
+    @Test
+    public void test_parallel_long_key_map_bind() throws Exception {
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 20000; i++) {
+                writer.write(String.format("%06d%-7s\n", 20000 - i, "name" + i));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Long, Map<String, String>> sequential = new FixedLengthMapBinder("id[6],name[7]?trim", HashMap.class, "id").setLongKeys(true).bind(file);
+        @SuppressWarnings("unchecked")
+        Map<Long, Map<String, String>> parallel = new FixedLengthMapBinder("id[6],name[7]?trim", HashMap.class, "id")
+                .setLongKeys(true).setInitialCapacity(20000).setParallelism(4).bind(file);
+
+        assertTrue(sequential instanceof FixedLengthLongKeyMap);
+        assertTrue(parallel instanceof FixedLengthLongKeyMap);
+        assertEquals(20000, parallel.size());
+        assertEquals(sequential, parallel);
+        assertEquals(sequential.keySet().toString(), parallel.keySet().toString());
+        assertEquals("name0", ((FixedLengthLongKeyMap<Map<String, String>>) parallel).get(20000L).get("name"));
+    }
+
+    @Test
+    public void test_stream() {
+        FixedLengthListBinder binder = new FixedLengthListBinder(FIELDS, HashMap.class);
+        CloseTrackingReader reader = new CloseTrackingReader("Maurice   Zeijen    12M026NLD\nshort\nSanne     Fries     34F022NLD\nJohn      Doe       56M043USA");
+
+        try (Stream<Map<String, String>> people = binder.stream(reader)) {
+            List<String> lastnames = people.filter(person -> person.get("country").equals("NLD"))
+                    .map(person -> person.get("lastname"))
+                    .collect(Collectors.toList());
+
+            assertEquals("[Zeijen, Fries]", lastnames.toString());
+        }
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void test_stream_closed_early() {
+        FixedLengthListBinder binder = new FixedLengthListBinder(FIELDS, HashMap.class);
+        CloseTrackingReader reader = new CloseTrackingReader("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F022NLD");
+
+        try (Stream<Map<String, String>> people = binder.stream(reader)) {
+            assertEquals("Maurice", people.findFirst().get().get("firstname"));
+        }
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void test_bind_consumer() throws Exception {
+        File file = createFile(20000);
+        List<String> firstnames = new ArrayList<>();
+
+        new FixedLengthListBinder(FIELDS, HashMap.class).<Map<String, String>>bind(new FileInputStream(file), person -> firstnames.add(person.get("firstname")));
+
+        assertEquals(20000, firstnames.size());
+        assertEquals("first19999", firstnames.get(19999));
+    }
+
+    @Test
+    public void test_batch_bind() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            paths.add(createFile(i + 1).toPath());
+        }
+        paths.add(Paths.get("missing-fixed-length-file.txt"));
+        FixedLengthBatchBinder batchBinder = new FixedLengthBatchBinder(new FixedLengthListBinder(FIELDS, HashMap.class))
+                .setConcurrency(8)
+                .setEncoding(StandardCharsets.UTF_8);
+
+        FixedLengthBatchBinder.BatchResult<Path> batch = batchBinder.bindPaths(paths);
+
+        assertEquals(51, batch.getSourceCount());
+        assertEquals(1, batch.getFailedSourceCount());
+        assertEquals(50 * 51 / 2, batch.getRecordCount());
+        for (int i = 0; i < 50; i++) {
+            FixedLengthBatchBinder.SourceResult<Path> result = batch.getResults().get(i);
+            List<Map<String, String>> people = result.getRecords();
+            assertEquals(paths.get(i), result.getSource());
+            assertEquals(i + 1, people.size());
+            assertEquals("first" + i, people.get(i).get("firstname"));
+        }
+        assertTrue(batch.getResults().get(50).getError() instanceof IOException);
+    }
+
+    @Test
+    public void test_batch_bind_streams() {
+        List<InputStream> streams = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            streams.add(new ByteArrayInputStream(("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F022NL" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        FixedLengthBatchBinder.BatchResult<InputStream> batch = new FixedLengthBatchBinder(new FixedLengthListBinder(FIELDS, HashMap.class)).bindStreams(streams);
+
+        assertEquals(0, batch.getFailedSourceCount());
+        assertEquals(20, batch.getRecordCount());
+        List<Map<String, String>> people = batch.getResults().get(9).getRecords();
+        assertEquals("NL9", people.get(1).get("country"));
+    }
+
+    @Test
+    public void test_batch_bind_failing_streams() {
+        List<InputStream> streams = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            byte[] bytes = ("Maurice   Zeijen    12M026NLD\nSanne     Fries     34F022N" + (i < 10 ? "0" : "") + i).getBytes(StandardCharsets.UTF_8);
+            streams.add(i % 3 == 0 ? new FailingInputStream(bytes) : new ByteArrayInputStream(bytes));
+        }
+
+        FixedLengthBatchBinder.BatchResult<InputStream> batch = new FixedLengthBatchBinder(new FixedLengthListBinder(FIELDS, HashMap.class))
+                .setConcurrency(4)
+                .bindStreams(streams);
+
+        // The failing streams don't affect the other streams, bound on the same threads...
+        assertEquals(40, batch.getSourceCount());
+        assertEquals(14, batch.getFailedSourceCount());
+        assertEquals(26 * 2, batch.getRecordCount());
+        for (int i = 0; i < 40; i++) {
+            FixedLengthBatchBinder.SourceResult<InputStream> result = batch.getResults().get(i);
+            List<Map<String, String>> people = result.getRecords();
+            assertEquals(streams.get(i), result.getSource());
+            if (i % 3 == 0) {
+                assertTrue(result.isFailed());
+                assertTrue(people.isEmpty());
+            } else {
+                assertFalse(result.isFailed());
+                assertEquals(2, people.size());
+                assertEquals(String.format("N%02d", i), people.get(1).get("country"));
+            }
+        }
+    }
+
+    @Test
+    public void test_batch_threads() throws Exception {
+        boolean virtualThreads;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            virtualThreads = true;
+        } catch (NoSuchMethodException e) {
+            virtualThreads = false;
+        }
+        assertEquals(virtualThreads, FixedLengthBatchBinder.BatchThreads.isVirtual());
+
+        // The platform thread fallback...
+        ExecutorService executor = FixedLengthBatchBinder.BatchThreads.newPlatformExecutor(2);
+        try {
+            List<Future<Thread>> threads = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                threads.add(executor.submit(Thread::currentThread));
+            }
+            for (Future<Thread> thread : threads) {
+                assertTrue(thread.get().isDaemon());
+                assertTrue(thread.get().getName().matches("fixed-length-batch-[12]"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private File createFile(int records) throws IOException {
+        File file = File.createTempFile("fixed-length-", ".txt");
+        file.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < records; i++) {
+                writer.write(String.format("%-10s%-10s12%s%03d%s\n", "first" + i, "last" + i, (i % 2 == 0 ? "M" : "F"), i % 100, "NLD"));
+            }
+        }
+        return file;
+    }
+
+    private static class FailingInputStream extends FilterInputStream {
+
+        private FailingInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // Fails instead of reporting the end of the stream...
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                throw new IOException("Connection reset");
+            }
+            return read;
+        }
+    }
+
+    private static class CloseTrackingReader extends StringReader {
+
+        private boolean closed;
+
+        private CloseTrackingReader(String s) {
+            super(s);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+}